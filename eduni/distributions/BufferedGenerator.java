@@ -0,0 +1,71 @@
+package eduni.distributions;
+
+/**
+ * A continuous generator handing out the numbers of another one from a block filled
+ * in one <code>fill</code> call whenever it runs out, so a consumer drawing one number
+ * at a time gets the bulk generation without changing the sequence.
+ * <p>
+ * The seed is the position in the sequence of the wrapped generator, as if no number
+ * had been drawn ahead: <code>getSeed</code> regenerates the numbers taken from the
+ * current block and drops the rest, so it costs up to one block of samples and suits
+ * consumers that read it rarely.
+ */
+public class BufferedGenerator implements ContinuousGenerator {
+    private final ContinuousGenerator source;
+    private final double[] block;
+    private int next = 0;     // index of the next number in the block
+    private int filled = 0;   // numbers in the block
+    private long blockSeed;   // seed of the source before the block was filled
+
+    /**
+     * @param source generator of the numbers
+     * @param size numbers generated at once
+     */
+    public BufferedGenerator(ContinuousGenerator source, int size) {
+	if (size < 1) throw new IllegalArgumentException("A block holds at least one number");
+	this.source = source;
+	block = new double[size];
+    }
+
+    /**
+     * @return The wrapped generator
+     */
+    public ContinuousGenerator getSource() { return source; }
+
+    // ----- implements ContinuousGenerator { -----
+    public double sample() {
+	if (next == filled) {
+	    blockSeed = source.getSeed();
+	    source.fill(block, 0, block.length);
+	    filled = block.length;
+	    next = 0;
+	}
+	return block[next++];
+    }
+
+    public void fill(double[] dst, int off, int len) {
+	int n = Math.min(len, filled - next);
+	System.arraycopy(block, next, dst, off, n);
+	next += n;
+	if (n < len) source.fill(dst, off + n, len - n);
+    }
+    // ----- } implements ContinuousGenerator -----
+
+    // ----- implements Seedable { -----
+    public void setSeed(long seed) { source.setSeed(seed); drop(); }
+    public long getSeed() {
+	if (next < filled) {
+	    // Bring the source to the first number not taken yet
+	    source.setSeed(blockSeed);
+	    for (int i=0; i<next; i++) source.sample();
+	    drop();
+	}
+	return source.getSeed();
+    }
+    public void reseed() { source.reseed(); drop(); }
+    // ----- } implements Seedable -----
+
+    private void drop() {
+	next = filled = 0;
+    }
+}
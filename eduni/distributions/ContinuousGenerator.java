@@ -4,4 +4,18 @@ package eduni.distributions;
  */
 public interface ContinuousGenerator extends Seedable {
     double sample(); 
+
+    /**
+     * Generate <code>len</code> numbers at once, the same as <code>len</code> calls of
+     * <code>sample</code> would, in order. The numbers are bit-identical to those of
+     * <code>sample</code>, which is why the implementations use no lanewise vector
+     * math: the LOG, EXP and COS of <code>jdk.incubator.vector</code> may differ from
+     * <code>Math</code> in the last ulp.
+     * @param dst array to store the numbers in
+     * @param off index of the first number in <code>dst</code>
+     * @param len number of numbers
+     */
+    default void fill(double[] dst, int off, int len) {
+	for (int i=off; i<off+len; i++) dst[i] = sample();
+    }
 }
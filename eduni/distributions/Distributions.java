@@ -8,12 +8,15 @@ public class Distributions {
     /** A reference to the internal random generator.
      */
     ContinuousGenerator source;
+    // Scratch space of the bulk methods needing several samples per number
+    private double[] uniforms = new double[0];
     
-    /** The seed is automatically provided by a well-spaced <code>SeedGenerator</code>
+    /** The seed is automatically provided by a well-spaced <code>SeedGenerator</code>,
+     * the generator is one of the default <code>RandomBackend</code>
      */
-    public Distributions() { source = new RandomGenerator(); }
-    /** The seed is manually set */
-    public Distributions(long seed) { source = new RandomGenerator(seed); }
+    public Distributions() { source = RandomBackend.getDefault().create(); }
+    /** The seed is manually set, the generator is one of the default <code>RandomBackend</code> */
+    public Distributions(long seed) { source = RandomBackend.getDefault().create(seed); }
     /** This constructor allows for manually specially the continous generator 
      * shared to compute the distribution function.
      */
@@ -145,6 +148,22 @@ public class Distributions {
 	return -scale * Math.log(product);
     }
 
+    /** computes <code>len</code> numbers of an Erlang's distribution into <code>dst</code>,
+     * the same as <code>len</code> calls of <code>erlang</code>
+     */
+    public void erlang(double scale, double shape, double[] dst, int off, int len) {
+	int k = 0;
+	while (k < shape) k++; // samples per number
+	double[] u = uniforms(k * len);
+	source.fill(u, 0, k * len);
+	for (int i=0; i<len; i++) {
+	    double product = 1.0;
+	    for (int j=0; j<k; j++)
+		product *= u[i*k + j];
+	    dst[off+i] = -scale * Math.log(product);
+	}
+    }
+
     /** computes a F distribution
      * @return chisquare(num_deg_freedom)/num_deg_freedom / chisquare(den_deg_freedom)/den_deg_freedom
      */
@@ -203,12 +222,30 @@ public class Distributions {
 	return Math.exp(mean+std_dev*normal2(0.0, 1.0));
     }
 
+    /** computes <code>len</code> numbers of a lognormal distribution into <code>dst</code>,
+     * the same as <code>len</code> calls of <code>lognormal2</code>
+     */
+    public void lognormal2(double mean, double std_dev, double[] dst, int off, int len) {
+	normal2(0.0, 1.0, dst, off, len);
+	for (int i=off; i<off+len; i++)
+	    dst[i] = Math.exp(mean+std_dev*dst[i]);
+    }
+
     /** computes a negexp distribution
      * @return -mean * log (<i>sample</i>);  where <i>sample</i> is provided by the PRGN
      */
     public double negexp(double mean) {
 	return -mean * Math.log(source.sample());
     }
+
+    /** computes <code>len</code> numbers of a negexp distribution into <code>dst</code>,
+     * the same as <code>len</code> calls of <code>negexp</code>
+     */
+    public void negexp(double mean, double[] dst, int off, int len) {
+	source.fill(dst, off, len);
+	for (int i=off; i<off+len; i++)
+	    dst[i] = -mean * Math.log(dst[i]);
+    }
     
     /** computes a normal distribution; <i>sample</i> are provided by the same PRGN
      * @return mean + &radic;(variance) * cos (2&Pi; * <i>sample</i>) * &radic;(-2 * log (<i>sample</i>))
@@ -226,6 +263,16 @@ public class Distributions {
 	return mean + std_dev * Math.cos(2 * Math.PI * u1) * Math.sqrt(-2 * Math.log(u2));
     }
 
+    /** computes <code>len</code> numbers of a normal distribution into <code>dst</code>,
+     * the same as <code>len</code> calls of <code>normal2</code>
+     */
+    public void normal2(double mean, double std_dev, double[] dst, int off, int len) {
+	double[] u = uniforms(2 * len);
+	source.fill(u, 0, 2 * len);
+	for (int i=0; i<len; i++)
+	    dst[off+i] = mean + std_dev * Math.cos(2 * Math.PI * u[2*i]) * Math.sqrt(-2 * Math.log(u[2*i + 1]));
+    }
+
     /** computes a pareto distribution; <i>sample</i> is provided by the PRGN
      * @return scale / (<i>sample</i>^(1/shape))
      */
@@ -248,11 +295,34 @@ public class Distributions {
 	return (max-min) * source.sample() + min;
     }
 
+    /** computes <code>len</code> numbers of a uniform distribution into <code>dst</code>,
+     * the same as <code>len</code> calls of <code>uniform</code>
+     */
+    public void uniform(double min, double max, double[] dst, int off, int len) {
+	source.fill(dst, off, len);
+	for (int i=off; i<off+len; i++)
+	    dst[i] = (max-min) * dst[i] + min;
+    }
+
     /** computes a weibull distribution; <i>sample</i> is provided by the PRGN
-     * @return scale * (<i>sample</i> ^ (1/shape))
+     * @return scale * (-log (<i>sample</i>)) ^ (1/shape)
      */
     public double weibull(double scale, double shape) {
-	return scale * Math.pow(Math.log(source.sample()), 1/shape);
+	return scale * Math.pow(-Math.log(source.sample()), 1/shape);
+    }
+
+    /** computes <code>len</code> numbers of a weibull distribution into <code>dst</code>,
+     * the same as <code>len</code> calls of <code>weibull</code>
+     */
+    public void weibull(double scale, double shape, double[] dst, int off, int len) {
+	source.fill(dst, off, len);
+	for (int i=off; i<off+len; i++)
+	    dst[i] = scale * Math.pow(-Math.log(dst[i]), 1/shape);
+    }
+
+    private double[] uniforms(int n) {
+	if (uniforms.length < n) uniforms = new double[n];
+	return uniforms;
     }
 }
 
@@ -44,4 +44,9 @@ public class Erlang extends Generator implements ContinuousGenerator {
      * @return The next random number in the sequence
      */
     public double sample() { return distrib.erlang(shape, scale); }
+
+    /**
+     * Generate <code>len</code> random numbers, the same as <code>len</code> calls of <code>sample</code>.
+     */
+    public void fill(double[] dst, int off, int len) { distrib.erlang(shape, scale, dst, off, len); }
 }
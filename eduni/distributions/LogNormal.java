@@ -33,4 +33,9 @@ public class LogNormal extends Normal {
      * @return The next random number in the sequence
      */
     public double sample() { return distrib.lognormal2(mean, std_dev); }
+
+    /**
+     * Generate <code>len</code> random numbers, the same as <code>len</code> calls of <code>sample</code>.
+     */
+    public void fill(double[] dst, int off, int len) { distrib.lognormal2(mean, std_dev, dst, off, len); }
 }
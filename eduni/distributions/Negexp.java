@@ -40,4 +40,11 @@ public class Negexp extends Generator implements ContinuousGenerator {
     public double sample() { 
          return distrib.negexp(mean);
     }
+
+    /**
+     * Generate <code>len</code> random numbers, the same as <code>len</code> calls of <code>sample</code>.
+     */
+    public void fill(double[] dst, int off, int len) {
+         distrib.negexp(mean, dst, off, len);
+    }
 }
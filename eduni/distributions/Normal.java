@@ -44,4 +44,9 @@ public class Normal extends Generator implements ContinuousGenerator {
      * @return The next random number in the sequence
      */
     public double sample() { return distrib.normal2(mean, std_dev); }
+
+    /**
+     * Generate <code>len</code> random numbers, the same as <code>len</code> calls of <code>sample</code>.
+     */
+    public void fill(double[] dst, int off, int len) { distrib.normal2(mean, std_dev, dst, off, len); }
 }
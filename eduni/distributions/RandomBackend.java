@@ -0,0 +1,71 @@
+package eduni.distributions;
+
+/**
+ * The uniform random number generators the distributions of this package can be
+ * built on. Every backend keeps its whole state in the seed of <code>Seedable</code>,
+ * and can move a state any number of steps ahead, which is what a
+ * <code>SeedGenerator</code> does to produce well-spaced seeds.
+ * <p>
+ * The default backend is used by <code>Distributions</code>, and so by every
+ * <code>Generator</code>, created without an explicit <code>ContinuousGenerator</code>,
+ * and by <code>SeedGenerator</code>s created without an explicit backend. It should be
+ * chosen before any of them is created.
+ */
+public enum RandomBackend {
+    /** <code>RandomGenerator</code>: 31-bit multiplicative LCG, period
+     *  <code>2<sup>31</sup>-2</code>, streams of 100000 numbers */
+    LCG(100000),
+    /** <code>SplitMix64</code>: 64-bit state, period <code>2<sup>64</sup></code>,
+     *  streams of <code>2<sup>40</sup></code> numbers */
+    SPLITMIX64(SplitMix64.STREAM_LENGTH);
+
+    private static volatile RandomBackend defaultBackend = LCG;
+
+    private final long streamLength;
+
+    RandomBackend(long streamLength) {
+	this.streamLength = streamLength;
+    }
+
+    /**
+     * @param seed first state
+     * @return New generator of this backend
+     */
+    public ContinuousGenerator create(long seed) {
+	switch (this) {
+	case SPLITMIX64: return new SplitMix64(seed);
+	default: return new RandomGenerator(seed);
+	}
+    }
+
+    /**
+     * @return New generator of this backend seeded by the default <code>SeedGenerator</code>
+     */
+    public ContinuousGenerator create() {
+	switch (this) {
+	case SPLITMIX64: return new SplitMix64();
+	default: return new RandomGenerator();
+	}
+    }
+
+    /**
+     * @param seed state of a generator of this backend
+     * @param steps number of numbers to skip, not negative
+     * @return The state of the generator after <code>steps</code> numbers
+     */
+    public long jump(long seed, long steps) {
+	switch (this) {
+	case SPLITMIX64: return SplitMix64.jump(seed, steps);
+	default: return RandomGenerator.jump(seed, steps);
+	}
+    }
+
+    /**
+     * @return Default spacing of the seeds of a <code>SeedGenerator</code> of this
+     * backend: streams that far apart do not overlap unless one of them draws more numbers
+     */
+    public long getStreamLength() { return streamLength; }
+
+    public static RandomBackend getDefault() { return defaultBackend; }
+    public static void setDefault(RandomBackend backend) { defaultBackend = backend; }
+}
@@ -17,9 +17,9 @@ package eduni.distributions;
 
 public class RandomGenerator implements ContinuousGenerator {
     // The multiplier
-    private final long a = 742938285;
+    private static final long a = 742938285;
     // The modulus
-    private final long m = 2147483647;
+    private static final long m = 2147483647;
     // The last computed random number
     private long seed;
     
@@ -30,6 +30,15 @@ public class RandomGenerator implements ContinuousGenerator {
     public double sample() { 
 	return ((double)nextLong()) / m;
     }
+
+    public void fill(double[] dst, int off, int len) {
+	long s = seed;
+	for (int i=off; i<off+len; i++) {
+	    s = (a * s) % m;
+	    dst[i] = ((double)s) / m;
+	}
+	seed = s;
+    }
     // ----- } implements ContinuousGenerator -----
 
     /**
@@ -38,6 +47,35 @@ public class RandomGenerator implements ContinuousGenerator {
     public long nextLong() {
 	return seed = (a * seed) % m;
     }
+
+    /**
+     * Jump ahead in O(log steps): <code>Y[n] = (a<sup>n</sup> mod m)*Y[0] mod m</code>,
+     * the power computed by repeated squaring. The result is the one of calling
+     * <code>nextLong</code> <code>steps</code> times, for any seed.
+     * @param seed state of a generator
+     * @param steps number of numbers to skip, not negative
+     * @return The state of the generator after <code>steps</code> numbers
+     */
+    static long jump(long seed, long steps) {
+	if (steps <= 0) return seed;
+	// One plain step brings any seed into (-m, m), where the products cannot overflow
+	seed = (a * seed) % m;
+	long power = power(steps - 1);
+	return seed >= 0 ? power * seed % m : -(power * -seed % m);
+    }
+
+    /**
+     * @return <code>a<sup>n</sup> mod m</code>
+     */
+    static long power(long n) {
+	n %= m - 1; // a<sup>m-1</sup> mod m = 1 since m is prime
+	long result = 1, square = a;
+	for (; n > 0; n >>= 1) {
+	    if ((n & 1) != 0) result = result * square % m;
+	    square = square * square % m;
+	}
+	return result;
+    }
     
     // ----- implements Seedable { -----
     public void setSeed(long seed) { this.seed = seed; }
@@ -1,32 +1,55 @@
 package eduni.distributions;
 
 /** A SeedGenerator is a DiscreteGenerator which produces well-spaced seeds
- *  according to its spacing attribute. It relies on a <code>RandomGenerator</code>
+ *  according to its spacing attribute: every seed is the state of a generator of its
+ *  <code>RandomBackend</code> <code>spacing</code> numbers after the previous one.
+ *  The methods are synchronized because the default SeedGenerator is shared by
+ *  all generators created without an explicit seed, possibly on several threads.
  */
 public class SeedGenerator implements DiscreteGenerator {
     private static long root = 4851L; // The root seed
-    private int spacing;
+    private final RandomBackend backend;
+    private long spacing;
     private boolean not_sampled = true; // to use the assigned seed (id Costas)
-    private RandomGenerator source;
+    private long seed;
 
     public SeedGenerator () { this(root, 100000); } //default spacing=100000
-    public SeedGenerator (long seed, int spacing) { 
-	source = new RandomGenerator(seed);
+    /** Seeds for the default <code>RandomBackend</code> */
+    public SeedGenerator (long seed, long spacing) { this(RandomBackend.getDefault(), seed, spacing); }
+    /** Seeds for a backend, as far apart as its streams are long */
+    public SeedGenerator (RandomBackend backend, long seed) { this(backend, seed, backend.getStreamLength()); }
+    public SeedGenerator (RandomBackend backend, long seed, long spacing) {
+	this.backend = backend;
+	this.seed = seed;
 	this.spacing = spacing;
     }
 
+    /**
+     * @return The backend the seeds are states of
+     */
+    public RandomBackend getBackend() { return backend; }
+
     // ----- implements Seedable { -----
-    public void setSeed(long seed) { source.setSeed(seed); not_sampled=true; }
-    public long getSeed() { return source.getSeed(); }
-    public void reseed() { source.reseed(); not_sampled=true; }
+    public synchronized void setSeed(long seed) { this.seed = seed; not_sampled=true; }
+    public synchronized long getSeed() { return seed; }
+    public synchronized void reseed() { seed = getDefaultSeedGenerator().sample(); not_sampled=true; }
     // ----- } implements Seedable -----
 
     // ----- implements DiscreteGenerator { -----
-    public long sample() {
+    public synchronized long sample() {
 	if (not_sampled) not_sampled = false;
-	else
-	    for (int i=0; i<spacing; i++) source.nextLong();
-	return getSeed();
+	else seed = backend.jump(seed, spacing);
+	return seed;
+    }
+
+    /** Skip seeds as <code>n</code> calls of <code>sample</code> would, in one jump
+     *  of the backend, so the <code>k</code>-th seed is reached without the ones before it.
+     * @param n number of seeds to skip
+     */
+    public synchronized void skip(long n) {
+	if (n <= 0) return;
+	if (not_sampled) { not_sampled = false; n--; }
+	seed = backend.jump(seed, n * spacing);
     }
 
     private static SeedGenerator defaut = new SeedGenerator();
@@ -0,0 +1,75 @@
+package eduni.distributions;
+
+/**
+ * A random number generator with a 64-bit state and a period of
+ * <code>2<sup>64</sup></code> (Steele, Lea and Flood, 2014). The state is advanced by
+ * a fixed odd increment and every number is a bijective mix of the new state:
+ * <p>
+ * <code>Y[n] = mix(Y[0] + n*0x9E3779B97F4A7C15) </code>
+ * <p>
+ * so moving the generator <code>n</code> numbers ahead is one multiplication and one
+ * addition. The whole state is the seed, which keeps <code>getSeed</code> and
+ * <code>setSeed</code> exact for savepoints and snapshots.
+ * <p>
+ * Stream <code>k</code> of a root seed starts <code>k*2<sup>40</sup></code> numbers
+ * after it, so up to <code>2<sup>24</sup></code> streams of <code>2<sup>40</sup></code>
+ * numbers each never overlap.
+ * @see RandomBackend#SPLITMIX64
+ */
+public final class SplitMix64 implements ContinuousGenerator {
+    /** The increment of the state, the odd integer closest to 2<sup>64</sup>/&phi; */
+    static final long GAMMA = 0x9E3779B97F4A7C15L;
+    /** Length of a stream: numbers between the starts of two consecutive streams */
+    public static final long STREAM_LENGTH = 1L << 40;
+    // The state
+    private long seed;
+
+    public SplitMix64 () { reseed(); }
+    public SplitMix64 (long seed) { setSeed(seed); }
+
+    // ----- implements ContinuousGenerator { -----
+    /**
+     * @return The top 52 bits of the next number and a half, over 2<sup>52</sup>: exactly
+     * representable, so strictly between 0 and 1
+     */
+    public double sample() {
+	return ((nextLong() >>> 12) + 0.5) * 0x1.0p-52;
+    }
+
+    public void fill(double[] dst, int off, int len) {
+	long s = seed;
+	for (int i=off; i<off+len; i++) {
+	    long z = s += GAMMA;
+	    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	    dst[i] = (((z ^ (z >>> 31)) >>> 12) + 0.5) * 0x1.0p-52;
+	}
+	seed = s;
+    }
+    // ----- } implements ContinuousGenerator -----
+
+    /**
+     * @return The next long random number in the sequence
+     */
+    public long nextLong() {
+	long z = seed += GAMMA;
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param seed state of a generator
+     * @param steps number of numbers to skip
+     * @return The state of the generator after <code>steps</code> numbers
+     */
+    public static long jump(long seed, long steps) {
+	return seed + steps * GAMMA;
+    }
+
+    // ----- implements Seedable { -----
+    public void setSeed(long seed) { this.seed = seed; }
+    public long getSeed() { return seed; }
+    public void reseed() { this.seed = SeedGenerator.getDefaultSeedGenerator().sample(); }
+    // ----- } implements Seedable -----
+}
@@ -42,4 +42,11 @@ public class Uniform extends Generator implements ContinuousGenerator {
     public double sample() { 
          return distrib.uniform(min, max);
     }
+
+    /**
+     * Generate <code>len</code> random numbers, the same as <code>len</code> calls of <code>sample</code>.
+     */
+    public void fill(double[] dst, int off, int len) {
+         distrib.uniform(min, max, dst, off, len);
+    }
 }
@@ -42,4 +42,11 @@ public class Weibull extends Generator implements ContinuousGenerator {
     public double sample() { 
          return distrib.weibull(scale, shape);
     }
+
+    /**
+     * Generate <code>len</code> random numbers, the same as <code>len</code> calls of <code>sample</code>.
+     */
+    public void fill(double[] dst, int off, int len) {
+         distrib.weibull(scale, shape, dst, off, len);
+    }
 }
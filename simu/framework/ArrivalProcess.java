@@ -1,18 +1,24 @@
 package simu.framework;
 
+import eduni.distributions.BufferedGenerator;
 import eduni.distributions.ContinuousGenerator;
 import simu.model.Visitor;
+import simu.model.VisitorTable;
 
 public class ArrivalProcess {
     private ContinuousGenerator generator;
+    private SimulationContext context;
     private EventList eventList;
     private IEventType type;
+    private VisitorTable table; // new visitors are added to it instead of created as objects, if set
 
     private static final double EPS = 1e-9;
+    private static final int MSG_SCHEDULED = Trace.registerMessage("Scheduled arrival event at time {value} for Visitor {visitor}");
 
-    public ArrivalProcess(ContinuousGenerator g, EventList tl, IEventType type) {
+    public ArrivalProcess(ContinuousGenerator g, SimulationContext context, IEventType type) {
         this.generator = g;
-        this.eventList = tl;
+        this.context = context;
+        this.eventList = context.getEventList();
         this.type = type;
     }
 
@@ -21,14 +27,52 @@ public class ArrivalProcess {
         double dt = generator.sample();
         if (dt <= 0) dt = EPS;
 
-        double nextTime = Clock.getInstance().getClock() + dt;
+        double nextTime = context.getClock().getClock() + dt;
 
-        Visitor v = new Visitor();
-        Event e = new Event(type, nextTime, v);
-        eventList.add(e);
+        if (table != null) {
+            int id = context.nextVisitorId();
+            eventList.schedule(type, nextTime, table.add(id, context.getClock().getClock()));
+            Trace.out(Trace.Level.INFO, MSG_SCHEDULED, type, id, nextTime);
+            return;
+        }
+        Visitor v = new Visitor(context);
+        eventList.schedule(type, nextTime, v);
 
-        Trace.out(Trace.Level.INFO,
-                "Scheduled arrival event at time " + nextTime +
-                        " for Visitor " + v.getId());
+        Trace.out(Trace.Level.INFO, MSG_SCHEDULED, type, v.getId(), nextTime);
+    }
+
+    /**
+     * Add the new visitors to an off-heap visitor table, and schedule their arrival
+     * events with their handles, instead of creating Visitor objects.
+     *
+     * @param table table of the visitors, or null for Visitor objects
+     */
+    public void setVisitorTable(VisitorTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Draw the interarrival times a block at a time, see {@link BufferedGenerator}. The
+     * interarrival times are the same. Call it before the simulation starts.
+     *
+     * @param size interarrival times drawn at once
+     */
+    public void setSampleBuffer(int size) {
+        if (generator instanceof BufferedGenerator) throw new IllegalStateException("Interarrival times are already buffered");
+        generator = new BufferedGenerator(generator, size);
+    }
+
+    /**
+     * @return Position of the interarrival time stream, e.g. to save it in a snapshot
+     */
+    public long getSeed() {
+        return generator.getSeed();
+    }
+
+    /**
+     * @param seed position to continue the interarrival time stream from
+     */
+    public void setSeed(long seed) {
+        generator.setSeed(seed);
     }
 }
@@ -0,0 +1,153 @@
+package simu.framework;
+
+/**
+ * Confidence interval of the steady-state mean of one output of a single run, by the
+ * method of batch means.
+ *
+ * Consecutive observations are grouped into batches and the batch means are treated as
+ * independent samples. The number of batches stays between {@value #BATCHES} and twice
+ * that: when the limit is reached, neighbouring batches are merged and the batch size
+ * doubles. Adding an observation therefore costs O(1) amortized and the memory is
+ * constant. The batch means only count as independent, and the half-width is only
+ * given, while their lag-1 autocorrelation is at most {@value #MAX_CORRELATION}.
+ *
+ * Observations can be weighted, e.g. by the time a state lasted, which gives the
+ * time average of that state.
+ */
+public class BatchMeans {
+    private static final int BATCHES = 32;
+    private static final double MAX_CORRELATION = 0.2;
+
+    private final String name;
+    private final double confidence;
+
+    private final double[] sums = new double[2 * BATCHES];    // weighted sum per complete batch
+    private final double[] weights = new double[2 * BATCHES]; // total weight per complete batch
+    private final double[] means = new double[2 * BATCHES];
+    private int batches = 0;
+    private long batchSize = 1;  // observations per batch
+    private long inBatch = 0;    // observations in the current batch
+    private double batchSum = 0;
+    private double batchWeight = 0;
+
+    private double totalSum = 0;
+    private double totalWeight = 0;
+    private long observations = 0;
+    private double halfWidth = Double.NaN;
+
+    /**
+     * @param name name of the output, used in reports
+     * @param confidence confidence level of the interval, e.g. 0.95
+     */
+    public BatchMeans(String name, double confidence) {
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("Confidence must be between 0 and 1");
+        }
+        this.name = name;
+        this.confidence = confidence;
+    }
+
+    /**
+     * Add an observation of weight 1.
+     */
+    public void add(double value) {
+        add(value, 1.0);
+    }
+
+    /**
+     * @param value observed value
+     * @param weight weight of the observation, e.g. how long the value lasted; 0 is ignored
+     */
+    public void add(double value, double weight) {
+        if (weight <= 0) return;
+        observations++;
+        batchSum += value * weight;
+        batchWeight += weight;
+        totalSum += value * weight;
+        totalWeight += weight;
+        if (++inBatch < batchSize) return;
+
+        sums[batches] = batchSum;
+        weights[batches] = batchWeight;
+        batches++;
+        batchSum = 0;
+        batchWeight = 0;
+        inBatch = 0;
+        if (batches == sums.length) merge();
+        update();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Weighted mean of all observations, NaN before the first
+     */
+    public double getMean() {
+        return totalWeight > 0 ? totalSum / totalWeight : Double.NaN;
+    }
+
+    /**
+     * @return Half-width of the confidence interval of the mean, NaN while there are too
+     *         few batches or they are still correlated
+     */
+    public double getHalfWidth() {
+        return halfWidth;
+    }
+
+    /**
+     * @return Half-width relative to the mean, NaN while there is no half-width
+     */
+    public double getRelativeHalfWidth() {
+        return halfWidth / Math.abs(getMean());
+    }
+
+    public long getObservationCount() {
+        return observations;
+    }
+
+    /**
+     * @return Observations per batch
+     */
+    public long getBatchSize() {
+        return batchSize;
+    }
+
+    /** Halve the number of batches by merging neighbours */
+    private void merge() {
+        for (int j = 0; j < BATCHES; j++) {
+            sums[j] = sums[2 * j] + sums[2 * j + 1];
+            weights[j] = weights[2 * j] + weights[2 * j + 1];
+        }
+        batches = BATCHES;
+        batchSize *= 2;
+    }
+
+    /** Recompute the half-width from the complete batches */
+    private void update() {
+        halfWidth = Double.NaN;
+        if (batches < BATCHES) return;
+
+        double mean = 0;
+        for (int j = 0; j < batches; j++) {
+            means[j] = sums[j] / weights[j];
+            mean += means[j];
+        }
+        mean /= batches;
+        double squares = 0;
+        double lagged = 0;
+        for (int j = 0; j < batches; j++) {
+            double d = means[j] - mean;
+            squares += d * d;
+            if (j > 0) lagged += d * (means[j - 1] - mean);
+        }
+        if (squares == 0) {
+            halfWidth = 0;
+            return;
+        }
+        if (lagged / squares > MAX_CORRELATION) return;
+        double stdDev = Math.sqrt(squares / (batches - 1));
+        halfWidth = ReplicationSummary.studentQuantile(0.5 + confidence / 2, batches - 1) * stdDev / Math.sqrt(batches);
+    }
+}
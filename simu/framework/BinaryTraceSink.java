@@ -0,0 +1,331 @@
+package simu.framework;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Trace sink that stores structured messages as fixed-size binary records.
+ *
+ * The simulation thread only copies the record fields into a lock-free ring buffer.
+ * A background thread drains the buffer into a memory-mapped file, so tracing at
+ * INFO level costs a few stores per message instead of a System.out.println. Several
+ * engines may trace into the same sink concurrently. When the buffer is full the
+ * producers spin until the drainer has made room, so no record is lost. If the drainer
+ * has failed to write the file, a producer that finds the buffer full throws instead.
+ *
+ * File layout (all numbers big-endian), decoded by {@link TraceDecoder}:
+ * - header of {@value #HEADER_SIZE} bytes: magic, record size, record count, dictionary offset
+ * - records of {@value #RECORD_SIZE} bytes: time (double), value (double), visitor id (int),
+ *   message id (int), event type id (short, -1 for none), level ordinal (byte), padding
+ * - dictionary written on {@link #close()}: message templates and event type names
+ *
+ * The sink numbers the event types itself, by object identity, so types of different
+ * families that share an ordinal, e.g. {@code EventType} and {@code NetworkEventType},
+ * get their own ids. Types with the same name share an id.
+ *
+ * Free-form text messages cannot be stored as records; they are passed on to another sink.
+ */
+public class BinaryTraceSink implements TraceSink {
+    static final long MAGIC = 0x5050545241434531L; // "PPTRACE1"
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 32;
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int REGION_SIZE = 16 << 20;  // bytes mapped at a time
+    private static final long PARK_NANOS = 100_000;   // drainer idle wait
+
+    // Ring buffer, one slot per record field. A slot is free for position p when
+    // sequence[slot] == p and holds the record of position p when it is p + 1.
+    private final int mask;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong();
+    private final double[] times;
+    private final double[] values;
+    private final int[] visitors;
+    private final int[] messages;
+    private final short[] types;
+    private final byte[] levels;
+    private long head = 0; // drainer only
+
+    // Sink ids of the event types seen so far. The table is copied on every new type
+    // and published whole, so record() reads it without locking.
+    private volatile TypeIds typeIds = new TypeIds(16);
+    private final List<String> typeNames = new ArrayList<>();        // guarded by this, by id
+    private final Map<String, Short> typeIdsByName = new HashMap<>(); // guarded by this
+
+    private final TraceSink textSink;
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long recordCount = 0;
+
+    private final Thread drainer;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    /**
+     * Create a sink writing to the given file, forwarding text messages to the console.
+     *
+     * @param file trace file, created or overwritten
+     * @throws IOException if the file cannot be opened
+     */
+    public BinaryTraceSink(Path file) throws IOException {
+        this(file, DEFAULT_CAPACITY, new ConsoleTraceSink());
+    }
+
+    /**
+     * @param file trace file, created or overwritten
+     * @param capacity number of records the ring buffer holds, rounded up to a power of two
+     * @param textSink sink for the free-form text messages
+     * @throws IOException if the file cannot be opened
+     */
+    public BinaryTraceSink(Path file, int capacity, TraceSink textSink) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+        times = new double[size];
+        values = new double[size];
+        visitors = new int[size];
+        messages = new int[size];
+        types = new short[size];
+        levels = new byte[size];
+        this.textSink = textSink;
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writeHeader(0);
+        regionStart = HEADER_SIZE;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+
+        drainer = new Thread(this::drainLoop, "trace-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @Override
+    public void text(Trace.Level lvl, double time, String txt) {
+        textSink.text(lvl, time, txt);
+    }
+
+    @Override
+    public void record(Trace.Level lvl, double time, int messageId, IEventType type, int visitorId, double value) {
+        short typeId = -1;
+        if (type != null) {
+            typeId = typeIds.get(type);
+            if (typeId < 0) typeId = registerType(type);
+        }
+
+        long pos = tail.getAndIncrement();
+        int slot = (int) pos & mask;
+        while (sequence.get(slot) != pos) {
+            // Buffer full, wait for the drainer unless it has stopped
+            if (failure != null) throw new UncheckedIOException("Could not write trace file", failure);
+            if (!drainer.isAlive()) throw new IllegalStateException("Trace sink is closed");
+            Thread.onSpinWait();
+        }
+        times[slot] = time;
+        values[slot] = value;
+        visitors[slot] = visitorId;
+        messages[slot] = messageId;
+        types[slot] = typeId;
+        levels[slot] = (byte) lvl.ordinal();
+        sequence.lazySet(slot, pos + 1); // publish
+    }
+
+    /**
+     * @return Number of records written to the file so far
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Drain the remaining records, write the dictionary and header, and close the file.
+     * No records may be issued to this sink after it is closed.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (failure != null) throw failure;
+            synchronized (this) {
+                long dictionary = HEADER_SIZE + recordCount * RECORD_SIZE;
+                region.force();
+                long end = dictionary + channel.write(ByteBuffer.wrap(dictionary()), dictionary);
+                writeHeader(dictionary);
+                channel.truncate(end);
+                channel.force(true);
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not finish trace file", e);
+        }
+        textSink.close();
+    }
+
+    /**
+     * Give an event type its id, reusing the id of a type with the same name.
+     *
+     * @return id of the type
+     */
+    private synchronized short registerType(IEventType type) {
+        short id = typeIds.get(type);
+        if (id >= 0) return id; // registered by another thread meanwhile
+
+        String name = String.valueOf(type);
+        Short known = typeIdsByName.get(name);
+        if (known != null) {
+            id = known;
+        } else {
+            if (typeNames.size() > Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many event types in one trace: " + typeNames.size());
+            }
+            id = (short) typeNames.size();
+            typeNames.add(name);
+            typeIdsByName.put(name, id);
+        }
+        typeIds = typeIds.with(type, id);
+        return id;
+    }
+
+    private void drainLoop() {
+        try {
+            while (true) {
+                boolean stopping = !running;
+                if (drain() == 0) {
+                    if (stopping) break;
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Copy all published records from the ring buffer to the file.
+     *
+     * @return number of records copied
+     */
+    private synchronized int drain() throws IOException {
+        int n = 0;
+        while (true) {
+            int slot = (int) head & mask;
+            if (sequence.get(slot) != head + 1) break;
+
+            if (region.remaining() < RECORD_SIZE) {
+                regionStart += region.position();
+                region.force();
+                region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+            }
+            region.putDouble(times[slot]);
+            region.putDouble(values[slot]);
+            region.putInt(visitors[slot]);
+            region.putInt(messages[slot]);
+            region.putShort(types[slot]);
+            region.put(levels[slot]);
+            region.put((byte) 0);
+            region.putInt(0);
+
+            sequence.lazySet(slot, head + mask + 1); // free the slot for the next round
+            head++;
+            recordCount++;
+            n++;
+        }
+        return n;
+    }
+
+    private void writeHeader(long dictionaryOffset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(MAGIC);
+        header.putLong(RECORD_SIZE);
+        header.putLong(recordCount);
+        header.putLong(dictionaryOffset);
+        header.rewind();
+        channel.write(header, 0);
+    }
+
+    private byte[] dictionary() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int count = Trace.getMessageCount();
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeUTF(Trace.getMessage(i));
+        }
+        out.writeInt(typeNames.size());
+        for (String name : typeNames) {
+            out.writeUTF(name);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /** Open addressing table from event type, by identity, to its sink id; not modified once published */
+    private static final class TypeIds {
+        private final IEventType[] keys;
+        private final short[] ids;
+        private final int count;
+
+        TypeIds(int size) {
+            this(new IEventType[size], new short[size], 0);
+        }
+
+        private TypeIds(IEventType[] keys, short[] ids, int count) {
+            this.keys = keys;
+            this.ids = ids;
+            this.count = count;
+        }
+
+        /** @return id of the type, -1 if it has none */
+        short get(IEventType type) {
+            int mask = keys.length - 1;
+            for (int i = System.identityHashCode(type) & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == type) return ids[i];
+            }
+            return -1;
+        }
+
+        /** @return Copy of this table with the type added, at most half full */
+        TypeIds with(IEventType type, short id) {
+            int size = 2 * (count + 1) > keys.length ? 2 * keys.length : keys.length;
+            TypeIds table = new TypeIds(new IEventType[size], new short[size], count + 1);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) table.put(keys[i], ids[i]);
+            }
+            table.put(type, id);
+            return table;
+        }
+
+        private void put(IEventType type, short id) {
+            int mask = keys.length - 1;
+            int i = System.identityHashCode(type) & mask;
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = type;
+            ids[i] = id;
+        }
+    }
+}
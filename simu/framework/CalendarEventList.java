@@ -0,0 +1,245 @@
+package simu.framework;
+
+/**
+ * EventList backed by a calendar queue (R. Brown, "Calendar queues: a fast O(1) priority
+ * queue implementation for the simulation event set problem", CACM 31(10), 1988).
+ *
+ * Time is divided into buckets of equal width. A bucket holds the events of every
+ * "year" (one pass over all buckets) whose time falls into it, as a sorted linked list.
+ * Dequeueing scans forward from the bucket of the last removed event, so with a well
+ * chosen width both add and remove cost O(1) amortized.
+ *
+ * The number of buckets doubles when the list holds more than two events per bucket
+ * and halves when it holds less than one event per two buckets. On every resize the
+ * bucket width is re-estimated from the separation of the earliest pending events.
+ * Because the event time distribution can drift while the population stays constant,
+ * the list also counts the buckets scanned and list nodes walked per operation and
+ * re-estimates the width when that cost grows beyond a small constant.
+ *
+ * Events with equal time are returned in insertion order.
+ */
+public class CalendarEventList extends EventList {
+    private static final int MIN_BUCKETS = 2;
+    private static final int SAMPLE_SIZE = 25;   // events used to estimate the bucket width
+    private static final int MAX_STEPS_PER_OP = 8; // average scan cost that triggers a new width
+
+    private Event[] buckets;       // head of a time-sorted linked list per bucket
+    private double width;          // time span covered by one bucket
+    private int size = 0;
+    private long currentBucket = 0; // unwrapped index of the bucket the scan is positioned at
+
+    // Cost accounting since the last resize
+    private long operations = 0;
+    private long steps = 0;
+
+    private final Event[] sample = new Event[SAMPLE_SIZE];
+
+    public CalendarEventList() {
+        this(MIN_BUCKETS, 1.0);
+    }
+
+    /**
+     * @param initialBuckets initial number of buckets
+     * @param initialWidth initial time span of one bucket, re-estimated on the first resize
+     */
+    public CalendarEventList(int initialBuckets, double initialWidth) {
+        if (initialWidth <= 0) {
+            throw new IllegalArgumentException("Bucket width must be greater than 0");
+        }
+        buckets = new Event[Math.max(MIN_BUCKETS, initialBuckets)];
+        width = initialWidth;
+    }
+
+    @Override
+    public Event peek() {
+        if (size == 0) return null;
+        return buckets[locateFirst()];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Current number of buckets
+     */
+    public int getBucketCount() {
+        return buckets.length;
+    }
+
+    /**
+     * @return Current time span of one bucket
+     */
+    public double getBucketWidth() {
+        return width;
+    }
+
+    @Override
+    protected void insert(Event e) {
+        link(e);
+        size++;
+        if (size > 2 * buckets.length) {
+            resize(2 * buckets.length);
+        } else {
+            checkCost();
+        }
+    }
+
+    @Override
+    protected Event removeFirst() {
+        Event first = pop();
+        if (size < buckets.length / 2 && buckets.length > MIN_BUCKETS) {
+            resize(buckets.length / 2);
+        } else {
+            checkCost();
+        }
+        return first;
+    }
+
+    /**
+     * Re-estimate the bucket width once enough operations have been observed to amortize
+     * the rebuild and their average cost shows that the width no longer fits the events.
+     */
+    private void checkCost() {
+        operations++;
+        if (operations >= 2L * buckets.length && steps > MAX_STEPS_PER_OP * operations) {
+            resize(buckets.length);
+        }
+    }
+
+    /** Unlink the earliest event without resizing */
+    private Event pop() {
+        int i = locateFirst();
+        Event first = buckets[i];
+        buckets[i] = first.next;
+        first.next = null;
+        size--;
+        return first;
+    }
+
+    /** Insert an event into its bucket, after all events with the same or earlier time */
+    private void link(Event e) {
+        long vb = virtualBucket(e.getTime());
+        int i = Math.floorMod(vb, buckets.length);
+
+        Event prev = null;
+        Event cur = buckets[i];
+        while (cur != null && cur.getTime() <= e.getTime()) {
+            prev = cur;
+            cur = cur.next;
+            steps++;
+        }
+        e.next = cur;
+        if (prev == null) buckets[i] = e;
+        else prev.next = e;
+
+        // An event earlier than the scan position would otherwise be skipped for a whole year
+        if (vb < currentBucket) currentBucket = vb;
+    }
+
+    /**
+     * Position the scan at the earliest event. All pending events lie at or after
+     * currentBucket, so the first bucket whose head belongs to the bucket being
+     * scanned holds the minimum.
+     *
+     * @return array index of the bucket whose head is the earliest event
+     */
+    private int locateFirst() {
+        int n = buckets.length;
+        long vb = currentBucket;
+        for (int k = 0; k < n; k++, vb++) {
+            int i = Math.floorMod(vb, n);
+            Event head = buckets[i];
+            if (head != null && virtualBucket(head.getTime()) <= vb) {
+                currentBucket = vb;
+                steps += k;
+                return i;
+            }
+        }
+        steps += 2L * n;
+
+        // Nothing within a whole year: jump directly to the earliest head
+        int minIndex = -1;
+        for (int i = 0; i < n; i++) {
+            Event head = buckets[i];
+            if (head != null && (minIndex < 0 || head.getTime() < buckets[minIndex].getTime())) {
+                minIndex = i;
+            }
+        }
+        currentBucket = virtualBucket(buckets[minIndex].getTime());
+        return minIndex;
+    }
+
+    /**
+     * Rebuild the calendar with a new number of buckets and a re-estimated bucket width.
+     */
+    private void resize(int newCount) {
+        // Take out the earliest events (in time order) to estimate the width
+        int n = Math.min(size, SAMPLE_SIZE);
+        for (int k = 0; k < n; k++) {
+            sample[k] = pop();
+        }
+        double newWidth = estimateWidth(n);
+
+        Event[] old = buckets;
+        buckets = new Event[newCount];
+        width = newWidth;
+        currentBucket = Long.MAX_VALUE;
+
+        // The sample goes back first: link() puts an event after those of equal time, and
+        // the sampled events were inserted before any other event of their time. Events
+        // of equal time share an old bucket, whose order is kept.
+        for (int k = 0; k < n; k++) {
+            link(sample[k]);
+            sample[k] = null;
+        }
+        for (Event head : old) {
+            Event cur = head;
+            while (cur != null) {
+                Event next = cur.next;
+                link(cur);
+                cur = next;
+            }
+        }
+        size += n;
+        if (size == 0) currentBucket = 0;
+        operations = 0;
+        steps = 0;
+    }
+
+    /**
+     * Estimate the bucket width as three times the mean separation of the sampled events,
+     * ignoring separations larger than twice the overall mean.
+     *
+     * @param n number of time-ordered events in the sample
+     * @return new bucket width, or the current one if the sample is not informative
+     */
+    private double estimateWidth(int n) {
+        if (n < 2) return width;
+
+        double mean = (sample[n - 1].getTime() - sample[0].getTime()) / (n - 1);
+        if (mean <= 0) return width;
+
+        double sum = 0;
+        int count = 0;
+        for (int k = 1; k < n; k++) {
+            double gap = sample[k].getTime() - sample[k - 1].getTime();
+            if (gap <= 2 * mean) {
+                sum += gap;
+                count++;
+            }
+        }
+        double w = 3.0 * sum / count;
+        return w > 0 ? w : width;
+    }
+
+    private long virtualBucket(double time) {
+        return (long) Math.floor(time / width);
+    }
+}
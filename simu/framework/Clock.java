@@ -1,22 +1,45 @@
 package simu.framework;
 
 /**
- * Singleton for holding global simulation time.
+ * Holds simulation time.
  * Provides methods to get, set, advance, and reset the clock.
+ *
+ * Every engine owns its own clock and hands it to its components through the
+ * {@link SimulationContext}. For code that still uses the former singleton,
+ * {@link #getInstance()} returns the clock of the engine running on the current
+ * thread, or a process-wide default clock outside of a run.
  */
 public class Clock {
     private double clock;
-    private static Clock instance;
 
-    private Clock() {
+    private static final Clock defaultInstance = new Clock();
+    private static final ThreadLocal<Clock> current = new ThreadLocal<>();
+
+    public Clock() {
         clock = 0;
     }
 
+    /**
+     * Compatibility shim for the former global clock.
+     *
+     * @return Clock of the engine running on this thread, or the default clock
+     */
     public static Clock getInstance() {
-        if (instance == null) {
-            instance = new Clock();
-        }
-        return instance;
+        Clock c = current.get();
+        return c != null ? c : defaultInstance;
+    }
+
+    /**
+     * Make the given clock the one returned by {@link #getInstance()} on this thread.
+     *
+     * @param c clock to bind, or null to fall back to the default clock
+     * @return Clock bound before, or null
+     */
+    static Clock bind(Clock c) {
+        Clock previous = current.get();
+        if (c == null) current.remove();
+        else current.set(c);
+        return previous;
     }
 
     /**
@@ -34,7 +57,7 @@ public class Clock {
         if (newTime >= clock) {
             clock = newTime;
         } else {
-            Trace.out(Trace.Level.WARN, "Attempted to move clock backwards to " + newTime);
+            Trace.out(Trace.Level.WARN, "Attempted to move clock backwards to %s", newTime);
         }
     }
 
@@ -0,0 +1,214 @@
+package simu.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Reads a columnar file written by {@link ColumnarWriter}.
+ *
+ * A column is read chunk by chunk, each chunk of it mapped from the file as an
+ * {@link IntBuffer}, {@link LongBuffer} or {@link DoubleBuffer}, so scanning one column
+ * touches neither the other columns nor any row objects.
+ *
+ * Usage: java simu.framework.ColumnarReader file [column...]
+ * prints the count, mean, spread and quantiles of the given columns, or of all, over
+ * their finite non-negative values.
+ */
+public class ColumnarReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final long rowCount;
+    private final String[] names;
+    private final ColumnarWriter.Type[] types;
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private final int[] chunkSizes;
+    private final long[] chunkOffsets;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java simu.framework.ColumnarReader file [column...]");
+            System.exit(1);
+        }
+        try (ColumnarReader in = new ColumnarReader(Paths.get(args[0]))) {
+            System.out.println(in.getRowCount() + " rows in " + in.getChunkCount() + " chunks");
+            for (Map.Entry<String, String> a : in.getAttributes().entrySet()) {
+                System.out.println(a.getKey() + ": " + a.getValue());
+            }
+            int n = args.length > 1 ? args.length - 1 : in.getColumnCount();
+            for (int i = 0; i < n; i++) {
+                int column = args.length > 1 ? in.getColumn(args[i + 1]) : i;
+                StreamingStatistic s = new StreamingStatistic(in.getColumnName(column));
+                in.scan(column, x -> {
+                    if (x >= 0 && x < Double.POSITIVE_INFINITY) s.add(x);
+                });
+                System.out.println(s.format());
+            }
+        }
+    }
+
+    /**
+     * @param file columnar file
+     * @throws IOException if the file cannot be read, is not a columnar file or was not closed
+     */
+    public ColumnarReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(ColumnarWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            if (header.position() < ColumnarWriter.HEADER_SIZE || header.getLong(0) != ColumnarWriter.MAGIC) {
+                throw new IOException(file + " is not a columnar file");
+            }
+            rowCount = header.getLong(16);
+            long footer = header.getLong(24);
+            if (footer == 0) {
+                throw new IOException(file + " was not closed properly, the footer is missing");
+            }
+
+            ByteBuffer bytes = ByteBuffer.allocate((int) (channel.size() - footer));
+            channel.read(bytes, footer);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array()));
+            ColumnarWriter.Type[] all = ColumnarWriter.Type.values();
+            names = new String[in.readInt()];
+            types = new ColumnarWriter.Type[names.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readUTF();
+                types[i] = all[in.readByte()];
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                attributes.put(in.readUTF(), in.readUTF());
+            }
+            chunkSizes = new int[in.readInt()];
+            chunkOffsets = new long[chunkSizes.length];
+            for (int i = 0; i < chunkSizes.length; i++) {
+                chunkSizes[i] = in.readInt();
+                chunkOffsets[i] = in.readLong();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return names.length;
+    }
+
+    public String getColumnName(int column) {
+        return names[column];
+    }
+
+    public ColumnarWriter.Type getColumnType(int column) {
+        return types[column];
+    }
+
+    /**
+     * @param name name of a column
+     * @return Index of the column
+     * @throws IllegalArgumentException if the table has no such column
+     */
+    public int getColumn(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) return i;
+        }
+        throw new IllegalArgumentException("No column " + name);
+    }
+
+    /**
+     * @return Attributes stored with the table, see {@link ColumnarWriter#setAttribute}
+     */
+    public Map<String, String> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    public int getChunkCount() {
+        return chunkSizes.length;
+    }
+
+    /**
+     * @return Number of rows in a chunk
+     */
+    public int getChunkRows(int chunk) {
+        return chunkSizes[chunk];
+    }
+
+    /**
+     * @return Values of an int column in a chunk, mapped from the file
+     */
+    public IntBuffer getInts(int chunk, int column) throws IOException {
+        return map(chunk, column, ColumnarWriter.Type.INT).asIntBuffer();
+    }
+
+    /**
+     * @return Values of a long column in a chunk, mapped from the file
+     */
+    public LongBuffer getLongs(int chunk, int column) throws IOException {
+        return map(chunk, column, ColumnarWriter.Type.LONG).asLongBuffer();
+    }
+
+    /**
+     * @return Values of a double column in a chunk, mapped from the file
+     */
+    public DoubleBuffer getDoubles(int chunk, int column) throws IOException {
+        return map(chunk, column, ColumnarWriter.Type.DOUBLE).asDoubleBuffer();
+    }
+
+    /**
+     * Pass every value of a column, of any type, in row order.
+     *
+     * @param column index of the column
+     * @param action called with each value
+     */
+    public void scan(int column, DoubleConsumer action) throws IOException {
+        for (int chunk = 0; chunk < chunkSizes.length; chunk++) {
+            switch (types[column]) {
+                case INT -> {
+                    IntBuffer values = getInts(chunk, column);
+                    for (int i = 0; i < values.limit(); i++) action.accept(values.get(i));
+                }
+                case LONG -> {
+                    LongBuffer values = getLongs(chunk, column);
+                    for (int i = 0; i < values.limit(); i++) action.accept(values.get(i));
+                }
+                case DOUBLE -> {
+                    DoubleBuffer values = getDoubles(chunk, column);
+                    for (int i = 0; i < values.limit(); i++) action.accept(values.get(i));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer map(int chunk, int column, ColumnarWriter.Type type) throws IOException {
+        if (types[column] != type) {
+            throw new IllegalArgumentException("Column " + names[column] + " holds " + types[column] + " values, not " + type);
+        }
+        long offset = chunkOffsets[chunk];
+        for (int i = 0; i < column; i++) {
+            offset += (long) chunkSizes[chunk] * types[i].getWidth();
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) chunkSizes[chunk] * type.getWidth())
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,318 @@
+package simu.framework;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes a table of fixed-width primitive columns to a columnar binary file, e.g. one
+ * row per visitor for offline analysis.
+ *
+ * Rows are collected in chunks of {@link #getChunkRows()} rows, one direct buffer per
+ * column. A full chunk is handed to a background thread, which appends its columns to
+ * the file with one gathering write, while the simulation thread goes on filling the
+ * next chunk. The simulation thread only waits when all chunks are queued for writing,
+ * i.e. when the disk cannot keep up at all.
+ *
+ * File layout, read by {@link ColumnarReader}:
+ * - header of {@value #HEADER_SIZE} bytes: magic, rows per chunk, row count, footer offset
+ * - chunks: the values of each column in turn, rows of the chunk times the column width
+ * - footer written on {@link #close()}: columns (name, type), attributes (name, value)
+ *   and the row count and file offset of every chunk, in {@link DataOutputStream} format
+ * The header and the column values are little-endian, so the reader maps the columns
+ * of a chunk as they are.
+ */
+public class ColumnarWriter implements AutoCloseable {
+    static final long MAGIC = 0x31534C4F43505050L; // "PPPCOLS1"
+    static final int HEADER_SIZE = 64;
+
+    private static final int DEFAULT_CHUNK_ROWS = 1 << 16;
+    private static final int CHUNKS = 4;  // filling, queued and being written
+
+    /** Type of a column */
+    public enum Type {
+        INT(4), LONG(8), DOUBLE(8);
+
+        private final int width;
+
+        Type(int width) {
+            this.width = width;
+        }
+
+        /**
+         * @return Bytes per value
+         */
+        public int getWidth() {
+            return width;
+        }
+    }
+
+    private final int chunkRows;
+    private final List<String> names = new ArrayList<>();
+    private final List<Type> types = new ArrayList<>();
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+
+    private final FileChannel channel;
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(CHUNKS);
+    private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(CHUNKS + 1);
+    private Chunk chunk;                      // being filled, null until the first row
+    private int row = 0;                      // position in the chunk of the row being set
+    private long rowCount = 0;
+
+    // Written by the background thread, read once it has finished
+    private final List<Integer> chunkSizes = new ArrayList<>();
+    private final List<Long> chunkOffsets = new ArrayList<>();
+    private long position = HEADER_SIZE;
+    private Thread writer;
+    private volatile IOException failure;
+    private boolean closed = false;
+
+    /**
+     * Create a writer with chunks of 65536 rows.
+     *
+     * @param file file to write, created or overwritten
+     * @throws IOException if the file cannot be opened
+     */
+    public ColumnarWriter(Path file) throws IOException {
+        this(file, DEFAULT_CHUNK_ROWS);
+    }
+
+    /**
+     * @param file file to write, created or overwritten
+     * @param chunkRows rows per chunk; each column of a chunk is written at once
+     * @throws IOException if the file cannot be opened
+     */
+    public ColumnarWriter(Path file, int chunkRows) throws IOException {
+        if (chunkRows < 1) throw new IllegalArgumentException("A chunk needs at least one row");
+        this.chunkRows = chunkRows;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        writeHeader(0);
+    }
+
+    /**
+     * Add a column. All columns are added before the first row.
+     *
+     * @param name name of the column, unique in the table
+     * @param type type of its values
+     * @return Index of the column, to set its values with
+     */
+    public int addColumn(String name, Type type) {
+        if (chunk != null) throw new IllegalStateException("Columns must be added before the first row");
+        if (names.contains(name)) throw new IllegalArgumentException("Column " + name + " already exists");
+        names.add(name);
+        types.add(type);
+        return names.size() - 1;
+    }
+
+    /**
+     * Store a named text with the table, e.g. the names of the event types whose
+     * ordinals a column holds. It is written on {@link #close()}, so it may be set at
+     * any time before.
+     */
+    public void setAttribute(String name, String value) {
+        attributes.put(name, value);
+    }
+
+    public int getChunkRows() {
+        return chunkRows;
+    }
+
+    public void setInt(int column, int value) {
+        current().columns[column].putInt(row * 4, value);
+    }
+
+    public void setLong(int column, long value) {
+        current().columns[column].putLong(row * 8, value);
+    }
+
+    public void setDouble(int column, double value) {
+        current().columns[column].putDouble(row * 8, value);
+    }
+
+    /**
+     * Finish the current row; the next values set belong to a new row. Values not set
+     * in a row are undefined.
+     */
+    public void endRow() {
+        current();
+        rowCount++;
+        if (++row == chunkRows) {
+            chunk.rows = row;
+            handOver(chunk);
+            chunk = null;
+            row = 0;
+        }
+    }
+
+    /**
+     * @return Number of rows finished so far
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Write the remaining rows and the footer, and close the file.
+     *
+     * @throws UncheckedIOException if the file could not be written
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (chunk != null && row > 0) {
+            chunk.rows = row;
+            handOver(chunk);
+        }
+        if (writer != null) {
+            handOver(Chunk.END);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            if (failure != null) throw failure;
+            long footer = position;
+            ByteBuffer bytes = ByteBuffer.wrap(footer());
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+            writeHeader(footer);
+            channel.truncate(position);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not finish columnar file", e);
+        }
+    }
+
+    /** Chunk the values of the current row go to, started on the first value */
+    private Chunk current() {
+        if (chunk == null) {
+            if (closed) throw new IllegalStateException("Columnar writer is closed");
+            if (names.isEmpty()) throw new IllegalStateException("Columnar writer has no columns");
+            if (writer == null) start();
+            try {
+                chunk = free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the columnar writer", e);
+            }
+        }
+        return chunk;
+    }
+
+    private void start() {
+        for (int i = 0; i < CHUNKS; i++) {
+            ByteBuffer[] columns = new ByteBuffer[names.size()];
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = ByteBuffer.allocateDirect(chunkRows * types.get(c).width).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            free.add(new Chunk(columns));
+        }
+        writer = new Thread(this::writeLoop, "columnar-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void handOver(Chunk c) {
+        if (failure != null) throw new UncheckedIOException("Could not write columnar file", failure);
+        try {
+            full.put(c);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing a chunk to the columnar writer", e);
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Chunk c = full.take();
+                if (c == Chunk.END) break;
+                if (failure == null) write(c);
+                free.add(c);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Append the columns of a chunk to the file, each cut to the rows of the chunk */
+    private void write(Chunk c) {
+        try {
+            long remaining = 0;
+            for (int i = 0; i < c.columns.length; i++) {
+                c.columns[i].clear().limit(c.rows * types.get(i).width);
+                remaining += c.columns[i].limit();
+            }
+            chunkSizes.add(c.rows);
+            chunkOffsets.add(position);
+            channel.position(position);
+            while (remaining > 0) {
+                remaining -= channel.write(c.columns);
+            }
+            position = channel.position();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void writeHeader(long footerOffset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC);
+        header.putLong(chunkRows);
+        header.putLong(rowCount);
+        header.putLong(footerOffset);
+        header.rewind();
+        channel.write(header, 0);
+    }
+
+    private byte[] footer() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            out.writeUTF(names.get(i));
+            out.writeByte(types.get(i).ordinal());
+        }
+        out.writeInt(attributes.size());
+        for (Map.Entry<String, String> a : attributes.entrySet()) {
+            out.writeUTF(a.getKey());
+            out.writeUTF(a.getValue());
+        }
+        out.writeInt(chunkSizes.size());
+        for (int i = 0; i < chunkSizes.size(); i++) {
+            out.writeInt(chunkSizes.get(i));
+            out.writeLong(chunkOffsets.get(i));
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /** Rows of one chunk, a buffer per column */
+    private static final class Chunk {
+        static final Chunk END = new Chunk(new ByteBuffer[0]); // tells the background thread to stop
+
+        final ByteBuffer[] columns;
+        int rows;
+
+        Chunk(ByteBuffer[] columns) {
+            this.columns = columns;
+        }
+    }
+}
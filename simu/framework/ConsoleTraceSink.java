@@ -0,0 +1,23 @@
+package simu.framework;
+
+/**
+ * Prints every diagnostic message synchronously to System.out.
+ * This is the default sink of {@link Trace}.
+ */
+public class ConsoleTraceSink implements TraceSink {
+
+    @Override
+    public void text(Trace.Level lvl, double time, String txt) {
+        System.out.println("[" + lvl + " @ " + time + "] " + txt);
+    }
+
+    @Override
+    public void record(Trace.Level lvl, double time, int messageId, IEventType type, int visitorId, double value) {
+        text(lvl, time, Trace.format(Trace.getMessage(messageId), type == null ? null : type.toString(), visitorId, value));
+    }
+
+    @Override
+    public void close() {
+        System.out.flush();
+    }
+}
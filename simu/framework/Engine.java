@@ -1,5 +1,15 @@
 package simu.framework;
 
+import eduni.distributions.SeedGenerator;
+import simu.model.Visitor;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * Engine implements a three-phase simulator.
  * See <a href="https://www.jstor.org/stable/2584330">Three-Phase Simulator</a>
@@ -8,16 +18,39 @@ package simu.framework;
  * the abstract methods for their specific simulation model.
  */
 public abstract class Engine {
+    private static final int MSG_A_PHASE = Trace.registerMessage("\nA-phase: time is {value}");
+    private static final int MSG_B_PHASE = Trace.registerMessage("\nB-phase:");
+    private static final int MSG_C_PHASE = Trace.registerMessage("\nC-phase:");
+
     private double simulationTime = 0;   // time when the simulation will be stopped
-    private Clock clock;                 // shortcut to global simulation clock
+    private boolean reporting = true;    // print reports while and after running
+    private boolean initialized = false; // initialize() has been called, by a run or a restored run
+    private StoppingRule stoppingRule;   // ends the run early once the outputs are precise enough
+    private EventExport eventExport;     // gets every B-event run, null without export
+    protected Clock clock;               // simulation clock of this engine
     protected EventList eventList;       // events to be processed are stored here
+    protected EventPool eventPool;       // recycled Event objects of eventList
+    protected SimulationContext context; // clock and event list handed to the model components
 
     /**
      * Service Points are created in simu.model-package's class inheriting the Engine class
      */
     public Engine() {
-        clock = Clock.getInstance();
-        eventList = new EventList();
+        this(new HeapEventList());
+    }
+
+    /**
+     * Create an engine that keeps its pending events in the given event list,
+     * e.g. a {@link CalendarEventList} for models with many pending events.
+     *
+     * @param eventList empty event list implementation to use
+     */
+    public Engine(EventList eventList) {
+        clock = new Clock();
+        this.eventList = eventList;
+        eventPool = new EventPool();
+        eventList.setEventPool(eventPool);
+        context = new SimulationContext(clock, eventList);
     }
 
     /**
@@ -28,37 +61,279 @@ public abstract class Engine {
         simulationTime = time;
     }
 
+    /**
+     * @return Ending time of the simulation
+     */
+    protected double getSimulationTime() {
+        return simulationTime;
+    }
+
+    /**
+     * Stop the simulation as soon as the rule is satisfied, checked after every time
+     * step. The simulation time still applies as an upper limit; set it to
+     * Double.POSITIVE_INFINITY to run until the rule is satisfied.
+     *
+     * @param rule stopping rule whose outputs the model observes, or null to run for the simulation time
+     */
+    public void setStoppingRule(StoppingRule rule) {
+        stoppingRule = rule;
+    }
+
+    public StoppingRule getStoppingRule() {
+        return stoppingRule;
+    }
+
+    /**
+     * Export every B-event run from now on, e.g. for offline analysis of a run. The
+     * caller closes the export once the runs are over. A row per event costs far more
+     * than the visitor export, see {@link EventExport}.
+     *
+     * @param export export to add the events to, or null to stop exporting
+     */
+    public void setEventExport(EventExport export) {
+        eventExport = export;
+        if (export == null) return;
+        try {
+            export.setEventTypes(getEventTypes());
+        } catch (UnsupportedOperationException e) {
+            // The export collects the type names from the events instead
+        }
+    }
+
+    /**
+     * Turn the printed reports of the model on or off, e.g. when many replications
+     * run in parallel and only {@link #getResults()} is of interest.
+     *
+     * @param reporting false to run silently
+     */
+    public void setReporting(boolean reporting) {
+        this.reporting = reporting;
+    }
+
+    public boolean isReporting() {
+        return reporting;
+    }
+
+    /**
+     * @return Pool of the Event objects scheduled through this engine's event list
+     */
+    public EventPool getEventPool() {
+        return eventPool;
+    }
+
+    /**
+     * @return Clock and event list shared by the components of this engine
+     */
+    public SimulationContext getContext() {
+        return context;
+    }
+
     /**
      * The starting point of the simulator. Returns when the simulation ends.
+     * While running, this engine's clock is what {@link Clock#getInstance()} returns on this thread.
+     * Running again, e.g. after setting a later simulation time, continues where the
+     * previous run stopped.
      */
     public void run() {
-        initialize();
+        Clock previous = Clock.bind(clock);
+        try {
+            runPhases();
+        } finally {
+            Clock.bind(previous);
+        }
+    }
+
+    /**
+     * The simulation itself, run with the engine's clock bound to the thread.
+     * Engines that synchronise with other engines, such as logical processes of a
+     * parallel simulation, replace this loop and build on {@link #runBEvents()} and
+     * {@link #tryCEvents()}.
+     */
+    protected void runPhases() {
+        if (!initialized) {
+            initialize();
+            initialized = true;
+        }
 
         while (simulate()) {
             double nextTime = currentTime();
             if (!Double.isNaN(nextTime) && nextTime > clock.getClock()) {
-                Trace.out(Trace.Level.INFO, "\nA-phase: time is " + nextTime);
+                Trace.out(Trace.Level.INFO, MSG_A_PHASE, null, Trace.NO_VISITOR, nextTime);
                 clock.advanceTo(nextTime);
             }
 
-            Trace.out(Trace.Level.INFO, "\nB-phase:");
+            Trace.out(Trace.Level.INFO, MSG_B_PHASE, null, Trace.NO_VISITOR, 0);
             runBEvents();
 
-            Trace.out(Trace.Level.INFO, "\nC-phase:");
+            Trace.out(Trace.Level.INFO, MSG_C_PHASE, null, Trace.NO_VISITOR, 0);
             tryCEvents();
         }
 
-        results();
+        if (reporting) results();
+    }
+
+
+    /**
+     * Write the complete state of the simulation to a snapshot file: the clock, the
+     * pending events and the state of the model, i.e. its service points, visitors,
+     * stats and random stream positions. Call it between runs, e.g. after running to a
+     * warm-up time. An engine restored from the snapshot continues exactly like this one.
+     *
+     * @param file snapshot file, created or overwritten
+     * @throws IOException if the file cannot be written
+     * @throws UnsupportedOperationException if the model does not support snapshots
+     */
+    public void saveSnapshot(Path file) throws IOException {
+        try (SnapshotWriter out = new SnapshotWriter(file)) {
+            writeModel(out);
+            out.writeDouble(clock.getClock());
+            out.writeInt(context.getVisitorCount());
+            out.writeBoolean(initialized);
+            writeState(out);
+            writeEvents(out);
+            out.finish();
+        }
+    }
+
+    /**
+     * Replace the state of this engine with a snapshot saved by an engine of the same
+     * model and parameters. The next {@link #run()} continues from the snapshot.
+     *
+     * The model and its event types are checked before anything is changed. The rest,
+     * e.g. the number of servers, only shows while the state is read, so the current
+     * state is saved to a temporary file first and put back if the snapshot does not
+     * fit. A model that cannot save its current state, e.g. {@code MyEngine} while it
+     * detects the warm-up, is left in an undefined state by a failed restore.
+     *
+     * @param file snapshot file
+     * @throws IOException if the file cannot be read, is not a snapshot or does not fit this engine
+     * @throws UnsupportedOperationException if the model does not support snapshots
+     */
+    public void restoreSnapshot(Path file) throws IOException {
+        SnapshotReader in = new SnapshotReader(file, context);
+        try {
+            if (!readModel(in)) throw new IOException(file + " was saved by another model");
+        } catch (BufferUnderflowException e) {
+            throw new IOException(file + " was saved by another model", e);
+        }
+
+        Path backup = Files.createTempFile("engine", ".snapshot");
+        try {
+            try {
+                saveSnapshot(backup);
+            } catch (IllegalStateException e) {
+                Files.delete(backup); // the current state cannot be kept
+                backup = null;
+            }
+            try {
+                readSnapshot(in);
+                if (!in.isAtEnd()) throw new IOException(file + " was saved by another model");
+            } catch (IOException | RuntimeException e) {
+                if (backup != null) {
+                    SnapshotReader previous = new SnapshotReader(backup, context);
+                    readModel(previous);
+                    readSnapshot(previous);
+                }
+                if (e instanceof IOException io) throw io;
+                if (e instanceof BufferUnderflowException || e instanceof IllegalArgumentException
+                        || e instanceof IllegalStateException || e instanceof IndexOutOfBoundsException) {
+                    throw new IOException(file + " does not fit this engine: "
+                            + (e.getMessage() != null ? e.getMessage() : e.toString()), e);
+                }
+                throw e;
+            }
+        } finally {
+            if (backup != null) Files.delete(backup);
+        }
+    }
+
+    /** Write what identifies the model: the engine class and its event types */
+    private void writeModel(SnapshotWriter out) throws IOException {
+        IEventType[] types = getEventTypes();
+        out.writeString(getClass().getName());
+        out.writeInt(types.length);
+        for (IEventType type : types) {
+            out.writeString(type.toString());
+        }
+    }
+
+    /**
+     * @return true if the snapshot was saved by an engine of this class with the same event types
+     */
+    private boolean readModel(SnapshotReader in) {
+        IEventType[] types = getEventTypes();
+        if (!getClass().getName().equals(in.readString()) || in.readInt() != types.length) return false;
+        for (IEventType type : types) {
+            if (!type.toString().equals(in.readString())) return false;
+        }
+        return true;
+    }
+
+    /** Replace the state of this engine with the one read from the snapshot */
+    private void readSnapshot(SnapshotReader in) {
+        while (!eventList.isEmpty()) {
+            eventList.release(eventList.removeFirst());
+        }
+        clock.setClock(in.readDouble());
+        context.setVisitorCount(in.readInt());
+        initialized = in.readBoolean();
+        readState(in);
+        readEvents(in);
+    }
+
+    /**
+     * The pending events are taken out in order and put back in the same order, so the
+     * event list of this engine ends up like the one restored from the snapshot and
+     * events with equal times are run in the same order by both.
+     */
+    private void writeEvents(SnapshotWriter out) throws IOException {
+        int n = eventList.size();
+        IEventType[] types = new IEventType[n];
+        double[] times = new double[n];
+        Visitor[] visitors = new Visitor[n];
+        int[] handles = new int[n];
+        for (int i = 0; i < n; i++) {
+            Event e = eventList.removeFirst();
+            types[i] = e.getType();
+            times[i] = e.getTime();
+            visitors[i] = e.getVisitor();
+            handles[i] = e.getHandle();
+            eventList.release(e);
+        }
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            eventList.insert(handles[i] != Event.NO_HANDLE ? eventPool.acquire(types[i], times[i], handles[i])
+                    : eventPool.acquire(types[i], times[i], visitors[i]));
+            out.writeInt(types[i].ordinal());
+            out.writeDouble(times[i]);
+            out.writeVisitor(visitors[i]);
+            out.writeInt(handles[i]);
+        }
     }
 
+    private void readEvents(SnapshotReader in) {
+        IEventType[] types = getEventTypes();
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            IEventType type = types[in.readInt()];
+            double time = in.readDouble();
+            Visitor visitor = in.readVisitor();
+            int handle = in.readInt();
+            eventList.insert(handle != Event.NO_HANDLE ? eventPool.acquire(type, time, handle)
+                    : eventPool.acquire(type, time, visitor));
+        }
+    }
 
     /**
      * Execute all B-events (bound to time) at the current time, removing them from the event list.
+     * Every event is handed back to the event list (and from there to the pool) right after it has been run.
      */
-    private void runBEvents() {
+    protected final void runBEvents() {
         while (!eventList.isEmpty() && eventList.getNextEventTime() == clock.getClock()) {
             Event e = eventList.remove();
+            if (eventExport != null) eventExport.add(e);
             runEvent(e);
+            eventList.release(e);
         }
     }
 
@@ -73,12 +348,14 @@ public abstract class Engine {
      * @return true if we should continue simulation
      */
     private boolean simulate() {
-        return !eventList.isEmpty() && clock.getClock() < simulationTime;
+        return !eventList.isEmpty() && clock.getClock() < simulationTime
+                && (stoppingRule == null || !stoppingRule.isSatisfied());
     }
 
     /**
      * Execute event actions (e.g., removing visitor from the queue).
      * Defined in simu.model-package's class inheriting Engine.
+     * The event is recycled when this method returns, so it must not be stored.
      *
      * @param e The event to be executed
      */
@@ -101,4 +378,57 @@ public abstract class Engine {
      * Called at the end of the simulation.
      */
     protected abstract void results();
+
+    /**
+     * Write the state of the model to a snapshot, everything but the clock and the
+     * event list. Models supporting {@link #saveSnapshot} override this.
+     */
+    protected void writeState(SnapshotWriter out) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support snapshots");
+    }
+
+    /**
+     * Replace the state of the model with the one written by {@link #writeState}.
+     */
+    protected void readState(SnapshotReader in) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support snapshots");
+    }
+
+    /**
+     * @return All event types the model schedules, indexed by ordinal, to restore pending events
+     */
+    protected IEventType[] getEventTypes() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support snapshots");
+    }
+
+    /**
+     * Continue all random streams from new seeds, taken from the generator in the same
+     * order as when the engine was created. Used to fork independent runs from one
+     * restored snapshot, e.g. measurement runs after a common warm-up.
+     *
+     * @param seeds source of the new seeds
+     */
+    public void reseed(SeedGenerator seeds) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be reseeded");
+    }
+
+    /**
+     * Measurement values of the finished simulation by name, used to merge replications.
+     * Models override this; the default has no values.
+     *
+     * @return Results of the run, in a stable order
+     */
+    public Map<String, Double> getResults() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Distributions of the outputs of the simulation, merged over the replications by
+     * {@link ReplicationRunner}. Models override this; the default collects none.
+     *
+     * @return Statistics of the run, or null
+     */
+    public StatisticsCollector getStatistics() {
+        return null;
+    }
 }
\ No newline at end of file
@@ -6,14 +6,26 @@ import simu.model.Visitor;
  * Event holds three-phase simulation event information:
  * - type of the event
  * - time of the event
- * - associated visitor
+ * - associated visitor, either a Visitor object or a handle into a
+ *   {@link simu.model.VisitorTable}
  *
  * Events are compared according to time.
+ *
+ * Events scheduled through {@link EventList#schedule} come from the engine's
+ * {@link EventPool} and are recycled after the B-phase has run them, so references
+ * to an event must not be kept beyond {@code Engine.runEvent}.
  */
 public class Event implements Comparable<Event> {
+    /** Handle of an event without a visitor table handle */
+    public static final int NO_HANDLE = -1;
+
     private IEventType type;
     private double time;
     private Visitor visitor; // link to the visitor involved in this event
+    private int handle = NO_HANDLE; // or the visitor's handle in a visitor table
+
+    Event next; // intrusive link used by CalendarEventList buckets and the EventPool free list
+    private boolean released = false;
 
     public Event(IEventType type, double time) {
         this.type = type;
@@ -26,11 +38,21 @@ public class Event implements Comparable<Event> {
         this.visitor = visitor;
     }
 
+    /**
+     * @param handle handle of the visitor involved in the event, in a visitor table
+     */
+    public Event(IEventType type, double time, int handle) {
+        this.type = type;
+        this.time = time;
+        this.handle = handle;
+    }
+
     public void setType(IEventType type) {
         this.type = type;
     }
 
     public IEventType getType() {
+        checkLive();
         return type;
     }
 
@@ -39,10 +61,12 @@ public class Event implements Comparable<Event> {
     }
 
     public double getTime() {
+        checkLive();
         return time;
     }
 
     public Visitor getVisitor() {
+        checkLive();
         return visitor;
     }
 
@@ -50,6 +74,53 @@ public class Event implements Comparable<Event> {
         this.visitor = visitor;
     }
 
+    /**
+     * @return Handle of the visitor in a visitor table, or {@link #NO_HANDLE}
+     */
+    public int getHandle() {
+        checkLive();
+        return handle;
+    }
+
+    /**
+     * Reinitialize a pooled event for reuse.
+     */
+    void recycle(IEventType type, double time, Visitor visitor) {
+        this.type = type;
+        this.time = time;
+        this.visitor = visitor;
+        handle = NO_HANDLE;
+        released = false;
+    }
+
+    /**
+     * Reinitialize a pooled event for reuse, with a visitor table handle.
+     */
+    void recycle(IEventType type, double time, int handle) {
+        this.type = type;
+        this.time = time;
+        this.visitor = null;
+        this.handle = handle;
+        released = false;
+    }
+
+    /**
+     * Mark the event as returned to the pool and drop its references.
+     */
+    void markReleased() {
+        if (released) {
+            throw new IllegalStateException("Event released twice: " + type + " at time " + time);
+        }
+        released = true;
+        visitor = null;
+    }
+
+    private void checkLive() {
+        if (released) {
+            throw new IllegalStateException("Event used after it was released to the pool: " + type + " at time " + time);
+        }
+    }
+
     @Override
     public int compareTo(Event other) {
         return Double.compare(this.time, other.time);
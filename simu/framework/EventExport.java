@@ -0,0 +1,85 @@
+package simu.framework;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Columnar export of the events an engine runs, one row per event with its time,
+ * event type ordinal, visitor id and visitor table handle. The names of the event
+ * types are stored as the "types" attribute, separated by commas in ordinal order.
+ *
+ * The export is outside the I/O budget of the visitor export. It writes a row for
+ * every event, several per visitor, and can slow a run down by a quarter or more, so
+ * it is meant for debugging and short runs.
+ *
+ * @see Engine#setEventExport(EventExport)
+ */
+public class EventExport implements AutoCloseable {
+    private final ColumnarWriter out;
+    private final int time, type, visitor, handle;
+    private final List<String> typeNames = new ArrayList<>();
+    private boolean typesKnown = false; // all names registered by setEventTypes()
+
+    /**
+     * @param file file to write, created or overwritten
+     * @throws IOException if the file cannot be opened
+     */
+    public EventExport(Path file) throws IOException {
+        out = new ColumnarWriter(file);
+        time = out.addColumn("time", ColumnarWriter.Type.DOUBLE);
+        type = out.addColumn("type", ColumnarWriter.Type.INT);
+        visitor = out.addColumn("visitor", ColumnarWriter.Type.INT);
+        handle = out.addColumn("handle", ColumnarWriter.Type.INT);
+    }
+
+    /**
+     * Register the names of all event types at once, so that adding an event does not
+     * look its type up. Called by {@link Engine#setEventExport} for engines that list
+     * their event types; otherwise the names are collected as events are added.
+     *
+     * @param types all event types, indexed by ordinal
+     */
+    public void setEventTypes(IEventType[] types) {
+        typeNames.clear();
+        for (IEventType t : types) {
+            typeNames.add(t.toString());
+        }
+        typesKnown = true;
+    }
+
+    /**
+     * Add an event about to be run.
+     */
+    public void add(Event e) {
+        IEventType t = e.getType();
+        int ordinal = t.ordinal();
+        if (!typesKnown) {
+            while (typeNames.size() <= ordinal) typeNames.add("");
+            if (typeNames.get(ordinal).isEmpty()) typeNames.set(ordinal, t.toString());
+        }
+
+        out.setDouble(time, e.getTime());
+        out.setInt(type, ordinal);
+        out.setInt(visitor, e.getVisitor() != null ? e.getVisitor().getId() : Trace.NO_VISITOR);
+        out.setInt(handle, e.getHandle());
+        out.endRow();
+    }
+
+    /**
+     * @return Number of events added
+     */
+    public long getCount() {
+        return out.getRowCount();
+    }
+
+    /**
+     * Write the remaining events and close the file.
+     */
+    @Override
+    public void close() {
+        out.setAttribute("types", String.join(",", typeNames));
+        out.close();
+    }
+}
@@ -1,17 +1,26 @@
 package simu.framework;
 
-import java.util.PriorityQueue;
+import simu.model.Visitor;
 
 /**
  * EventList holds events ordered by their scheduled time.
  * The event with the smallest time will be retrieved first.
+ *
+ * This class only defines the API used by the engine and the model; the
+ * actual ordering structure is provided by a subclass:
+ * - {@link HeapEventList}: binary heap, O(log n) per operation (default)
+ * - {@link CalendarEventList}: calendar queue, O(1) amortized per operation
+ * - {@link PrimitiveEventList}: struct-of-arrays heap without per-event objects
+ *
+ * The engine is given its event list at construction time, see {@link Engine#Engine(EventList)}.
  */
-public class EventList {
-    private PriorityQueue<Event> eventlist;
+public abstract class EventList {
+    private static final int MSG_ADD = Trace.registerMessage("Adding event: {type} at time {value} for Visitor {visitor}");
+    private static final int MSG_ADD_NO_VISITOR = Trace.registerMessage("Adding event: {type} at time {value}");
+    private static final int MSG_REMOVE = Trace.registerMessage("Removing event: {type} at time {value} for Visitor {visitor}");
+    private static final int MSG_REMOVE_NO_VISITOR = Trace.registerMessage("Removing event: {type} at time {value}");
 
-    public EventList() {
-        eventlist = new PriorityQueue<>();
-    }
+    private EventPool pool; // recycled events, set by the engine owning this list
 
     /**
      * Retrieve and remove the next event from the list.
@@ -19,29 +28,81 @@ public class EventList {
      * @return The next event, or null if the list is empty
      */
     public Event remove() {
-        if (eventlist.isEmpty()) {
+        if (isEmpty()) {
             Trace.out(Trace.Level.INFO, "Event list empty, nothing to remove");
             return null;
         }
-        Event next = eventlist.remove();
-        Trace.out(Trace.Level.INFO,
-                "Removing event: " + next.getType() +
-                        " at time " + next.getTime() +
-                        (next.getVisitor() != null ? " for Visitor " + next.getVisitor().getId() : ""));
+        Event next = removeFirst();
+        trace(MSG_REMOVE, MSG_REMOVE_NO_VISITOR, next.getType(), next.getTime(), next.getVisitor());
         return next;
     }
 
+    /**
+     * Schedule a new event. The Event object is taken from the engine's pool and
+     * recycled automatically once the B-phase has run it.
+     *
+     * @param type type of the event
+     * @param time time of the event
+     * @param visitor visitor involved in the event, may be null
+     */
+    public void schedule(IEventType type, double time, Visitor visitor) {
+        add(pool != null ? pool.acquire(type, time, visitor) : new Event(type, time, visitor));
+    }
+
+    /**
+     * Schedule a new event for a visitor kept in a visitor table, see {@link #schedule(IEventType, double, Visitor)}.
+     *
+     * @param type type of the event
+     * @param time time of the event
+     * @param handle handle of the visitor in its visitor table
+     */
+    public void schedule(IEventType type, double time, int handle) {
+        add(pool != null ? pool.acquire(type, time, handle) : new Event(type, time, handle));
+    }
+
+    /**
+     * Hand an event returned by {@link #remove()} back once the engine has run it.
+     *
+     * @param e event that is no longer used
+     */
+    public void release(Event e) {
+        if (pool != null) pool.release(e);
+    }
+
+    /**
+     * Set the pool the events scheduled through this list are taken from.
+     * Called by the engine that owns both.
+     *
+     * @param pool event pool of the engine
+     */
+    void setEventPool(EventPool pool) {
+        this.pool = pool;
+    }
+
     /**
      * Add a new event to the list.
      *
      * @param e Event to be inserted
      */
     public void add(Event e) {
-        eventlist.add(e);
-        Trace.out(Trace.Level.INFO,
-                "Adding event: " + e.getType() +
-                        " at time " + e.getTime() +
-                        (e.getVisitor() != null ? " for Visitor " + e.getVisitor().getId() : ""));
+        insert(e);
+        traceAdd(e.getType(), e.getTime(), e.getVisitor());
+    }
+
+    /**
+     * Issue the diagnostic message about an added event.
+     */
+    protected void traceAdd(IEventType type, double time, Visitor visitor) {
+        trace(MSG_ADD, MSG_ADD_NO_VISITOR, type, time, visitor);
+    }
+
+    private void trace(int message, int messageNoVisitor, IEventType type, double time, Visitor visitor) {
+        if (!Trace.isEnabled(Trace.Level.INFO)) return;
+        if (visitor != null) {
+            Trace.out(Trace.Level.INFO, message, type, visitor.getId(), time);
+        } else {
+            Trace.out(Trace.Level.INFO, messageNoVisitor, type, Trace.NO_VISITOR, time);
+        }
     }
 
     /**
@@ -50,8 +111,24 @@ public class EventList {
      * @return Time of the next event, or Double.NaN if list is empty
      */
     public double getNextEventTime() {
-        if (eventlist.isEmpty()) return Double.NaN;
-        return eventlist.peek().getTime();
+        Event next = peek();
+        return next == null ? Double.NaN : next.getTime();
+    }
+
+    /**
+     * @return Type of the next event, or null if list is empty
+     */
+    public IEventType getNextEventType() {
+        Event next = peek();
+        return next == null ? null : next.getType();
+    }
+
+    /**
+     * @return Visitor of the next event, or null if list is empty or the event has no visitor
+     */
+    public Visitor getNextEventVisitor() {
+        Event next = peek();
+        return next == null ? null : next.getVisitor();
     }
 
     /**
@@ -59,16 +136,32 @@ public class EventList {
      *
      * @return The next event, or null if list is empty
      */
-    public Event peek() {
-        return eventlist.peek();
-    }
+    public abstract Event peek();
 
     /**
      * Check if the event list is empty.
      *
      * @return true if empty, false otherwise
      */
-    public boolean isEmpty() {
-        return eventlist.isEmpty();
-    }
-}
\ No newline at end of file
+    public abstract boolean isEmpty();
+
+    /**
+     * @return Number of pending events
+     */
+    public abstract int size();
+
+    /**
+     * Insert an event into the underlying structure.
+     *
+     * @param e Event to be inserted
+     */
+    protected abstract void insert(Event e);
+
+    /**
+     * Remove the earliest event from the underlying structure.
+     * Only called when the list is not empty.
+     *
+     * @return The earliest event
+     */
+    protected abstract Event removeFirst();
+}
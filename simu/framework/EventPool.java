@@ -0,0 +1,104 @@
+package simu.framework;
+
+import simu.model.Visitor;
+
+/**
+ * Pool of recycled Event objects, owned by the engine.
+ *
+ * Events are acquired when they are scheduled (see {@link EventList#schedule}) and
+ * released by the engine as soon as the B-phase has dispatched them, so in steady state
+ * the event path allocates no Event objects at all.
+ *
+ * In debug mode released events are never handed out again. They stay marked as
+ * released, so any later access through a stale reference fails with an
+ * IllegalStateException instead of silently reading another event's data.
+ */
+public class EventPool {
+    private Event free;       // free list, linked through Event.next
+    private int freeCount = 0;
+    private int created = 0;
+    private boolean debug = false;
+
+    /**
+     * Take an event from the pool, or create one if the pool is empty.
+     *
+     * @param type type of the event
+     * @param time time of the event
+     * @param visitor visitor involved in the event, may be null
+     * @return an initialized event
+     */
+    public Event acquire(IEventType type, double time, Visitor visitor) {
+        Event e = free;
+        if (e == null) {
+            created++;
+            return new Event(type, time, visitor);
+        }
+        free = e.next;
+        e.next = null;
+        freeCount--;
+        e.recycle(type, time, visitor);
+        return e;
+    }
+
+    /**
+     * Take an event from the pool for a visitor kept in a visitor table.
+     *
+     * @param type type of the event
+     * @param time time of the event
+     * @param handle handle of the visitor in its visitor table
+     * @return an initialized event
+     */
+    public Event acquire(IEventType type, double time, int handle) {
+        Event e = free;
+        if (e == null) {
+            created++;
+            return new Event(type, time, handle);
+        }
+        free = e.next;
+        e.next = null;
+        freeCount--;
+        e.recycle(type, time, handle);
+        return e;
+    }
+
+    /**
+     * Return an event to the pool. The event must not be used afterwards.
+     *
+     * @param e event that is no longer referenced by the event list or the model
+     */
+    public void release(Event e) {
+        e.markReleased();
+        if (debug) return; // quarantine: keep the event poisoned forever
+        e.next = free;
+        free = e;
+        freeCount++;
+    }
+
+    /**
+     * Turn use-after-release detection on or off.
+     * While on, released events are not reused.
+     *
+     * @param debug true to enable the debug mode
+     */
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    /**
+     * @return Number of Event objects created by this pool so far
+     */
+    public int getCreatedCount() {
+        return created;
+    }
+
+    /**
+     * @return Number of events currently waiting in the pool for reuse
+     */
+    public int getFreeCount() {
+        return freeCount;
+    }
+}
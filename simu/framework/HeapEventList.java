@@ -0,0 +1,40 @@
+package simu.framework;
+
+import java.util.PriorityQueue;
+
+/**
+ * EventList backed by a binary heap (java.util.PriorityQueue).
+ * Every add/remove costs O(log n). This is the default event list of the engine.
+ */
+public class HeapEventList extends EventList {
+    private PriorityQueue<Event> eventlist;
+
+    public HeapEventList() {
+        eventlist = new PriorityQueue<>();
+    }
+
+    @Override
+    public Event peek() {
+        return eventlist.peek();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return eventlist.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return eventlist.size();
+    }
+
+    @Override
+    protected void insert(Event e) {
+        eventlist.add(e);
+    }
+
+    @Override
+    protected Event removeFirst() {
+        return eventlist.remove();
+    }
+}
@@ -4,4 +4,12 @@ package simu.framework;
  * Interface to make the simulator engine independent of the event type, i.e.,
  * it is possible to use different event enumerations without modifying the core of the simulator.
  */
-public interface IEventType {}
+public interface IEventType {
+    /**
+     * Dense index of the event type, 0 for the first one. Enumerations implement this
+     * through {@link Enum#ordinal()}; it lets event lists store types as plain ints.
+     *
+     * @return index of this event type
+     */
+    int ordinal();
+}
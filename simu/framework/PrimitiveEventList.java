@@ -0,0 +1,243 @@
+package simu.framework;
+
+import simu.model.Visitor;
+
+import java.util.Arrays;
+
+/**
+ * EventList kept as a struct of primitive arrays, with no per-event objects.
+ *
+ * The pending events form an implicit 4-ary min-heap over three parallel arrays:
+ * - times: event times (the heap key)
+ * - types: event type ordinals, see {@link IEventType#ordinal()}
+ * - visitors: visitor slots, -1 for events without a visitor, and -2 - handle for
+ *   events of a visitor kept in a {@link simu.model.VisitorTable}
+ *
+ * Sifting only moves primitives, so the heap needs no comparator calls, no pointer
+ * chasing and no GC write barriers, and the four children of a node share a cache
+ * line of the times array. This keeps ordering cheap for 10^6+ pending events.
+ *
+ * Visitor slots index a slot table owned by the list. A slot is claimed when an
+ * event is scheduled and freed when it is removed.
+ *
+ * The engine reads the head event through {@link #getNextEventTime()},
+ * {@link #getNextEventType()} and {@link #getNextEventVisitor()} (or the primitive
+ * {@link #getNextEventTypeOrdinal()} and {@link #getNextEventVisitorHandle()}).
+ * {@link #peek()} and {@link #remove()} return a single cursor Event owned by the list,
+ * which is overwritten by the next call and must not be stored or added back.
+ */
+public class PrimitiveEventList extends EventList {
+    private static final int ARITY = 4;
+    private static final int NO_VISITOR = -1;
+
+    private final IEventType[] eventTypes; // ordinal -> event type
+
+    private double[] times;
+    private int[] types;
+    private int[] visitors;
+    private int size = 0;
+
+    // Visitor slot table addressed by handle, free slots kept on a stack
+    private Visitor[] visitorSlots;
+    private int[] freeSlots;
+    private int freeTop = 0;
+    private int usedSlots = 0;
+
+    private final Event cursor;
+
+    /**
+     * @param eventTypes all event types the model schedules, indexed by ordinal (e.g. EventType.values())
+     */
+    public PrimitiveEventList(IEventType[] eventTypes) {
+        this(eventTypes, 1024);
+    }
+
+    /**
+     * @param eventTypes all event types the model schedules, indexed by ordinal (e.g. EventType.values())
+     * @param initialCapacity number of pending events the arrays are sized for initially
+     */
+    public PrimitiveEventList(IEventType[] eventTypes, int initialCapacity) {
+        for (int i = 0; i < eventTypes.length; i++) {
+            if (eventTypes[i].ordinal() != i) {
+                throw new IllegalArgumentException("Event type " + eventTypes[i] + " is not at index of its ordinal");
+            }
+        }
+        this.eventTypes = eventTypes.clone();
+        int capacity = Math.max(ARITY, initialCapacity);
+        times = new double[capacity];
+        types = new int[capacity];
+        visitors = new int[capacity];
+        visitorSlots = new Visitor[capacity];
+        freeSlots = new int[capacity];
+        cursor = new Event(null, 0);
+    }
+
+    /**
+     * Schedule a new event directly into the arrays, without any Event object.
+     */
+    @Override
+    public void schedule(IEventType type, double time, Visitor visitor) {
+        push(time, type.ordinal(), claimSlot(visitor));
+        traceAdd(type, time, visitor);
+    }
+
+    @Override
+    public void schedule(IEventType type, double time, int handle) {
+        push(time, type.ordinal(), encodeHandle(handle));
+        traceAdd(type, time, null);
+    }
+
+    /**
+     * The cursor returned by remove() belongs to the list, so nothing is pooled.
+     */
+    @Override
+    public void release(Event e) {
+    }
+
+    @Override
+    public double getNextEventTime() {
+        return size == 0 ? Double.NaN : times[0];
+    }
+
+    @Override
+    public IEventType getNextEventType() {
+        return size == 0 ? null : eventTypes[types[0]];
+    }
+
+    @Override
+    public Visitor getNextEventVisitor() {
+        return size == 0 || visitors[0] < 0 ? null : visitorSlots[visitors[0]];
+    }
+
+    /**
+     * @return Type ordinal of the next event, or -1 if list is empty
+     */
+    public int getNextEventTypeOrdinal() {
+        return size == 0 ? -1 : types[0];
+    }
+
+    /**
+     * @return Visitor slot of the next event, or -1 if list is empty or the event has no visitor object
+     */
+    public int getNextEventVisitorHandle() {
+        return size == 0 || visitors[0] < 0 ? NO_VISITOR : visitors[0];
+    }
+
+    @Override
+    public Event peek() {
+        if (size == 0) return null;
+        if (visitors[0] < NO_VISITOR) cursor.recycle(eventTypes[types[0]], times[0], NO_VISITOR - 1 - visitors[0]);
+        else cursor.recycle(eventTypes[types[0]], times[0], getNextEventVisitor());
+        return cursor;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copy the fields of an event into the arrays. The Event object itself is not kept.
+     */
+    @Override
+    protected void insert(Event e) {
+        int handle = e.getHandle();
+        push(e.getTime(), e.getType().ordinal(), handle != Event.NO_HANDLE ? encodeHandle(handle) : claimSlot(e.getVisitor()));
+    }
+
+    @Override
+    protected Event removeFirst() {
+        peek();
+        freeSlot(visitors[0]);
+        pop();
+        return cursor;
+    }
+
+    private void push(double time, int type, int visitor) {
+        if (size == times.length) {
+            int capacity = times.length * 2;
+            times = Arrays.copyOf(times, capacity);
+            types = Arrays.copyOf(types, capacity);
+            visitors = Arrays.copyOf(visitors, capacity);
+        }
+
+        // Sift up: move parents down until the new event fits
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) / ARITY;
+            if (times[parent] <= time) break;
+            move(parent, i);
+            i = parent;
+        }
+        set(i, time, type, visitor);
+    }
+
+    private void pop() {
+        int last = --size;
+        if (last == 0) return;
+
+        double time = times[last];
+        int type = types[last];
+        int visitor = visitors[last];
+
+        // Sift down: move the smallest child up until the last event fits
+        int i = 0;
+        while (true) {
+            int child = ARITY * i + 1;
+            if (child >= size) break;
+            int end = Math.min(child + ARITY, size);
+            int min = child;
+            for (int c = child + 1; c < end; c++) {
+                if (times[c] < times[min]) min = c;
+            }
+            if (times[min] >= time) break;
+            move(min, i);
+            i = min;
+        }
+        set(i, time, type, visitor);
+    }
+
+    private void move(int from, int to) {
+        times[to] = times[from];
+        types[to] = types[from];
+        visitors[to] = visitors[from];
+    }
+
+    private void set(int i, double time, int type, int visitor) {
+        times[i] = time;
+        types[i] = type;
+        visitors[i] = visitor;
+    }
+
+    private int claimSlot(Visitor v) {
+        if (v == null) return NO_VISITOR;
+        int handle;
+        if (freeTop > 0) {
+            handle = freeSlots[--freeTop];
+        } else {
+            if (usedSlots == visitorSlots.length) {
+                visitorSlots = Arrays.copyOf(visitorSlots, usedSlots * 2);
+                freeSlots = Arrays.copyOf(freeSlots, usedSlots * 2);
+            }
+            handle = usedSlots++;
+        }
+        visitorSlots[handle] = v;
+        return handle;
+    }
+
+    /** Visitor table handles are kept below -1, apart from the slots */
+    private static int encodeHandle(int handle) {
+        return NO_VISITOR - 1 - handle;
+    }
+
+    private void freeSlot(int handle) {
+        if (handle < 0) return;
+        visitorSlots[handle] = null;
+        freeSlots[freeTop++] = handle;
+    }
+}
@@ -0,0 +1,169 @@
+package simu.framework;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Quantiles of a stream of non-negative values in constant memory, with a relative
+ * error bound (the DDSketch approach).
+ *
+ * Values are counted in logarithmic buckets: bucket i holds the values in
+ * (gamma^(i-1), gamma^i] with gamma = (1 + a) / (1 - a), so any quantile is returned
+ * within a relative error a of a value of the stream. At most {@value #MAX_BUCKETS}
+ * buckets are kept, which spans about 17 orders of magnitude at 1% accuracy; beyond
+ * that the lowest buckets are collapsed, which only affects the lowest quantiles.
+ * Two sketches of the same accuracy merge into the sketch of both streams.
+ */
+public class QuantileSketch {
+    private static final int MAX_BUCKETS = 2048;
+    private static final double MIN_POSITIVE = 1e-12; // smaller values are counted as 0
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+
+    private final long[] counts = new long[MAX_BUCKETS];
+    private int offset;                       // bucket index of counts[0]
+    private int minIndex = Integer.MAX_VALUE; // lowest bucket index in use
+    private int maxIndex = Integer.MIN_VALUE; // highest bucket index in use
+    private long zeroCount = 0;
+    private long count = 0;
+
+    /**
+     * @param relativeAccuracy largest relative error of a quantile, e.g. 0.01
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        logGamma = Math.log(gamma);
+    }
+
+    /**
+     * @param value value to count, not negative and finite
+     */
+    public void add(double value) {
+        if (!(value >= 0 && value < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Quantile sketch takes finite non-negative values, not " + value);
+        }
+        count++;
+        if (value < MIN_POSITIVE) {
+            zeroCount++;
+            return;
+        }
+        add((int) Math.ceil(Math.log(value) / logGamma), 1);
+    }
+
+    /**
+     * Add the counts of another sketch of the same accuracy.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Sketches of different accuracy cannot be merged");
+        }
+        count += other.count;
+        zeroCount += other.zeroCount;
+        for (int i = other.minIndex; i <= other.maxIndex; i++) {
+            long c = other.counts[i - other.offset];
+            if (c > 0) add(i, c);
+        }
+    }
+
+    /**
+     * @param q quantile, from 0 to 1
+     * @return Estimate of the quantile, NaN if the sketch is empty
+     */
+    public double getQuantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        if (count == 0) return Double.NaN;
+        double rank = q * (count - 1);
+        long seen = zeroCount;
+        if (rank < seen) return 0.0;
+        for (int i = minIndex; i <= maxIndex; i++) {
+            seen += counts[i - offset];
+            if (rank < seen) return 2 * Math.pow(gamma, i) / (gamma + 1);
+        }
+        return 2 * Math.pow(gamma, maxIndex) / (gamma + 1);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /** Add to the count of a bucket, moving or collapsing the window of buckets to fit it */
+    private void add(int index, long c) {
+        if (minIndex > maxIndex) {
+            offset = index - MAX_BUCKETS / 2;
+        } else if (index >= offset + MAX_BUCKETS) {
+            // Move the window up, collapsing the buckets that fall off its bottom into its lowest
+            int newOffset = index - MAX_BUCKETS + 1;
+            long collapsed = 0;
+            for (int i = minIndex; i < Math.min(newOffset, maxIndex + 1); i++) {
+                collapsed += counts[i - offset];
+            }
+            shift(newOffset);
+            if (collapsed > 0) {
+                counts[0] += collapsed;
+                minIndex = newOffset;
+                maxIndex = Math.max(maxIndex, newOffset);
+            }
+        } else if (index < offset) {
+            int newOffset = Math.max(index, maxIndex - MAX_BUCKETS + 1);
+            shift(newOffset);
+            index = Math.max(index, newOffset); // below the window: collapsed into its lowest bucket
+        }
+        counts[index - offset] += c;
+        minIndex = Math.min(minIndex, index);
+        maxIndex = Math.max(maxIndex, index);
+    }
+
+    /** Move the window to start at another bucket index; buckets moved out of it are dropped */
+    private void shift(int newOffset) {
+        int by = newOffset - offset;
+        if (Math.abs(by) >= MAX_BUCKETS) {
+            Arrays.fill(counts, 0);
+        } else if (by > 0) {
+            System.arraycopy(counts, by, counts, 0, MAX_BUCKETS - by);
+            Arrays.fill(counts, MAX_BUCKETS - by, MAX_BUCKETS, 0);
+        } else if (by < 0) {
+            System.arraycopy(counts, 0, counts, -by, MAX_BUCKETS + by);
+            Arrays.fill(counts, 0, -by, 0);
+        }
+        offset = newOffset;
+        minIndex = Math.max(minIndex, newOffset);
+    }
+
+    /**
+     * Write the sketch to a snapshot.
+     */
+    public void writeState(SnapshotWriter out) throws IOException {
+        out.writeLong(count);
+        out.writeLong(zeroCount);
+        out.writeInt(minIndex);
+        out.writeInt(maxIndex);
+        for (int i = minIndex; i <= maxIndex; i++) {
+            out.writeLong(counts[i - offset]);
+        }
+    }
+
+    /**
+     * Replace the counts of this sketch with those written by {@link #writeState}.
+     */
+    public void readState(SnapshotReader in) {
+        Arrays.fill(counts, 0);
+        count = in.readLong();
+        zeroCount = in.readLong();
+        minIndex = in.readInt();
+        maxIndex = in.readInt();
+        offset = minIndex;
+        for (int i = minIndex; i <= maxIndex; i++) {
+            counts[i - offset] = in.readLong();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package simu.framework;
+
+import java.util.Arrays;
+
+/**
+ * C-phase scheduler: holds the conditional activities of a model, e.g. starting a
+ * service, and runs only those marked ready since the last C-phase.
+ *
+ * A component marks its activity when its condition may have become true, e.g. a
+ * service point when a visitor joins its queue while it is idle or when it becomes
+ * idle with visitors still queued. The C-phase then costs O(ready activities) instead
+ * of O(all activities). An activity must check its condition itself, as a mark only
+ * says that the condition may hold.
+ *
+ * Ready activities run in the order they were added, and an activity marked while the
+ * C-phase runs waits for the next one, so the result is the same as polling all
+ * activities in that order once per C-phase.
+ */
+public class ReadySet {
+    private Runnable[] activities = new Runnable[16];
+    private boolean[] marked = new boolean[16];
+    private int[] ready = new int[16]; // indices of the marked activities
+    private int count = 0;
+    private int readyCount = 0;
+
+    /**
+     * @param activity conditional activity, run in the C-phase after it was marked
+     * @return Index to mark the activity with
+     */
+    public int add(Runnable activity) {
+        if (count == activities.length) {
+            activities = Arrays.copyOf(activities, 2 * count);
+            marked = Arrays.copyOf(marked, 2 * count);
+            ready = Arrays.copyOf(ready, 2 * count);
+        }
+        activities[count] = activity;
+        return count++;
+    }
+
+    /**
+     * Have the activity run in the next C-phase. Marking it again before is free.
+     *
+     * @param index index returned by {@link #add}
+     */
+    public void mark(int index) {
+        if (marked[index]) return;
+        marked[index] = true;
+        ready[readyCount++] = index;
+    }
+
+    /**
+     * @return true if no activity is marked
+     */
+    public boolean isEmpty() {
+        return readyCount == 0;
+    }
+
+    /**
+     * Run the marked activities in the order they were added, and clear their marks.
+     */
+    public void run() {
+        int n = readyCount;
+        if (n == 0) return;
+        if (n > 1) Arrays.sort(ready, 0, n);
+        for (int i = 0; i < n; i++) {
+            int index = ready[i];
+            marked[index] = false;
+            activities[index].run();
+        }
+        // Keep the activities marked while running for the next C-phase
+        readyCount -= n;
+        System.arraycopy(ready, n, ready, 0, readyCount);
+    }
+}
@@ -0,0 +1,117 @@
+package simu.framework;
+
+import eduni.distributions.RandomBackend;
+import eduni.distributions.SeedGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Runs independent replications of a model in parallel and merges their results.
+ *
+ * Every replication gets its own engine, built by a factory from a SeedGenerator
+ * that yields that replication's seeds. The seeds of all replications are taken in
+ * turn from one master SeedGenerator, {@code streamsPerReplication} at a time, so the
+ * random streams of different replications never overlap. Results are merged in
+ * replication order, which makes the summary independent of the executor and of the
+ * number of threads. The statistics of the engines, see {@link Engine#getStatistics()},
+ * are merged the same way.
+ *
+ * The seeds are states of the default {@link RandomBackend}, spaced by the length of
+ * its streams unless a spacing is set. With {@link RandomBackend#SPLITMIX64} every
+ * stream of every replication is then provably disjoint from all others, and is
+ * reached in constant time.
+ */
+public class ReplicationRunner {
+    private static final long DEFAULT_ROOT_SEED = 4851L;
+
+    private final ExecutorService executor;
+    private final int streamsPerReplication;
+    private long rootSeed = DEFAULT_ROOT_SEED;
+    private long spacing = 0; // 0 for the stream length of the backend
+
+    /**
+     * @param executor executor the replications are submitted to; it is not shut down by the runner
+     * @param streamsPerReplication number of seeds each engine takes from its SeedGenerator
+     */
+    public ReplicationRunner(ExecutorService executor, int streamsPerReplication) {
+        this.executor = executor;
+        this.streamsPerReplication = streamsPerReplication;
+    }
+
+    /**
+     * @param parallelism number of worker threads
+     * @return Fork-join executor for CPU-bound replications
+     */
+    public static ExecutorService forkJoin(int parallelism) {
+        return new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * @return Executor that runs every replication in its own virtual thread
+     */
+    public static ExecutorService virtualThreads() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Set the master seed all replication seeds are derived from.
+     *
+     * @param rootSeed first seed of the master SeedGenerator
+     * @param spacing distance between consecutive seeds in the underlying random sequence,
+     *        0 for the stream length of the default backend
+     */
+    public void setRootSeed(long rootSeed, long spacing) {
+        this.rootSeed = rootSeed;
+        this.spacing = spacing;
+    }
+
+    /**
+     * Run the replications and wait for all of them to finish.
+     * The engines run with reporting turned off.
+     *
+     * @param replications number of replications
+     * @param factory builds the engine of one replication from its seed generator
+     * @return Merged results of all replications
+     */
+    public ReplicationSummary run(int replications, Function<SeedGenerator, Engine> factory) {
+        RandomBackend backend = RandomBackend.getDefault();
+        long spacing = this.spacing > 0 ? this.spacing : backend.getStreamLength();
+        SeedGenerator master = new SeedGenerator(backend, rootSeed, spacing);
+        List<Future<Engine>> engines = new ArrayList<>(replications);
+
+        for (int r = 0; r < replications; r++) {
+            // The replication's generator starts where its block of master seeds starts
+            SeedGenerator seeds = new SeedGenerator(backend, master.sample(), spacing);
+            master.skip(streamsPerReplication - 1);
+            engines.add(executor.submit(() -> {
+                Engine engine = factory.apply(seeds);
+                engine.setReporting(false);
+                engine.run();
+                return engine;
+            }));
+        }
+
+        ReplicationSummary summary = new ReplicationSummary();
+        for (int r = 0; r < replications; r++) {
+            try {
+                Engine engine = engines.get(r).get();
+                summary.add(engine.getResults());
+                if (engine.getStatistics() != null) summary.addStatistics(engine.getStatistics());
+                engines.set(r, null);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Replication " + r + " failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for replication " + r, e);
+            }
+        }
+        return summary;
+    }
+}
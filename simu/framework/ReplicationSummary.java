@@ -0,0 +1,182 @@
+package simu.framework;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges the results of independent replications into means and confidence intervals.
+ *
+ * Results are added in replication order, so the merged values do not depend on
+ * the order in which the replications finished.
+ */
+public class ReplicationSummary {
+    private final Map<String, Metric> metrics = new LinkedHashMap<>();
+    private final StatisticsCollector statistics = new StatisticsCollector();
+    private int replications = 0;
+
+    /** Running mean and variance of one result (Welford's algorithm) */
+    private static class Metric {
+        int n = 0;
+        double mean = 0.0;
+        double m2 = 0.0;
+
+        void add(double x) {
+            n++;
+            double delta = x - mean;
+            mean += delta / n;
+            m2 += delta * (x - mean);
+        }
+    }
+
+    /**
+     * Add the results of the next replication.
+     *
+     * @param results results of one run, see {@link Engine#getResults()}
+     */
+    public void add(Map<String, Double> results) {
+        replications++;
+        for (Map.Entry<String, Double> r : results.entrySet()) {
+            metrics.computeIfAbsent(r.getKey(), k -> new Metric()).add(r.getValue());
+        }
+    }
+
+    /**
+     * Merge the statistics of the next replication.
+     *
+     * @param statistics statistics of one run, see {@link Engine#getStatistics()}
+     */
+    public void addStatistics(StatisticsCollector statistics) {
+        this.statistics.merge(statistics);
+    }
+
+    /**
+     * @return Statistics of all observations of all replications
+     */
+    public StatisticsCollector getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return Number of replications added
+     */
+    public int getReplications() {
+        return replications;
+    }
+
+    /**
+     * @return Names of the merged results, in the order they were first seen
+     */
+    public Set<String> getMetrics() {
+        return metrics.keySet();
+    }
+
+    /**
+     * @return Mean of the result over all replications
+     */
+    public double getMean(String metric) {
+        return metric(metric).mean;
+    }
+
+    /**
+     * @return Sample standard deviation of the result over all replications
+     */
+    public double getStdDev(String metric) {
+        Metric m = metric(metric);
+        return m.n > 1 ? Math.sqrt(m.m2 / (m.n - 1)) : 0.0;
+    }
+
+    /**
+     * Half-width of the Student t confidence interval of the mean.
+     *
+     * @param metric name of the result
+     * @param confidence confidence level, e.g. 0.95
+     * @return half-width, or NaN with less than two replications
+     */
+    public double getHalfWidth(String metric, double confidence) {
+        Metric m = metric(metric);
+        if (m.n < 2) return Double.NaN;
+        return studentQuantile(0.5 + confidence / 2, m.n - 1) * getStdDev(metric) / Math.sqrt(m.n);
+    }
+
+    /**
+     * @param confidence confidence level, e.g. 0.95
+     * @return One line per result: mean, half-width of the confidence interval and standard
+     *         deviation, followed by the merged statistics
+     */
+    public String format(double confidence) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d replications, %.0f%% confidence intervals%n", replications, confidence * 100));
+        for (String name : metrics.keySet()) {
+            sb.append(String.format("%-28s %14.6f +- %-12.6f (std dev %.6f)%n",
+                    name, getMean(name), getHalfWidth(name, confidence), getStdDev(name)));
+        }
+        if (!statistics.getStatistics().isEmpty()) {
+            sb.append(String.format("All observations of all replications%n"));
+            sb.append(statistics.format());
+        }
+        return sb.toString();
+    }
+
+    private Metric metric(String name) {
+        Metric m = metrics.get(name);
+        if (m == null) throw new IllegalArgumentException("No result named " + name);
+        return m;
+    }
+
+    /**
+     * Quantile of the Student t distribution: exact for 1 and 2 degrees of freedom,
+     * Cornish-Fisher expansion around the normal quantile otherwise.
+     *
+     * @param p probability, 0 &lt; p &lt; 1
+     * @param df degrees of freedom
+     * @return t such that P(T &le; t) = p
+     */
+    static double studentQuantile(double p, int df) {
+        if (df == 1) return Math.tan(Math.PI * (p - 0.5));
+        if (df == 2) return (2 * p - 1) / Math.sqrt(2 * p * (1 - p));
+
+        double z = normalQuantile(p);
+        double z2 = z * z;
+        double v = df;
+        return z
+                + z * (z2 + 1) / (4 * v)
+                + z * ((5 * z2 + 16) * z2 + 3) / (96 * v * v)
+                + z * (((3 * z2 + 19) * z2 + 17) * z2 - 15) / (384 * v * v * v)
+                + z * ((((79 * z2 + 776) * z2 + 1482) * z2 - 1920) * z2 - 945) / (92160 * v * v * v * v);
+    }
+
+    /**
+     * Quantile of the standard normal distribution (P. J. Acklam's rational approximation,
+     * relative error below 1.2e-9).
+     *
+     * @param p probability, 0 &lt; p &lt; 1
+     * @return z such that P(Z &le; z) = p
+     */
+    static double normalQuantile(double p) {
+        final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        final double low = 0.02425;
+
+        if (p < low) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - low) {
+            double q = Math.sqrt(-2 * Math.log(1 - p));
+            return -(((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}
@@ -0,0 +1,85 @@
+package simu.framework;
+
+/**
+ * State shared by the components of one simulation run: its clock, its event list,
+ * its C-phase {@link ReadySet} and the counter that numbers its visitors.
+ *
+ * Every engine creates its own context and passes it to the arrival processes,
+ * service points and visitors it creates, so several engines can run side by side
+ * in one JVM without sharing any mutable state.
+ */
+public class SimulationContext {
+    private final Clock clock;
+    private final EventList eventList;
+    private final ReadySet readySet = new ReadySet();
+    private int visitorCounter = 0;
+    private int visitHistory = 0; // latest visits each new visitor keeps, 0 for none
+
+    public SimulationContext(Clock clock, EventList eventList) {
+        this.clock = clock;
+        this.eventList = eventList;
+    }
+
+    /**
+     * @return Clock of this simulation
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return Event list of this simulation
+     */
+    public EventList getEventList() {
+        return eventList;
+    }
+
+    /**
+     * @return Conditional activities of this simulation, run by the engine's C-phase
+     */
+    public ReadySet getReadySet() {
+        return readySet;
+    }
+
+    /**
+     * @return Id for a new visitor, starting from 1
+     */
+    public int nextVisitorId() {
+        return ++visitorCounter;
+    }
+
+    /**
+     * @return Number of visitor ids handed out so far
+     */
+    public int getVisitorCount() {
+        return visitorCounter;
+    }
+
+    /**
+     * Have the visitors created from now on keep their latest visits and the times of
+     * their latest visit to every attraction, e.g. to report them when they leave.
+     * Without history a visitor only keeps its totals, which is much smaller.
+     *
+     * @param visits number of latest visits each visitor keeps, 0 for no history
+     */
+    public void setVisitHistory(int visits) {
+        if (visits < 0) throw new IllegalArgumentException("Visit history length must not be negative");
+        visitHistory = visits;
+    }
+
+    /**
+     * @return Number of latest visits each new visitor keeps, 0 for no history
+     */
+    public int getVisitHistory() {
+        return visitHistory;
+    }
+
+    /**
+     * Continue numbering visitors after the given count, e.g. when restoring saved state.
+     *
+     * @param count number of visitor ids already handed out
+     */
+    public void setVisitorCount(int count) {
+        visitorCounter = count;
+    }
+}
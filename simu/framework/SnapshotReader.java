@@ -0,0 +1,107 @@
+package simu.framework;
+
+import simu.model.Visitor;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a snapshot file written by {@link SnapshotWriter}, see {@link Engine#restoreSnapshot}.
+ * The values must be read in the order they were written.
+ */
+public class SnapshotReader {
+    private final MappedByteBuffer buffer;
+    private final SimulationContext context;
+    private final List<Visitor> visitors = new ArrayList<>();
+
+    /**
+     * Map a complete snapshot file into memory.
+     *
+     * @param file snapshot file
+     * @param context context the restored visitors belong to
+     * @throws IOException if the file cannot be read or is not a complete snapshot
+     */
+    public SnapshotReader(Path file, SimulationContext context) throws IOException {
+        this.context = context;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < SnapshotWriter.HEADER_SIZE) {
+                throw new IOException(file + " is not a snapshot");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be mapped at once");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getLong() != SnapshotWriter.MAGIC) {
+            throw new IOException(file + " is not a snapshot, or it was not finished");
+        }
+        if (buffer.getLong() != buffer.capacity()) {
+            throw new IOException(file + " is truncated");
+        }
+    }
+
+    /**
+     * @return Context the restored visitors belong to
+     */
+    public SimulationContext getContext() {
+        return context;
+    }
+
+    public int readInt() {
+        return buffer.getInt();
+    }
+
+    public long readLong() {
+        return buffer.getLong();
+    }
+
+    public double readDouble() {
+        return buffer.getDouble();
+    }
+
+    public boolean readBoolean() {
+        return buffer.get() != 0;
+    }
+
+    /**
+     * @return String written by {@link SnapshotWriter#writeString}, may be null
+     */
+    public String readString() {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        if (length > buffer.remaining()) throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Visitor written by {@link SnapshotWriter#writeVisitor}, the same object for the same visitor
+     */
+    public Visitor readVisitor() {
+        int index = buffer.getInt();
+        if (index < 0) return null;
+        if (index < visitors.size()) return visitors.get(index);
+        if (index > visitors.size()) {
+            throw new IllegalStateException("Snapshot refers to visitor " + index + " before it was written");
+        }
+        Visitor v = Visitor.readState(this);
+        visitors.add(v);
+        return v;
+    }
+
+    /**
+     * @return true if all values have been read
+     */
+    public boolean isAtEnd() {
+        return !buffer.hasRemaining();
+    }
+}
@@ -0,0 +1,143 @@
+package simu.framework;
+
+import simu.model.Visitor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Writes the state of a simulation to a snapshot file, see {@link Engine#saveSnapshot}.
+ *
+ * The values are written in order, without names, into a buffer that is copied into
+ * the file through a mapping of exactly its size when it is full. The file never
+ * extends past the values written, so it needs no truncating, which fails on Windows
+ * while a part of the file is mapped. Visitors are written in full the first
+ * time they are referenced (from the event list, a queue or a service point) and as
+ * their index in the snapshot afterwards, so a visitor referenced twice is restored
+ * as one object.
+ *
+ * File layout (all numbers big-endian), read by {@link SnapshotReader}:
+ * - header of {@value #HEADER_SIZE} bytes: magic, length of the file
+ * - the values in the order they were written
+ *
+ * The header is only written by {@link #finish()}, so a snapshot that failed halfway
+ * is not mistaken for a complete one.
+ */
+public class SnapshotWriter implements Closeable {
+    static final long MAGIC = 0x5050535441544531L; // "PPSTATE1"
+    static final int HEADER_SIZE = 16;
+
+    private static final int REGION_SIZE = 4 << 20; // bytes mapped at a time
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(REGION_SIZE); // values not yet in the file
+    private long position = HEADER_SIZE;                           // file offset of the buffer
+    private final Map<Visitor, Integer> visitors = new IdentityHashMap<>();
+
+    /**
+     * @param file snapshot file, created or overwritten
+     * @throws IOException if the file cannot be opened
+     */
+    public SnapshotWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        channel.write(ByteBuffer.allocate(HEADER_SIZE), 0);
+    }
+
+    public void writeInt(int value) throws IOException {
+        reserve(Integer.BYTES).putInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        reserve(Long.BYTES).putLong(value);
+    }
+
+    public void writeDouble(double value) throws IOException {
+        reserve(Double.BYTES).putDouble(value);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        reserve(1).put((byte) (value ? 1 : 0));
+    }
+
+    /**
+     * @param value string to write, may be null
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        reserve(bytes.length).put(bytes);
+    }
+
+    /**
+     * Write a reference to a visitor, and the visitor itself if it has not been written yet.
+     *
+     * @param v visitor to write, may be null
+     */
+    public void writeVisitor(Visitor v) throws IOException {
+        if (v == null) {
+            writeInt(-1);
+            return;
+        }
+        Integer index = visitors.get(v);
+        if (index != null) {
+            writeInt(index);
+            return;
+        }
+        writeInt(visitors.size());
+        visitors.put(v, visitors.size());
+        v.writeState(this);
+    }
+
+    /**
+     * Write the header, which marks the snapshot as complete, and flush it to disk.
+     */
+    public void finish() throws IOException {
+        flush();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(MAGIC);
+        header.putLong(position);
+        header.rewind();
+        channel.write(header, 0);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return Buffer with room for the given number of bytes at its position
+     */
+    private ByteBuffer reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+            if (buffer.capacity() < bytes) buffer = ByteBuffer.allocate(bytes);
+        }
+        return buffer;
+    }
+
+    /** Copy the buffered values to the end of the file through a mapping of exactly their size */
+    private void flush() throws IOException {
+        if (buffer.position() == 0) return;
+        buffer.flip();
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, position, buffer.remaining());
+        position += buffer.remaining();
+        region.put(buffer);
+        region.force();
+        buffer.clear();
+    }
+}
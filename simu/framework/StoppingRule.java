@@ -0,0 +1,69 @@
+package simu.framework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sequential stopping rule: the run ends as soon as the confidence interval of every
+ * output is narrow enough, relative to its mean. The outputs are {@link BatchMeans}
+ * estimators the model adds observations to while running.
+ *
+ * The engine checks the rule once per time step, see {@link Engine#setStoppingRule}.
+ * The check only reads the estimators, so it costs O(1) per output.
+ */
+public class StoppingRule {
+    private final double relativeHalfWidth;
+    private final double confidence;
+    private final List<BatchMeans> outputs = new ArrayList<>();
+
+    /**
+     * @param relativeHalfWidth largest accepted half-width of the confidence intervals, relative to the mean
+     * @param confidence confidence level of the intervals, e.g. 0.95
+     */
+    public StoppingRule(double relativeHalfWidth, double confidence) {
+        if (!(relativeHalfWidth > 0)) throw new IllegalArgumentException("Relative half-width must be positive");
+        if (!(confidence > 0 && confidence < 1)) throw new IllegalArgumentException("Confidence must be between 0 and 1");
+        this.relativeHalfWidth = relativeHalfWidth;
+        this.confidence = confidence;
+    }
+
+    /**
+     * @param name name of the output
+     * @return New estimator the model adds the observations of the output to
+     */
+    public BatchMeans addOutput(String name) {
+        BatchMeans output = new BatchMeans(name, confidence);
+        outputs.add(output);
+        return output;
+    }
+
+    public List<BatchMeans> getOutputs() {
+        return Collections.unmodifiableList(outputs);
+    }
+
+    /**
+     * @return true once every output has a half-width within the requested relative half-width
+     */
+    public boolean isSatisfied() {
+        if (outputs.isEmpty()) return false;
+        for (BatchMeans output : outputs) {
+            if (!(output.getRelativeHalfWidth() <= relativeHalfWidth)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return One line per output: mean, half-width and relative half-width
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Batch means, %.0f%% confidence intervals, target relative half-width %.4f%n",
+                confidence * 100, relativeHalfWidth));
+        for (BatchMeans output : outputs) {
+            sb.append(String.format("%-28s %14.6f +- %-12.6f (relative %.4f, %d observations)%n", output.getName(),
+                    output.getMean(), output.getHalfWidth(), output.getRelativeHalfWidth(), output.getObservationCount()));
+        }
+        return sb.toString();
+    }
+}
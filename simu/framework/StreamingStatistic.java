@@ -0,0 +1,138 @@
+package simu.framework;
+
+import java.io.IOException;
+
+/**
+ * Summary of one output of a simulation, e.g. the system time of the visitors, updated
+ * in O(1) per observation and in constant memory: count, mean and variance (Welford's
+ * algorithm), minimum, maximum and a {@link QuantileSketch} of the observations.
+ *
+ * Statistics of the same output of independent runs merge into the statistic of all
+ * their observations, e.g. to summarize replications.
+ */
+public class StreamingStatistic {
+    private static final double QUANTILE_ACCURACY = 0.01;
+
+    private final String name;
+    private long n = 0;
+    private double mean = 0.0;
+    private double m2 = 0.0;   // sum of squared differences from the mean
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private final QuantileSketch sketch = new QuantileSketch(QUANTILE_ACCURACY);
+
+    /**
+     * @param name name of the output, used in reports
+     */
+    public StreamingStatistic(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param x observation, not negative and finite
+     */
+    public void add(double x) {
+        sketch.add(x);
+        n++;
+        double delta = x - mean;
+        mean += delta / n;
+        m2 += delta * (x - mean);
+        if (x < min) min = x;
+        if (x > max) max = x;
+    }
+
+    /**
+     * Add the observations summarized by another statistic.
+     */
+    public void merge(StreamingStatistic other) {
+        if (other.n == 0) return;
+        long total = n + other.n;
+        double delta = other.mean - mean;
+        mean += delta * other.n / total;
+        m2 += other.m2 + delta * delta * ((double) n * other.n / total);
+        n = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sketch.merge(other.sketch);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return n;
+    }
+
+    /**
+     * @return Mean of the observations, NaN before the first
+     */
+    public double getMean() {
+        return n > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * @return Sample variance of the observations, NaN before the second
+     */
+    public double getVariance() {
+        return n > 1 ? m2 / (n - 1) : Double.NaN;
+    }
+
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return Smallest observation, NaN before the first
+     */
+    public double getMin() {
+        return n > 0 ? min : Double.NaN;
+    }
+
+    /**
+     * @return Largest observation, NaN before the first
+     */
+    public double getMax() {
+        return n > 0 ? max : Double.NaN;
+    }
+
+    /**
+     * @param q quantile, from 0 to 1
+     * @return Estimate of the quantile, within 1% of an observation; NaN before the first
+     */
+    public double getQuantile(double q) {
+        return sketch.getQuantile(q);
+    }
+
+    /**
+     * @return One line: count, mean, standard deviation, minimum, median, 90% and 99% quantiles and maximum
+     */
+    public String format() {
+        return String.format("%-28s n=%d mean=%.4f sd=%.4f min=%.4f p50=%.4f p90=%.4f p99=%.4f max=%.4f",
+                name, n, getMean(), getStdDev(), getMin(), getQuantile(0.5), getQuantile(0.9), getQuantile(0.99), getMax());
+    }
+
+    /**
+     * Write the statistic to a snapshot.
+     */
+    public void writeState(SnapshotWriter out) throws IOException {
+        out.writeLong(n);
+        out.writeDouble(mean);
+        out.writeDouble(m2);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        sketch.writeState(out);
+    }
+
+    /**
+     * Replace this statistic with the one written by {@link #writeState}.
+     */
+    public void readState(SnapshotReader in) {
+        n = in.readLong();
+        mean = in.readDouble();
+        m2 = in.readDouble();
+        min = in.readDouble();
+        max = in.readDouble();
+        sketch.readState(in);
+    }
+}
@@ -1,8 +1,22 @@
 package simu.framework;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
 /**
  * General output for diagnostic messages. Every diagnostic message has a severity level.
  * It is possible to control which level of diagnostic messages is printed.
+ *
+ * Messages that are built from several parts should not be concatenated before the
+ * level check. On hot paths guard the call with {@link #isEnabled(Level)}; elsewhere
+ * the Supplier and format-args variants of out() defer building the text until it is
+ * known to be printed.
+ *
+ * Messages that are issued for every event can instead be registered once as a
+ * template (see {@link #registerMessage(String)}) and issued by id with a few primitive
+ * arguments. Such records can be stored by a {@link BinaryTraceSink} without building
+ * any text; the {@link ConsoleTraceSink} (the default) expands the template.
  */
 public class Trace {
     /**
@@ -17,9 +31,18 @@ public class Trace {
         ERR
     }
 
+    /** Visitor id of messages that do not refer to a visitor */
+    public static final int NO_VISITOR = -1;
+
     // Default severity level filtering
     private static Level traceLevel = Level.INFO;
 
+    // Where messages that pass the filter are sent
+    private static volatile TraceSink sink = new ConsoleTraceSink();
+
+    // Registered message templates, indexed by message id
+    private static final List<String> messages = new ArrayList<>();
+
     /**
      * Set the filtering level of the diagnostic messages.
      * Messages below this level will not be printed.
@@ -30,6 +53,82 @@ public class Trace {
         traceLevel = lvl;
     }
 
+    /**
+     * Send the diagnostic messages to the given sink from now on.
+     * The previous sink is not closed.
+     *
+     * @param s new message sink
+     */
+    public static void setSink(TraceSink s) {
+        sink = s;
+    }
+
+    /**
+     * @return Sink the diagnostic messages are currently sent to
+     */
+    public static TraceSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Register a message template for structured messages. The template may refer to
+     * the arguments of {@link #out(Level, int, IEventType, int, double)} with the
+     * placeholders {type}, {visitor} and {value}. Registering the same template again
+     * returns the same id.
+     *
+     * @param template message text with placeholders
+     * @return id of the message
+     */
+    public static synchronized int registerMessage(String template) {
+        int id = messages.indexOf(template);
+        if (id < 0) {
+            messages.add(template);
+            id = messages.size() - 1;
+        }
+        return id;
+    }
+
+    /**
+     * @param messageId id returned by {@link #registerMessage(String)}
+     * @return Template of the message
+     */
+    public static synchronized String getMessage(int messageId) {
+        return messages.get(messageId);
+    }
+
+    /**
+     * @return Number of registered message templates
+     */
+    public static synchronized int getMessageCount() {
+        return messages.size();
+    }
+
+    /**
+     * Expand a message template.
+     *
+     * @param template message text with placeholders
+     * @param type name of the event type, or null
+     * @param visitorId visitor id, or {@link #NO_VISITOR}
+     * @param value numeric argument
+     * @return message text
+     */
+    public static String format(String template, String type, int visitorId, double value) {
+        return template
+                .replace("{type}", String.valueOf(type))
+                .replace("{visitor}", visitorId == NO_VISITOR ? "-" : Integer.toString(visitorId))
+                .replace("{value}", Double.toString(value));
+    }
+
+    /**
+     * Check whether messages of the given level are printed.
+     *
+     * @param lvl severity level
+     * @return true if messages of this level pass the filter
+     */
+    public static boolean isEnabled(Level lvl) {
+        return lvl.ordinal() >= traceLevel.ordinal();
+    }
+
     /**
      * Print the given diagnostic message to the console.
      *
@@ -37,9 +136,53 @@ public class Trace {
      * @param txt diagnostic message to be printed
      */
     public static void out(Level lvl, String txt) {
-        if (lvl.ordinal() >= traceLevel.ordinal()) {
-            double currentTime = Clock.getInstance().getClock();
-            System.out.println("[" + lvl + " @ " + currentTime + "] " + txt);
+        if (isEnabled(lvl)) {
+            print(lvl, txt);
+        }
+    }
+
+    /**
+     * Print a diagnostic message that is only built if its level is enabled.
+     *
+     * @param lvl severity level of the diagnostic message
+     * @param message supplies the message to be printed
+     */
+    public static void out(Level lvl, Supplier<String> message) {
+        if (isEnabled(lvl)) {
+            print(lvl, message.get());
+        }
+    }
+
+    /**
+     * Print a diagnostic message that is only formatted if its level is enabled.
+     *
+     * @param lvl severity level of the diagnostic message
+     * @param format format string, see {@link String#format(String, Object...)}
+     * @param args arguments referenced by the format string
+     */
+    public static void out(Level lvl, String format, Object... args) {
+        if (isEnabled(lvl)) {
+            print(lvl, String.format(format, args));
         }
     }
+
+    /**
+     * Issue a structured diagnostic message. Nothing is built unless the level is enabled,
+     * and a binary sink stores the arguments as they are.
+     *
+     * @param lvl severity level of the diagnostic message
+     * @param messageId id returned by {@link #registerMessage(String)}
+     * @param type event type the message refers to, or null
+     * @param visitorId id of the visitor the message refers to, or {@link #NO_VISITOR}
+     * @param value numeric argument of the message
+     */
+    public static void out(Level lvl, int messageId, IEventType type, int visitorId, double value) {
+        if (isEnabled(lvl)) {
+            sink.record(lvl, Clock.getInstance().getClock(), messageId, type, visitorId, value);
+        }
+    }
+
+    private static void print(Level lvl, String txt) {
+        sink.text(lvl, Clock.getInstance().getClock(), txt);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package simu.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Turns a trace file written by {@link BinaryTraceSink} back into the text the
+ * {@link ConsoleTraceSink} would have printed.
+ *
+ * Usage: java simu.framework.TraceDecoder trace-file [output-file]
+ */
+public class TraceDecoder {
+    private static final int WINDOW_SIZE = 64 << 20; // bytes of records mapped at a time
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java simu.framework.TraceDecoder trace-file [output-file]");
+            System.exit(1);
+        }
+        if (args.length > 1) {
+            try (PrintStream out = new PrintStream(args[1])) {
+                decode(Paths.get(args[0]), out);
+            }
+        } else {
+            decode(Paths.get(args[0]), System.out);
+        }
+    }
+
+    /**
+     * Print every record of a trace file as one line of text.
+     *
+     * @param file trace file
+     * @param out where the text is printed
+     * @return number of decoded records
+     * @throws IOException if the file cannot be read or is not a trace file
+     */
+    public static long decode(Path file, PrintStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(BinaryTraceSink.HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.position() < BinaryTraceSink.HEADER_SIZE || header.getLong(0) != BinaryTraceSink.MAGIC) {
+                throw new IOException(file + " is not a trace file");
+            }
+            int recordSize = (int) header.getLong(8);
+            long count = header.getLong(16);
+            long dictionary = header.getLong(24);
+            if (dictionary == 0) {
+                throw new IOException(file + " was not closed properly, the dictionary is missing");
+            }
+
+            ByteBuffer dict = ByteBuffer.allocate((int) (channel.size() - dictionary));
+            channel.read(dict, dictionary);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(dict.array()));
+            String[] messages = new String[in.readInt()];
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] = in.readUTF();
+            }
+            String[] types = new String[in.readInt()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = in.readUTF();
+            }
+
+            // Map the records a window at a time so files beyond 2 GB can be read
+            Trace.Level[] levels = Trace.Level.values();
+            long perWindow = WINDOW_SIZE / recordSize;
+            for (long first = 0; first < count; first += perWindow) {
+                long n = Math.min(perWindow, count - first);
+                ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY,
+                        BinaryTraceSink.HEADER_SIZE + first * recordSize, n * recordSize);
+                for (int pos = 0; pos < records.limit(); pos += recordSize) {
+                    double time = records.getDouble(pos);
+                    double value = records.getDouble(pos + 8);
+                    int visitor = records.getInt(pos + 16);
+                    int message = records.getInt(pos + 20);
+                    short type = records.getShort(pos + 24);
+                    Trace.Level lvl = levels[records.get(pos + 26)];
+
+                    String text = Trace.format(messages[message], type < 0 ? null : types[type], visitor, value);
+                    out.println("[" + lvl + " @ " + time + "] " + text);
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package simu.framework;
+
+/**
+ * Destination of the diagnostic messages that pass the {@link Trace} level filter.
+ *
+ * Free-form text messages arrive through {@link #text}. Messages on the per-event
+ * hot paths arrive through {@link #record} as a registered message id plus a few
+ * primitive fields, so a sink can store them without building any text.
+ *
+ * @see ConsoleTraceSink
+ * @see BinaryTraceSink
+ */
+public interface TraceSink {
+    /**
+     * Handle a free-form text message.
+     *
+     * @param lvl severity level of the message
+     * @param time simulation time when the message was issued
+     * @param txt message text
+     */
+    void text(Trace.Level lvl, double time, String txt);
+
+    /**
+     * Handle a structured message.
+     *
+     * @param lvl severity level of the message
+     * @param time simulation time when the message was issued
+     * @param messageId id returned by {@link Trace#registerMessage(String)}
+     * @param type event type the message refers to, or null
+     * @param visitorId id of the visitor the message refers to, or {@link Trace#NO_VISITOR}
+     * @param value numeric argument of the message, e.g. a scheduled event time
+     */
+    void record(Trace.Level lvl, double time, int messageId, IEventType type, int visitorId, double value);
+
+    /**
+     * Write out everything that is still buffered and release the sink's resources.
+     */
+    void close();
+}
@@ -0,0 +1,136 @@
+package simu.framework;
+
+import java.util.Arrays;
+
+/**
+ * Detects the end of the warm-up period of a run with MSER-5 (White, "An effective
+ * truncation heuristic for bias reduction in simulation output", Simulation 69(6), 1997).
+ *
+ * Observations of one or more output series, e.g. the system time of every visitor
+ * leaving and the number of visitors queued at that moment, are averaged in batches of
+ * {@value #BATCH_SIZE}. For k batch means Z_1..Z_k, MSER picks the number of batches d
+ * to drop that minimises
+ *
+ *   sum_{j>d} (Z_j - mean(Z_{d+1..k}))^2 / (k - d)^2,
+ *
+ * i.e. the squared standard error of the truncated mean. The truncation is accepted
+ * once it lies in the first half of the batches for every series; later minima mean the
+ * run is still too short to tell. The statistic is evaluated whenever the number of
+ * batches has grown by an eighth, so the cost stays O(1) amortized per observation.
+ */
+public class WarmupDetector {
+    public static final int BATCH_SIZE = 5;
+
+    private static final int MIN_BATCHES = 20; // batches before the first evaluation
+    private static final int MIN_TAIL = 5;     // batches that must remain after truncation
+
+    private final int series;
+    private final double[] sums;   // of the current batch, per series
+    private int observations = 0;  // in the current batch
+    private double[][] means;      // batch means per series
+    private int batches = 0;
+    private int nextCheck = MIN_BATCHES;
+    private int truncation = -1;
+
+    /**
+     * @param series number of values in every observation
+     */
+    public WarmupDetector(int series) {
+        if (series < 1) throw new IllegalArgumentException("Need at least one series");
+        this.series = series;
+        sums = new double[series];
+        means = new double[series][64];
+    }
+
+    /**
+     * Add one observation of every series.
+     *
+     * @param values one value per series, not kept
+     * @return true if the observation completed a batch
+     */
+    public boolean observe(double[] values) {
+        for (int s = 0; s < series; s++) {
+            sums[s] += values[s];
+        }
+        if (++observations < BATCH_SIZE) return false;
+
+        if (batches == means[0].length) {
+            for (int s = 0; s < series; s++) {
+                means[s] = Arrays.copyOf(means[s], 2 * batches);
+            }
+        }
+        for (int s = 0; s < series; s++) {
+            means[s][batches] = sums[s] / BATCH_SIZE;
+            sums[s] = 0;
+        }
+        observations = 0;
+        batches++;
+        if (truncation < 0 && batches >= nextCheck) {
+            truncation = evaluate();
+            nextCheck = batches + batches / 8;
+        }
+        return true;
+    }
+
+    /**
+     * @return true once the end of the warm-up has been found
+     */
+    public boolean isDetected() {
+        return truncation >= 0;
+    }
+
+    /**
+     * @return Number of complete batches to drop, or -1 if not detected yet
+     */
+    public int getTruncation() {
+        return truncation;
+    }
+
+    /**
+     * @return Number of complete batches observed
+     */
+    public int getBatchCount() {
+        return batches;
+    }
+
+    /**
+     * @return Batches to drop for all series, or -1 if any minimum lies in the second half
+     */
+    private int evaluate() {
+        int result = 0;
+        for (int s = 0; s < series; s++) {
+            int d = mser(means[s], batches);
+            if (d > batches / 2) return -1;
+            result = Math.max(result, d);
+        }
+        return result;
+    }
+
+    /**
+     * @return Truncation minimising the MSER statistic of the first k batch means
+     */
+    private static int mser(double[] z, int k) {
+        // Walk d down from k - MIN_TAIL, keeping the sums of the kept batch means
+        double sum = 0;
+        double sumSquares = 0;
+        for (int j = k - MIN_TAIL; j < k; j++) {
+            sum += z[j];
+            sumSquares += z[j] * z[j];
+        }
+        int best = k - MIN_TAIL;
+        double bestValue = Double.POSITIVE_INFINITY;
+        for (int d = k - MIN_TAIL; d >= 0; d--) {
+            if (d < k - MIN_TAIL) {
+                sum += z[d];
+                sumSquares += z[d] * z[d];
+            }
+            int n = k - d;
+            double value = Math.max(0, sumSquares - sum * sum / n) / ((double) n * n);
+            if (value <= bestValue) {
+                bestValue = value;
+                best = d;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,88 @@
+package simu.model;
+
+/**
+ * Picks one of k outcomes with given probabilities in constant time, by Walker's
+ * alias method as built by Vose.
+ *
+ * The table has k columns of equal probability 1/k. Column i holds outcome i with
+ * probability {@code prob[i]} and outcome {@code alias[i]} otherwise, so one uniform
+ * sample picks a column with its integer part and decides between the two outcomes
+ * with its fractional part.
+ */
+public final class AliasTable {
+    private final double[] prob;
+    private final int[] alias;
+
+    /**
+     * @param weights weight of every outcome, not negative and not all zero; they are
+     *        normalized to probabilities
+     */
+    public AliasTable(double[] weights) {
+        int k = weights.length;
+        double sum = 0;
+        for (double w : weights) {
+            if (!(w >= 0 && w < Double.POSITIVE_INFINITY)) {
+                throw new IllegalArgumentException("Alias table weights must be finite and not negative");
+            }
+            sum += w;
+        }
+        if (!(sum > 0)) throw new IllegalArgumentException("Alias table needs a positive weight");
+
+        prob = new double[k];
+        alias = new int[k];
+        double[] scaled = new double[k];
+        int[] small = new int[k];
+        int[] large = new int[k];
+        int smallCount = 0, largeCount = 0;
+        for (int i = 0; i < k; i++) {
+            scaled[i] = weights[i] * k / sum;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        // Fill every small column up to 1 with the excess of a large one
+        while (smallCount > 0 && largeCount > 0) {
+            int s = small[--smallCount];
+            int l = large[--largeCount];
+            prob[s] = scaled[s];
+            alias[s] = l;
+            scaled[l] = scaled[l] + scaled[s] - 1;
+            if (scaled[l] < 1) {
+                small[smallCount++] = l;
+            } else {
+                large[largeCount++] = l;
+            }
+        }
+        // What is left is 1 up to rounding errors
+        while (largeCount > 0) {
+            int l = large[--largeCount];
+            prob[l] = 1;
+            alias[l] = l;
+        }
+        while (smallCount > 0) {
+            int s = small[--smallCount];
+            prob[s] = 1;
+            alias[s] = s;
+        }
+    }
+
+    /**
+     * @param u uniform sample in [0, 1)
+     * @return Index of the outcome
+     */
+    public int sample(double u) {
+        double x = u * prob.length;
+        int column = (int) x;
+        if (column >= prob.length) column = prob.length - 1; // u rounded up to 1
+        return x - column < prob[column] ? column : alias[column];
+    }
+
+    /**
+     * @return Number of outcomes
+     */
+    public int size() {
+        return prob.length;
+    }
+}
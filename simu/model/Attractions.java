@@ -0,0 +1,79 @@
+package simu.model;
+
+import simu.framework.Trace;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of attraction names, which numbers them densely from 0 in the order they
+ * are first seen. Visitors record their visits by these ids, so per-attraction data
+ * lives in arrays instead of maps keyed by name.
+ *
+ * Register a name once, e.g. in a static field, and use its id from then on; only
+ * {@link #id(String)} hashes the name. The registry is shared by all engines in the
+ * JVM and may be used from several threads.
+ */
+public final class Attractions {
+    /** Largest number of attractions, so that an id fits in a short */
+    public static final int MAX_ATTRACTIONS = Short.MAX_VALUE;
+
+    private static final Map<String, Integer> ids = new HashMap<>();
+    // Copied on every registration, so readers need no lock
+    private static volatile String[] names = new String[0];
+    private static volatile int[] arrivedMessages = new int[0];
+    private static volatile int[] departedMessages = new int[0];
+
+    private Attractions() {
+    }
+
+    /**
+     * @param name name of the attraction
+     * @return Id of the attraction, registering the name if it is new
+     * @throws IllegalStateException if {@value #MAX_ATTRACTIONS} attractions are registered already
+     */
+    public static synchronized int id(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+
+        int n = names.length;
+        if (n == MAX_ATTRACTIONS) throw new IllegalStateException("More than " + MAX_ATTRACTIONS + " attractions");
+        int[] arrived = Arrays.copyOf(arrivedMessages, n + 1);
+        int[] departed = Arrays.copyOf(departedMessages, n + 1);
+        arrived[n] = Trace.registerMessage("Visitor #{visitor} arrived at " + name);
+        departed[n] = Trace.registerMessage("Visitor #{visitor} departed from " + name);
+        String[] registered = Arrays.copyOf(names, n + 1);
+        registered[n] = name;
+        arrivedMessages = arrived;
+        departedMessages = departed;
+        names = registered;
+        ids.put(name, n);
+        return n;
+    }
+
+    /**
+     * @param id id returned by {@link #id(String)}
+     * @return Name of the attraction
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return Number of registered attractions; their ids are 0 to this minus 1
+     */
+    public static int count() {
+        return names.length;
+    }
+
+    /** Trace message of a visitor arriving at the attraction */
+    static int arrivedMessage(int id) {
+        return arrivedMessages[id];
+    }
+
+    /** Trace message of a visitor departing from the attraction */
+    static int departedMessage(int id) {
+        return departedMessages[id];
+    }
+}
@@ -0,0 +1,157 @@
+package simu.model;
+
+import simu.framework.*;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logical process of a {@link ParallelNetworkEngine}: a three-phase loop that only
+ * advances as far as the other processes allow (Chandy-Misra-Bryant).
+ *
+ * Every process publishes its earliest output time (EOT): a lower bound on the time of
+ * any visitor it will still send to another process. This is the value a null message
+ * would carry; since the processes share memory it is a volatile field read directly by
+ * the receivers instead of a message in their inbox. An event is safe once its time is
+ * below the EOT of every process that can send to this one.
+ *
+ * The lookahead comes from the service points on the partition boundary: a busy server
+ * sends nothing before its departure time, and an idle one nothing before its next
+ * visitor could arrive plus the service time that visitor will get, which
+ * {@link ServicePoint#peekServiceTime(int)} draws ahead of time. With k idle servers the
+ * next k visitors may each start on one of them, in any order of arrival, so the bound
+ * takes the shortest of the next k service times; any later visitor starts after one of
+ * them or a busy server is done. The queue of a node whose servers are all busy needs
+ * no bound of its own, as the next visitor starts service at the earliest departure.
+ */
+class ConservativeProcess extends LogicalProcess {
+    // Polls before parking; spinning only pays off when the other processes run on other cores
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 1000 : 0;
+
+    private final ConcurrentLinkedQueue<Event> inbox = new ConcurrentLinkedQueue<>();
+    private volatile double eot = 0;
+    private long blocks = 0;
+
+    ConservativeProcess(PartitionedEngine parent, ParkTopology topology, int index, int[] owner,
+                        NetworkStreams streams) {
+        super(new HeapEventList(), parent, topology, index, owner, streams);
+    }
+
+    long getBlockedCount() {
+        return blocks;
+    }
+
+    /**
+     * Run events while they are safe, wait for the other processes while they are not,
+     * and stop once everything before the simulation time is done.
+     */
+    @Override
+    protected void runPhases() {
+        double end = getSimulationTime();
+        initialize();
+
+        while (true) {
+            double safe = inputTime(); // read before receiving, see transfer()
+            receive();
+            double next = nextEventTime();
+            if (next < end && next < safe) {
+                clock.advanceTo(next);
+                runBEvents();
+                tryCEvents();
+                publish(safe);
+            } else {
+                publish(safe);
+                if (next >= end && safe >= end) break;
+                await(safe);
+            }
+        }
+
+        finish();
+    }
+
+    /**
+     * The transfer is queued before this process publishes a later EOT, so a receiver
+     * that reads the EOT first and then drains its inbox has every transfer below it.
+     */
+    @Override
+    protected void transfer(int node, Visitor v) {
+        if (clock.getClock() < eot) {
+            throw new IllegalStateException("Transfer at " + clock.getClock() + " is below the published EOT " + eot);
+        }
+        ConservativeProcess to = (ConservativeProcess) parent.getProcess(owner[node]);
+        to.inbox.add(new Event(types[NetworkEventType.transfer(topology.getNodeCount(), node)], clock.getClock(), v));
+        to.wake();
+    }
+
+    /**
+     * Move the transfers from the inbox to the event list.
+     *
+     * @throws IllegalStateException if a transfer is earlier than the clock, which an
+     *         input whose EOT was too high let through and the process could never run
+     */
+    @Override
+    protected void receive() {
+        Event e;
+        while ((e = inbox.poll()) != null) {
+            if (e.getTime() < clock.getClock()) {
+                throw new IllegalStateException("Causality violation: transfer at " + e.getTime()
+                        + " received at " + clock.getClock());
+            }
+            eventList.add(e);
+        }
+    }
+
+    /**
+     * @return Time below which no more transfers will arrive
+     */
+    private double inputTime() {
+        double time = Double.POSITIVE_INFINITY;
+        for (LogicalProcess p : inputs) {
+            time = Math.min(time, ((ConservativeProcess) p).eot);
+        }
+        return time;
+    }
+
+    /**
+     * Raise the EOT of this process and wake the processes waiting for it.
+     *
+     * @param safe input time the current state was computed with
+     */
+    private void publish(double safe) {
+        // A busy server sends nothing before its departure. A visitor yet to reach an
+        // idle server arrives at the next event or a later transfer at the earliest, and
+        // then still has to be served, by one of the next service times of the idle servers.
+        double horizon = Math.min(nextEventTime(), safe);
+        double time = Double.POSITIVE_INFINITY;
+        for (int node : boundaryNodes) {
+            ServicePoint sp = servicePoints[node];
+            int idle = sp.getServerCount() - sp.getBusyServerCount();
+            if (sp.getBusyServerCount() > 0) time = Math.min(time, sp.getDepartureTime());
+            if (idle > 0) time = Math.min(time, horizon + sp.getShortestServiceTime(idle));
+        }
+
+        if (time > eot) {
+            eot = time;
+            for (LogicalProcess p : outputs) {
+                p.wake();
+            }
+        }
+    }
+
+    /**
+     * Park until a transfer arrives or an input raises its EOT.
+     */
+    private void await(double safe) {
+        for (int i = 0; i < SPINS; i++) {
+            if (!inbox.isEmpty() || inputTime() > safe) return;
+            Thread.onSpinWait();
+        }
+        waiting = true;
+        if (inbox.isEmpty() && inputTime() <= safe) {
+            blocks++;
+            LockSupport.park(this);
+        }
+        waiting = false;
+        checkInterrupted();
+    }
+}
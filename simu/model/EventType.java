@@ -13,5 +13,8 @@ public enum EventType implements IEventType {
     DEPARTURE_ATTRACTION1,
     DEPARTURE_ATTRACTION2,
     DEPARTURE_ATTRACTION3,
-    EXIT_PARK
+    EXIT_PARK,
+    DISPATCH_ATTRACTION1,
+    DISPATCH_ATTRACTION2,
+    DISPATCH_ATTRACTION3
 }
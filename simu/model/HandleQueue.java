@@ -0,0 +1,63 @@
+package simu.model;
+
+/**
+ * First-in first-out queue of {@link VisitorTable} handles in a growable circular
+ * int array, with the time each joined it in a parallel array, the counterpart of
+ * {@link VisitorQueue} for visitors kept off-heap.
+ */
+final class HandleQueue {
+    private int[] elements = new int[16]; // length is a power of two
+    private double[] times = new double[16]; // join time of each handle
+    private int head = 0;                 // index of the first handle
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Add a handle at the end, joining at the given time */
+    void add(int handle, double time) {
+        if (size == elements.length) grow();
+        int i = (head + size) & (elements.length - 1);
+        elements[i] = handle;
+        times[i] = time;
+        size++;
+    }
+
+    /**
+     * @return Time the first handle joined the queue
+     * @throws IllegalStateException if the queue is empty
+     */
+    double peekTime() {
+        if (size == 0) throw new IllegalStateException("Queue is empty");
+        return times[head];
+    }
+
+    /**
+     * @return First handle, which is removed
+     * @throws IllegalStateException if the queue is empty
+     */
+    int poll() {
+        if (size == 0) throw new IllegalStateException("Queue is empty");
+        int handle = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return handle;
+    }
+
+    private void grow() {
+        int[] larger = new int[2 * elements.length];
+        double[] largerTimes = new double[larger.length];
+        for (int i = 0; i < size; i++) {
+            larger[i] = elements[(head + i) & (elements.length - 1)];
+            largerTimes[i] = times[(head + i) & (elements.length - 1)];
+        }
+        elements = larger;
+        times = largerTimes;
+        head = 0;
+    }
+}
@@ -0,0 +1,224 @@
+package simu.model;
+
+import eduni.distributions.ContinuousGenerator;
+import eduni.distributions.Uniform;
+import simu.framework.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One partition of a {@link PartitionedEngine}: the nodes it owns and its own event
+ * list and clock. Visitors moving to a node of another process are handed to
+ * {@link #transfer(int, Visitor)}; how the processes keep each other in step is up
+ * to the subclasses.
+ */
+abstract class LogicalProcess extends Engine {
+    private static final int MSG_EXIT = Trace.registerMessage("Visitor {visitor} exited at {value}");
+
+    protected final PartitionedEngine parent;
+    protected final ParkTopology topology;
+    protected final int index;
+    protected final int[] owner;                   // node -> process index
+    protected final NetworkEventType[] types;
+    protected final ServicePoint[] servicePoints;  // by node, null for nodes of other processes
+    protected final int[] localNodes;              // own nodes in node order
+    protected final int[] boundaryNodes;           // own nodes that send visitors to other processes
+    protected final Uniform[] routers;
+    protected final ContinuousGenerator arrivalStream;
+    protected final ArrivalProcess arrivals;       // null unless the entry node is ours
+
+    // Channels
+    protected LogicalProcess[] inputs = new LogicalProcess[0];
+    protected LogicalProcess[] outputs = new LogicalProcess[0];
+    protected Thread thread;
+    protected volatile boolean waiting = false;
+
+    // Stats per node the visitors exit from
+    final int[] exited;
+    final double[] exitedSystemTime;
+    protected long events = 0;
+
+    protected LogicalProcess(EventList eventList, PartitionedEngine parent, ParkTopology topology, int index,
+                             int[] owner, NetworkStreams streams) {
+        super(eventList);
+        this.parent = parent;
+        this.topology = topology;
+        this.index = index;
+        this.owner = owner;
+
+        int n = topology.getNodeCount();
+        types = NetworkEventType.values(topology);
+        servicePoints = new ServicePoint[n];
+        List<Integer> local = new ArrayList<>();
+        List<Integer> boundary = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (owner[i] != index) continue;
+            servicePoints[i] = new ServicePoint(streams.service[i], context, types[NetworkEventType.departure(i)],
+                    topology.getServers(i));
+            // Visitors move between processes, some of which may yet roll back
+            servicePoints[i].setVisitorTimes(false);
+            local.add(i);
+            for (int j = 0; j < n; j++) {
+                if (owner[j] != index && topology.getRoutingProbability(i, j) > 0) {
+                    boundary.add(i);
+                    break;
+                }
+            }
+        }
+        localNodes = local.stream().mapToInt(Integer::intValue).toArray();
+        boundaryNodes = boundary.stream().mapToInt(Integer::intValue).toArray();
+        routers = streams.routers;
+        arrivalStream = streams.arrivals;
+        arrivals = owner[topology.getEntryNode()] == index ? new ArrivalProcess(arrivalStream, context, types[0]) : null;
+        exited = new int[n];
+        exitedSystemTime = new double[n];
+    }
+
+    /**
+     * Wire up the channels to the processes this one receives from and sends to.
+     */
+    void connect(LogicalProcess[] processes, Thread thread) {
+        this.thread = thread;
+        boolean[] receives = new boolean[processes.length];
+        boolean[] sends = new boolean[processes.length];
+        int n = topology.getNodeCount();
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (owner[i] == owner[j] || topology.getRoutingProbability(i, j) <= 0) continue;
+                if (owner[j] == index) receives[owner[i]] = true;
+                if (owner[i] == index) sends[owner[j]] = true;
+            }
+        }
+        List<LogicalProcess> in = new ArrayList<>();
+        List<LogicalProcess> out = new ArrayList<>();
+        for (int p = 0; p < processes.length; p++) {
+            if (receives[p]) in.add(processes[p]);
+            if (sends[p]) out.add(processes[p]);
+        }
+        inputs = in.toArray(new LogicalProcess[0]);
+        outputs = out.toArray(new LogicalProcess[0]);
+    }
+
+    ServicePoint getServicePoint(int node) {
+        return servicePoints[node];
+    }
+
+    long getEventCount() {
+        return events;
+    }
+
+    /**
+     * Hand a visitor leaving one of our nodes at the current time to the process owning the next node.
+     *
+     * @param node node of another process
+     * @param v visitor
+     */
+    protected abstract void transfer(int node, Visitor v);
+
+    /**
+     * Move the visitors other processes have transferred into the event list.
+     */
+    protected abstract void receive();
+
+    /**
+     * Called before the state of a node is changed by an event or a C-event.
+     *
+     * @param node one of our nodes
+     */
+    protected void touch(int node) {
+    }
+
+    @Override
+    protected void initialize() {
+        if (arrivals != null) arrivals.generateNextEvent();
+    }
+
+    @Override
+    protected void runEvent(Event e) {
+        events++;
+        int ordinal = e.getType().ordinal();
+        int n = topology.getNodeCount();
+        if (ordinal == 0) {
+            touch(topology.getEntryNode());
+            servicePoints[topology.getEntryNode()].addQueue(e.getVisitor());
+            arrivals.generateNextEvent();
+            return;
+        }
+        if (ordinal > n) {
+            touch(ordinal - n - 1);
+            servicePoints[ordinal - n - 1].addQueue(e.getVisitor());
+            return;
+        }
+
+        int node = ordinal - 1;
+        touch(node);
+        Visitor v = servicePoints[node].endService(e.getVisitor());
+        int next = topology.route(node, routers[node].sample());
+        if (next < 0) {
+            // The visitor may still be in use by a process that has yet to roll back,
+            // so its removal time is not written
+            exited[node]++;
+            exitedSystemTime[node] += clock.getClock() - v.getArrivalTime();
+            Trace.out(Trace.Level.INFO, MSG_EXIT, null, v.getId(), clock.getClock());
+        } else if (owner[next] == index) {
+            touch(next);
+            servicePoints[next].addQueue(v);
+        } else {
+            transfer(next, v);
+        }
+    }
+
+    @Override
+    protected void tryCEvents() {
+        for (int node : localNodes) {
+            ServicePoint sp = servicePoints[node];
+            if (!sp.isReserved() && sp.isOnQueue()) {
+                touch(node);
+                sp.beginService();
+            }
+        }
+    }
+
+    @Override
+    protected void results() {
+    }
+
+    /**
+     * The sequential engine stops after the first batch of events at or after the
+     * simulation time. Once all processes have finished the events before it, the
+     * earliest pending event among them is that batch; it is run in two steps so
+     * that visitors it transfers are queued before the C-phase of their node.
+     */
+    protected void finish() {
+        parent.await();
+        receive();
+        double last = parent.earliest(index, nextEventTime());
+        if (last == Double.POSITIVE_INFINITY) return;
+
+        if (nextEventTime() == last) {
+            clock.setClock(last);
+            runBEvents();
+        }
+        parent.await();
+        receive();
+        clock.setClock(last);
+        runBEvents();
+        tryCEvents();
+    }
+
+    protected double nextEventTime() {
+        return eventList.isEmpty() ? Double.POSITIVE_INFINITY : eventList.getNextEventTime();
+    }
+
+    protected void wake() {
+        if (waiting) LockSupport.unpark(thread);
+    }
+
+    protected void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new IllegalStateException("Logical process " + index + " was interrupted");
+        }
+    }
+}
@@ -2,8 +2,14 @@ package simu.model;
 
 import eduni.distributions.Negexp;
 import eduni.distributions.Normal;
+import eduni.distributions.SeedGenerator;
+import eduni.distributions.Uniform;
 import simu.framework.*;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 /**
@@ -11,8 +17,47 @@ import java.util.Random;
  * Implements the three-phase simulation loop with branching paths.
  */
 public class MyEngine extends Engine {
+    private static final int MSG_EXIT = Trace.registerMessage("Visitor {visitor} exited at {value}");
+    private static final int MSG_WARMUP = Trace.registerMessage("End of warm-up detected, stats are collected from {value}");
+
+    /** Number of random streams (seeds) the engine takes from its SeedGenerator */
+    public static final int RANDOM_STREAMS = 7;
+    private static final int SEED_SPACING = 100000;
+    private static final int TICKET_BOOTH = Attractions.id("TicketBooth");
+    private static final int REST_AREA = Attractions.id("RestArea");
+    private static final int ATTRACTION1 = Attractions.id("Attraction1");
+    private static final int ATTRACTION2 = Attractions.id("Attraction2");
+    private static final int ATTRACTION3 = Attractions.id("Attraction3");
+    private static final String[] SERVICE_POINT_NAMES = {"Ticket Booth", "Rest Area", "Attraction 1", "Attraction 2", "Attraction 3"};
+
     private ArrivalProcess ticketBoothArrivals;
     private ServicePoint ticketBooth, restArea, attraction1, attraction2, attraction3;
+    private ServicePoint[] servicePoints; // in the order their streams are seeded
+    private Uniform router; // routing decisions
+    private Visitor[] batch; // visitors of the batch leaving an attraction, with batch service
+    private VisitorExport export; // gets the visitors leaving, null without export
+
+    // Stats
+    private int exitedVisitors = 0;
+    private double totalSystemTime = 0.0;
+    private StatisticsCollector statistics = new StatisticsCollector();
+    private StreamingStatistic systemTimes = statistics.add("System time");
+
+    // Warm-up detection, see setWarmupDetection()
+    private boolean detectWarmup = false;
+    private WarmupDetector warmup;                  // while still looking for the end of the warm-up
+    private final double[] observation = new double[2];
+    private double[] marks;                         // stats at the end of every batch
+    private double[] startMark;                     // stats when the detection began
+    private int markSize;                           // time, exited, system time and the marks of the service points
+    private double[] pendingTimes;                  // system times observed while detecting, replayed after the truncation point
+    private int pendingCount;
+    private double warmupTime = 0.0;                // stats are collected from this time on
+
+    // Outputs of the stopping rule, see setPrecision()
+    private BatchMeans systemTimeOutput;
+    private BatchMeans[] utilizationOutputs;
+    private double lastObserved;                    // time the service points were last observed
 
     public MyEngine(double arrivalMean,
                     double ticketMean, double ticketStd,
@@ -20,22 +65,167 @@ public class MyEngine extends Engine {
                     double attr1Mean, double attr1Std,
                     double attr2Mean, double attr2Std,
                     double attr3Mean, double attr3Std) {
+        this(new HeapEventList(), arrivalMean,
+                ticketMean, ticketStd,
+                restMean, restStd,
+                attr1Mean, attr1Std,
+                attr2Mean, attr2Std,
+                attr3Mean, attr3Std);
+    }
+
+    /**
+     * @param eventList event list implementation the engine keeps its pending events in
+     */
+    public MyEngine(EventList eventList,
+                    double arrivalMean,
+                    double ticketMean, double ticketStd,
+                    double restMean, double restStd,
+                    double attr1Mean, double attr1Std,
+                    double attr2Mean, double attr2Std,
+                    double attr3Mean, double attr3Std) {
+        this(eventList, new SeedGenerator(1 + new Random().nextInt(Integer.MAX_VALUE - 1), SEED_SPACING),
+                arrivalMean,
+                ticketMean, ticketStd,
+                restMean, restStd,
+                attr1Mean, attr1Std,
+                attr2Mean, attr2Std,
+                attr3Mean, attr3Std);
+    }
 
-        Random r = new Random();
+    /**
+     * @param eventList event list implementation the engine keeps its pending events in
+     * @param seeds source of the {@value #RANDOM_STREAMS} seeds of the engine's random streams;
+     *              two engines given equally seeded generators produce identical runs
+     */
+    public MyEngine(EventList eventList,
+                    SeedGenerator seeds,
+                    double arrivalMean,
+                    double ticketMean, double ticketStd,
+                    double restMean, double restStd,
+                    double attr1Mean, double attr1Std,
+                    double attr2Mean, double attr2Std,
+                    double attr3Mean, double attr3Std) {
+        super(eventList);
 
         // Arrival process: exponential arrivals to ticket booth
         ticketBoothArrivals = new ArrivalProcess(
-                new Negexp(arrivalMean, Integer.toUnsignedLong(r.nextInt())),
-                eventList,
+                new Negexp(arrivalMean, seeds.sample()),
+                context,
                 EventType.ARRIVAL_TICKETBOOTH
         );
 
         // Service points with configurable Normal service times
-        ticketBooth = new ServicePoint(new Normal(ticketMean, ticketStd), eventList, EventType.DEPARTURE_TICKETBOOTH);
-        restArea   = new ServicePoint(new Normal(restMean,  restStd),  eventList, EventType.DEPARTURE_REST);
-        attraction1 = new ServicePoint(new Normal(attr1Mean, attr1Std), eventList, EventType.DEPARTURE_ATTRACTION1);
-        attraction2 = new ServicePoint(new Normal(attr2Mean, attr2Std), eventList, EventType.DEPARTURE_ATTRACTION2);
-        attraction3 = new ServicePoint(new Normal(attr3Mean, attr3Std), eventList, EventType.DEPARTURE_ATTRACTION3);
+        ticketBooth = new ServicePoint(new Normal(ticketMean, ticketStd, seeds.sample()), context, EventType.DEPARTURE_TICKETBOOTH);
+        restArea   = new ServicePoint(new Normal(restMean,  restStd,  seeds.sample()), context, EventType.DEPARTURE_REST);
+        attraction1 = new ServicePoint(new Normal(attr1Mean, attr1Std, seeds.sample()), context, EventType.DEPARTURE_ATTRACTION1);
+        attraction2 = new ServicePoint(new Normal(attr2Mean, attr2Std, seeds.sample()), context, EventType.DEPARTURE_ATTRACTION2);
+        attraction3 = new ServicePoint(new Normal(attr3Mean, attr3Std, seeds.sample()), context, EventType.DEPARTURE_ATTRACTION3);
+
+        router = new Uniform(0, 1, seeds.sample());
+        servicePoints = new ServicePoint[] {ticketBooth, restArea, attraction1, attraction2, attraction3};
+    }
+
+    /**
+     * Serve the visitors of the three attractions in batches, like rides that load a
+     * train, see {@link ServicePoint#setBatchService}. A batch gets one service time and
+     * one departure event, and all its visitors leave the attraction together. Call it
+     * before running.
+     *
+     * @param capacity largest batch
+     * @param minLoad smallest batch dispatched before the dispatch timer fires
+     * @param maxWait longest wait of an attraction for more visitors to join a batch
+     */
+    public void setBatchService(int capacity, int minLoad, double maxWait) {
+        attraction1.setBatchService(capacity, minLoad, maxWait, EventType.DISPATCH_ATTRACTION1);
+        attraction2.setBatchService(capacity, minLoad, maxWait, EventType.DISPATCH_ATTRACTION2);
+        attraction3.setBatchService(capacity, minLoad, maxWait, EventType.DISPATCH_ATTRACTION3);
+        batch = new Visitor[capacity];
+    }
+
+    /**
+     * Feed the system time of every visitor leaving to another collector, e.g. one
+     * shared by several runs. With warm-up detection on, only the visitors leaving after
+     * the end of the warm-up are fed to it, once it has been detected.
+     *
+     * @param statistics collector the engine adds its "System time" statistic to
+     */
+    public void setStatisticsCollector(StatisticsCollector statistics) {
+        this.statistics = statistics;
+        systemTimes = statistics.add("System time");
+    }
+
+    @Override
+    public StatisticsCollector getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Export every visitor leaving the park from now on, warm-up or not. The caller
+     * closes the export once the runs are over.
+     *
+     * @param export export to add the visitors to, or null to stop exporting
+     */
+    public void setVisitorExport(VisitorExport export) {
+        this.export = export;
+    }
+
+    /**
+     * Turn automatic warm-up detection on or off, before running. While on, the system
+     * time of every visitor leaving and the number of visitors queued at that moment
+     * are fed to a {@link WarmupDetector}. Once it finds the end of the warm-up, all
+     * stats are truncated to what was collected after it, so the results are not
+     * biased by the empty park at the start. What was observed between the end of the
+     * warm-up and its detection is then fed to the statistics and the stopping rule:
+     * the system times one by one, the utilizations as one observation per batch of
+     * the detector.
+     *
+     * @param detect true to detect the warm-up period and leave it out of the results
+     */
+    public void setWarmupDetection(boolean detect) {
+        detectWarmup = detect;
+        warmup = detect ? new WarmupDetector(observation.length) : null;
+        markSize = 3;
+        for (ServicePoint sp : servicePoints) {
+            markSize += sp.getMarkSize();
+        }
+        marks = detect ? new double[64 * markSize] : null;
+        startMark = null;
+        if (detect) {
+            startMark = new double[markSize];
+            mark(startMark, 0);
+        }
+        pendingTimes = detect ? new double[64 * WarmupDetector.BATCH_SIZE] : null;
+        pendingCount = 0;
+        warmupTime = detect ? Double.NaN : 0.0;
+    }
+
+    /**
+     * Run until the mean system time and the utilization of every service point are
+     * known precisely enough, see {@link StoppingRule}, instead of for a fixed time.
+     * The simulation time stays the upper limit. With warm-up detection on, only what
+     * happens after the warm-up is observed.
+     *
+     * @param relativeHalfWidth largest accepted half-width of the confidence intervals, relative to the mean
+     * @param confidence confidence level of the intervals, e.g. 0.95
+     * @return Stopping rule, which holds the estimates
+     */
+    public StoppingRule setPrecision(double relativeHalfWidth, double confidence) {
+        StoppingRule rule = new StoppingRule(relativeHalfWidth, confidence);
+        systemTimeOutput = rule.addOutput("Mean system time");
+        utilizationOutputs = new BatchMeans[servicePoints.length];
+        for (int i = 0; i < servicePoints.length; i++) {
+            utilizationOutputs[i] = rule.addOutput(SERVICE_POINT_NAMES[i] + " utilization");
+        }
+        lastObserved = clock.getClock();
+        setStoppingRule(rule);
+        return rule;
+    }
+
+    /**
+     * @return Time the stats are collected from, NaN while the warm-up has not been detected yet
+     */
+    public double getWarmupTime() {
+        return warmupTime;
     }
 
     @Override
@@ -47,53 +237,60 @@ public class MyEngine extends Engine {
     @Override
     protected void runEvent(Event e) {
         Visitor v = e.getVisitor();
+        if (utilizationOutputs != null) observeUtilization();
 
         switch ((EventType) e.getType()) {
             case ARRIVAL_TICKETBOOTH:
                 ticketBooth.addQueue(v);
-                v.arriveAtAttraction("TicketBooth");
+                v.arriveAtAttraction(TICKET_BOOTH);
                 ticketBoothArrivals.generateNextEvent();
                 break;
 
             case DEPARTURE_TICKETBOOTH:
-                v = ticketBooth.endService();
-                v.departFromAttraction("TicketBooth", 0);
+                ticketBooth.endService(v);
+                v.departFromAttraction(TICKET_BOOTH, ticketBooth.getLastServiceTime());
                 restArea.addQueue(v);
-                v.arriveAtAttraction("RestArea");
+                v.arriveAtAttraction(REST_AREA);
                 break;
 
             case DEPARTURE_REST:
-                v = restArea.endService();
-                v.departFromAttraction("RestArea", 0);
-                double rnd = Math.random();
+                restArea.endService(v);
+                v.departFromAttraction(REST_AREA, restArea.getLastServiceTime());
+                double rnd = router.sample();
                 if (rnd < 0.33) {
-                    v.arriveAtAttraction("Attraction1");
+                    v.arriveAtAttraction(ATTRACTION1);
                     attraction1.addQueue(v);
                 } else if (rnd < 0.66) {
-                    v.arriveAtAttraction("Attraction2");
+                    v.arriveAtAttraction(ATTRACTION2);
                     attraction2.addQueue(v);
                 } else {
-                    v.arriveAtAttraction("Attraction3");
+                    v.arriveAtAttraction(ATTRACTION3);
                     attraction3.addQueue(v);
                 }
                 break;
 
             case DEPARTURE_ATTRACTION1:
-                v = attraction1.endService();
-                v.departFromAttraction("Attraction1", 0);
-                handleExitOrReturn(v);
+                departFromAttraction(attraction1, v, ATTRACTION1);
                 break;
 
             case DEPARTURE_ATTRACTION2:
-                v = attraction2.endService();
-                v.departFromAttraction("Attraction2", 0);
-                handleExitOrReturn(v);
+                departFromAttraction(attraction2, v, ATTRACTION2);
                 break;
 
             case DEPARTURE_ATTRACTION3:
-                v = attraction3.endService();
-                v.departFromAttraction("Attraction3", 0);
-                handleExitOrReturn(v);
+                departFromAttraction(attraction3, v, ATTRACTION3);
+                break;
+
+            case DISPATCH_ATTRACTION1:
+                attraction1.dispatchTimer();
+                break;
+
+            case DISPATCH_ATTRACTION2:
+                attraction2.dispatchTimer();
+                break;
+
+            case DISPATCH_ATTRACTION3:
+                attraction3.dispatchTimer();
                 break;
 
             default:
@@ -101,36 +298,236 @@ public class MyEngine extends Engine {
         }
     }
 
+    /**
+     * Finish the service of a departing visitor, or of its whole batch with batch
+     * service, and send each on.
+     */
+    private void departFromAttraction(ServicePoint attraction, Visitor v, int attractionId) {
+        if (batch == null) {
+            attraction.endService(v);
+            v.departFromAttraction(attractionId, attraction.getLastServiceTime());
+            handleExitOrReturn(v);
+            return;
+        }
+        int n = attraction.endBatch(v, batch);
+        for (int i = 0; i < n; i++) {
+            batch[i].departFromAttraction(attractionId, attraction.getLastServiceTime());
+            handleExitOrReturn(batch[i]);
+            batch[i] = null;
+        }
+    }
+
     /**
      * Decide whether visitor exits the park or returns to Rest Area.
      */
     private void handleExitOrReturn(Visitor v) {
-        if (Math.random() < 0.3) { // 30% chance to exit
-            v.setRemovalTime(Clock.getInstance().getClock());
-            v.reportResults();
-            Trace.out(Trace.Level.INFO, "Visitor " + v.getId() + " exited at " + Clock.getInstance().getClock());
+        if (router.sample() < 0.3) { // 30% chance to exit
+            v.setRemovalTime(clock.getClock());
+            exitedVisitors++;
+            totalSystemTime += v.getTotalSystemTime();
+            if (warmup != null) {
+                observeWarmup(v);
+            } else {
+                systemTimes.add(v.getTotalSystemTime());
+                if (systemTimeOutput != null) systemTimeOutput.add(v.getTotalSystemTime());
+            }
+            if (export != null) export.add(v);
+            if (isReporting() && Trace.isEnabled(Trace.Level.INFO)) v.reportResults();
+            Trace.out(Trace.Level.INFO, MSG_EXIT, EventType.EXIT_PARK, v.getId(), clock.getClock());
         } else {
             restArea.addQueue(v);
-            v.arriveAtAttraction("RestArea");
+            v.arriveAtAttraction(REST_AREA);
+        }
+    }
+
+    /**
+     * Add the share of busy servers of each service point since the last time step,
+     * weighted by its length.
+     */
+    private void observeUtilization() {
+        double now = clock.getClock();
+        if (now == lastObserved) return;
+        if (warmup == null) {
+            for (int i = 0; i < servicePoints.length; i++) {
+                ServicePoint sp = servicePoints[i];
+                utilizationOutputs[i].add((double) sp.getBusyServerCount() / sp.getServerCount(), now - lastObserved);
+            }
+        }
+        lastObserved = now;
+    }
+
+    private void observeWarmup(Visitor v) {
+        int queued = 0;
+        for (ServicePoint sp : servicePoints) {
+            queued += sp.getQueueLength();
+        }
+        observation[0] = v.getTotalSystemTime();
+        observation[1] = queued;
+        if (pendingCount == pendingTimes.length) {
+            pendingTimes = Arrays.copyOf(pendingTimes, 2 * pendingCount);
+        }
+        pendingTimes[pendingCount++] = v.getTotalSystemTime();
+        if (!warmup.observe(observation)) return;
+
+        // Remember the stats at the end of the batch, to truncate them there later
+        int batch = warmup.getBatchCount() - 1;
+        if ((batch + 1) * markSize > marks.length) {
+            marks = Arrays.copyOf(marks, 2 * marks.length);
+        }
+        mark(marks, batch * markSize);
+
+        if (warmup.isDetected()) {
+            int d = warmup.getTruncation();
+            replayAfter(d, batch + 1);
+            if (d > 0) {
+                int m = (d - 1) * markSize;
+                warmupTime = marks[m];
+                exitedVisitors -= (int) marks[m + 1];
+                totalSystemTime -= marks[m + 2];
+                m += 3;
+                for (ServicePoint sp : servicePoints) {
+                    sp.truncateStatistics(marks, m);
+                    m += sp.getMarkSize();
+                }
+            } else {
+                warmupTime = 0.0;
+            }
+            Trace.out(Trace.Level.INFO, MSG_WARMUP, null, Trace.NO_VISITOR, warmupTime);
+            warmup = null;
+            marks = null;
+            startMark = null;
+            pendingTimes = null;
+        }
+    }
+
+    /** Write the time, the exits, the total system time and the marks of the service points */
+    private void mark(double[] array, int m) {
+        array[m] = clock.getClock();
+        array[m + 1] = exitedVisitors;
+        array[m + 2] = totalSystemTime;
+        m += 3;
+        for (ServicePoint sp : servicePoints) {
+            sp.mark(array, m);
+            m += sp.getMarkSize();
+        }
+    }
+
+    /**
+     * Feed the outputs what was observed from the end of the warm-up to its detection:
+     * the system times of the visitors that left after the first d batches, and the
+     * utilization of every service point over each later batch, weighted by its length.
+     *
+     * @param d number of batches truncated
+     * @param batches number of batches observed
+     */
+    private void replayAfter(int d, int batches) {
+        for (int k = d * WarmupDetector.BATCH_SIZE; k < pendingCount; k++) {
+            systemTimes.add(pendingTimes[k]);
+            if (systemTimeOutput != null) systemTimeOutput.add(pendingTimes[k]);
+        }
+        if (utilizationOutputs == null) return;
+        for (int b = d; b < batches; b++) {
+            double[] from = b > 0 ? marks : startMark;
+            int f = b > 0 ? (b - 1) * markSize : 0;
+            int t = b * markSize;
+            double dt = marks[t] - from[f];
+            int offset = 3;
+            for (int i = 0; i < servicePoints.length; i++) {
+                double busy = marks[t + offset + 5] - from[f + offset + 5]; // busy time, see ServicePoint.mark()
+                utilizationOutputs[i].add(dt > 0 ? busy / dt / servicePoints[i].getServerCount() : 0, dt);
+                offset += servicePoints[i].getMarkSize();
+            }
         }
     }
 
     @Override
     protected void tryCEvents() {
-        if (!ticketBooth.isReserved() && ticketBooth.isOnQueue()) ticketBooth.beginService();
-        if (!restArea.isReserved()    && restArea.isOnQueue())    restArea.beginService();
-        if (!attraction1.isReserved() && attraction1.isOnQueue()) attraction1.beginService();
-        if (!attraction2.isReserved() && attraction2.isOnQueue()) attraction2.beginService();
-        if (!attraction3.isReserved() && attraction3.isOnQueue()) attraction3.beginService();
+        // Only the service points that gained a visitor while idle, or became idle with
+        // visitors waiting, begin a service; in the order they were created
+        context.getReadySet().run();
     }
 
     @Override
     protected void results() {
-        System.out.println("Simulation ended at " + Clock.getInstance().getClock());
+        System.out.println("Simulation ended at " + clock.getClock());
         System.out.println("Ticket Booth utilization: " + ticketBooth.getUtilization());
         System.out.println("Rest Area utilization: " + restArea.getUtilization());
         System.out.println("Attraction 1 throughput: " + attraction1.getThroughput());
         System.out.println("Attraction 2 throughput: " + attraction2.getThroughput());
         System.out.println("Attraction 3 throughput: " + attraction3.getThroughput());
+        for (int i = 0; i < servicePoints.length; i++) {
+            System.out.printf("%s mean queue length: %.4f, mean wait: %.4f%n", SERVICE_POINT_NAMES[i],
+                    servicePoints[i].getMeanQueueLength(), servicePoints[i].getMeanWait());
+        }
+        System.out.print(statistics.format());
+        if (getStoppingRule() != null) System.out.print(getStoppingRule().format());
+        if (detectWarmup) {
+            System.out.println(Double.isNaN(warmupTime) ? "Warm-up not detected, the run is too short"
+                    : "Warm-up time: " + warmupTime);
+        }
+    }
+
+    @Override
+    protected void writeState(SnapshotWriter out) throws IOException {
+        if (warmup != null) {
+            throw new IllegalStateException("Cannot save a snapshot while the warm-up is being detected");
+        }
+        out.writeLong(ticketBoothArrivals.getSeed());
+        for (ServicePoint sp : servicePoints) {
+            sp.writeState(out);
+        }
+        out.writeLong(router.getSeed());
+        out.writeInt(exitedVisitors);
+        out.writeDouble(totalSystemTime);
+        out.writeBoolean(detectWarmup);
+        out.writeDouble(warmupTime);
+        statistics.writeState(out);
+    }
+
+    @Override
+    protected void readState(SnapshotReader in) {
+        ticketBoothArrivals.setSeed(in.readLong());
+        for (ServicePoint sp : servicePoints) {
+            sp.readState(in);
+        }
+        router.setSeed(in.readLong());
+        exitedVisitors = in.readInt();
+        totalSystemTime = in.readDouble();
+        detectWarmup = in.readBoolean();
+        warmupTime = in.readDouble();
+        statistics.readState(in);
+        warmup = null;
+        marks = null;
+        startMark = null;
+        pendingTimes = null;
+        lastObserved = clock.getClock();
+    }
+
+    @Override
+    protected IEventType[] getEventTypes() {
+        return EventType.values();
+    }
+
+    @Override
+    public void reseed(SeedGenerator seeds) {
+        ticketBoothArrivals.setSeed(seeds.sample());
+        for (ServicePoint sp : servicePoints) {
+            sp.setSeed(seeds.sample());
+        }
+        router.setSeed(seeds.sample());
+    }
+
+    @Override
+    public Map<String, Double> getResults() {
+        Map<String, Double> r = new LinkedHashMap<>();
+        r.put("Ticket Booth utilization", ticketBooth.getUtilization());
+        r.put("Rest Area utilization", restArea.getUtilization());
+        r.put("Attraction 1 throughput", (double) attraction1.getThroughput());
+        r.put("Attraction 2 throughput", (double) attraction2.getThroughput());
+        r.put("Attraction 3 throughput", (double) attraction3.getThroughput());
+        r.put("Exited visitors", (double) exitedVisitors);
+        r.put("Mean system time", exitedVisitors > 0 ? totalSystemTime / exitedVisitors : 0.0);
+        if (detectWarmup) r.put("Warm-up time", warmupTime);
+        return r;
     }
 }
\ No newline at end of file
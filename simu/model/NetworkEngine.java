@@ -0,0 +1,245 @@
+package simu.model;
+
+import eduni.distributions.SeedGenerator;
+import eduni.distributions.Uniform;
+import simu.framework.*;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sequential engine for a park described by a {@link ParkTopology}.
+ * Events are dispatched on their ordinal, see {@link NetworkEventType}.
+ */
+public class NetworkEngine extends Engine {
+    private static final int MSG_EXIT = Trace.registerMessage("Visitor {visitor} exited at {value}");
+
+    private final ParkTopology topology;
+    private final NetworkEventType[] types;
+    private final ArrivalProcess arrivals;
+    private final ServicePoint[] servicePoints;
+    private final Uniform[] routers;
+    private VisitorTable table; // visitors kept off-heap, null for Visitor objects
+    private VisitorExport export; // gets the visitors leaving, null without export
+
+    // Stats per node the visitors exit from
+    private final int[] exited;
+    private final double[] exitedSystemTime;
+
+    /**
+     * @param topology park to simulate
+     * @param seeds source of the topology's {@link ParkTopology#getRandomStreams()} seeds
+     */
+    public NetworkEngine(ParkTopology topology, SeedGenerator seeds) {
+        this(new HeapEventList(), topology, seeds);
+    }
+
+    /**
+     * @param eventList event list implementation the engine keeps its pending events in
+     * @param topology park to simulate
+     * @param seeds source of the topology's {@link ParkTopology#getRandomStreams()} seeds
+     */
+    public NetworkEngine(EventList eventList, ParkTopology topology, SeedGenerator seeds) {
+        super(eventList);
+        this.topology = topology;
+
+        int n = topology.getNodeCount();
+        types = NetworkEventType.values(topology);
+        NetworkStreams streams = new NetworkStreams(topology, seeds);
+
+        arrivals = new ArrivalProcess(streams.arrivals, context, types[0]);
+        servicePoints = new ServicePoint[n];
+        for (int i = 0; i < n; i++) {
+            servicePoints[i] = new ServicePoint(streams.service[i], context, types[NetworkEventType.departure(i)],
+                    topology.getServers(i));
+        }
+        routers = streams.routers;
+        exited = new int[n];
+        exitedSystemTime = new double[n];
+    }
+
+    /**
+     * Draw the interarrival and service times a block at a time instead of one by one.
+     * The results are the same. It pays off for distributions whose bulk sampling is
+     * faster, such as exponential and lognormal times, on parks with few nodes; with
+     * hundreds of nodes the blocks no longer fit in the cache. Call it before running.
+     *
+     * @param size samples drawn at once by every stream
+     * @see ServicePoint#setSampleBuffer(int)
+     */
+    public void setSampleBuffer(int size) {
+        arrivals.setSampleBuffer(size);
+        for (ServicePoint sp : servicePoints) {
+            sp.setSampleBuffer(size);
+        }
+    }
+
+    /**
+     * Keep the visitors in an off-heap {@link VisitorTable} instead of as objects, for
+     * runs with very many visitors in the park. Events and service points then carry
+     * int handles, and the slot of a visitor is reused once it exits. The results are
+     * the same either way. Call it before running; snapshots are not supported then.
+     *
+     * @param table empty table for the visitors of this engine
+     */
+    public void setVisitorTable(VisitorTable table) {
+        if (table.size() > 0) throw new IllegalArgumentException("Visitor table is not empty");
+        for (ServicePoint sp : servicePoints) {
+            sp.useHandles(table);
+        }
+        arrivals.setVisitorTable(table);
+        this.table = table;
+    }
+
+    public VisitorTable getVisitorTable() {
+        return table;
+    }
+
+    /**
+     * Export every visitor leaving the park from now on. The caller closes the export
+     * once the runs are over.
+     *
+     * @param export export to add the visitors to, or null to stop exporting
+     */
+    public void setVisitorExport(VisitorExport export) {
+        this.export = export;
+    }
+
+    @Override
+    protected void initialize() {
+        arrivals.generateNextEvent();
+    }
+
+    @Override
+    protected void runEvent(Event e) {
+        if (table != null) {
+            runTableEvent(e);
+            return;
+        }
+        int ordinal = e.getType().ordinal();
+        if (ordinal == 0) {
+            servicePoints[topology.getEntryNode()].addQueue(e.getVisitor());
+            arrivals.generateNextEvent();
+            return;
+        }
+
+        int node = ordinal - 1;
+        Visitor v = servicePoints[node].endService(e.getVisitor());
+        int next = topology.route(node, routers[node].sample());
+        if (next < 0) {
+            v.setRemovalTime(clock.getClock());
+            exited[node]++;
+            exitedSystemTime[node] += v.getTotalSystemTime();
+            if (export != null) export.add(v);
+            Trace.out(Trace.Level.INFO, MSG_EXIT, null, v.getId(), clock.getClock());
+        } else {
+            servicePoints[next].addQueue(v);
+        }
+    }
+
+    /** {@link #runEvent} for visitors kept in the visitor table */
+    private void runTableEvent(Event e) {
+        int ordinal = e.getType().ordinal();
+        if (ordinal == 0) {
+            int entry = topology.getEntryNode();
+            table.setLocation(e.getHandle(), entry);
+            servicePoints[entry].addQueue(e.getHandle());
+            arrivals.generateNextEvent();
+            return;
+        }
+
+        int node = ordinal - 1;
+        int h = servicePoints[node].endService(e.getHandle());
+        int next = topology.route(node, routers[node].sample());
+        if (next < 0) {
+            table.setRemovalTime(h, clock.getClock());
+            exited[node]++;
+            exitedSystemTime[node] += table.getTotalSystemTime(h);
+            if (export != null) export.add(table, h);
+            Trace.out(Trace.Level.INFO, MSG_EXIT, null, table.getId(h), clock.getClock());
+            table.remove(h);
+        } else {
+            table.setLocation(h, next);
+            servicePoints[next].addQueue(h);
+        }
+    }
+
+    @Override
+    protected void tryCEvents() {
+        context.getReadySet().run(); // the service points that can begin a service, in node order
+    }
+
+    @Override
+    protected void results() {
+        System.out.println("Simulation ended at " + clock.getClock());
+        getResults().forEach((name, value) -> System.out.println(name + ": " + value));
+    }
+
+    @Override
+    protected void writeState(SnapshotWriter out) throws IOException {
+        out.writeInt(servicePoints.length);
+        out.writeLong(arrivals.getSeed());
+        for (int i = 0; i < servicePoints.length; i++) {
+            servicePoints[i].writeState(out);
+            out.writeLong(routers[i].getSeed());
+            out.writeInt(exited[i]);
+            out.writeDouble(exitedSystemTime[i]);
+        }
+    }
+
+    @Override
+    protected void readState(SnapshotReader in) {
+        int n = in.readInt();
+        if (n != servicePoints.length) {
+            throw new IllegalArgumentException("Snapshot has " + n + " nodes, the topology " + servicePoints.length);
+        }
+        arrivals.setSeed(in.readLong());
+        for (int i = 0; i < n; i++) {
+            servicePoints[i].readState(in);
+            routers[i].setSeed(in.readLong());
+            exited[i] = in.readInt();
+            exitedSystemTime[i] = in.readDouble();
+        }
+    }
+
+    @Override
+    protected IEventType[] getEventTypes() {
+        return types;
+    }
+
+    @Override
+    public void reseed(SeedGenerator seeds) {
+        arrivals.setSeed(seeds.sample());
+        for (int i = 0; i < servicePoints.length; i++) {
+            servicePoints[i].setSeed(seeds.sample());
+            routers[i].setSeed(seeds.sample());
+        }
+    }
+
+    @Override
+    public Map<String, Double> getResults() {
+        return results(topology, servicePoints, exited, exitedSystemTime);
+    }
+
+    /**
+     * Results of a topology run. The system times are summed per exit node and then
+     * in node order, so the result does not depend on the order nodes were simulated in.
+     */
+    static Map<String, Double> results(ParkTopology topology, ServicePoint[] servicePoints,
+                                       int[] exited, double[] exitedSystemTime) {
+        Map<String, Double> r = new LinkedHashMap<>();
+        int visitors = 0;
+        double systemTime = 0;
+        for (int i = 0; i < servicePoints.length; i++) {
+            r.put(topology.getName(i) + " utilization", servicePoints[i].getUtilization());
+            r.put(topology.getName(i) + " throughput", (double) servicePoints[i].getThroughput());
+            r.put(topology.getName(i) + " mean queue length", servicePoints[i].getMeanQueueLength());
+            visitors += exited[i];
+            systemTime += exitedSystemTime[i];
+        }
+        r.put("Exited visitors", (double) visitors);
+        r.put("Mean system time", visitors > 0 ? systemTime / visitors : 0.0);
+        return r;
+    }
+}
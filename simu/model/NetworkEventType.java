@@ -0,0 +1,52 @@
+package simu.model;
+
+import simu.framework.IEventType;
+
+/**
+ * Event types of a {@link ParkTopology}, numbered so that engines dispatch on the
+ * ordinal alone: 0 is the arrival to the park, 1..n the departure from node 0..n-1,
+ * and n+1..2n the transfer of a visitor into node 0..n-1 from another logical process.
+ */
+public final class NetworkEventType implements IEventType {
+    private final int ordinal;
+    private final String name;
+
+    private NetworkEventType(int ordinal, String name) {
+        this.ordinal = ordinal;
+        this.name = name;
+    }
+
+    /**
+     * @return All event types of the topology, indexed by ordinal
+     */
+    public static NetworkEventType[] values(ParkTopology topology) {
+        int n = topology.getNodeCount();
+        NetworkEventType[] types = new NetworkEventType[1 + 2 * n];
+        types[0] = new NetworkEventType(0, "ARRIVAL");
+        for (int i = 0; i < n; i++) {
+            types[departure(i)] = new NetworkEventType(departure(i), "DEPARTURE " + topology.getName(i));
+            types[transfer(n, i)] = new NetworkEventType(transfer(n, i), "TRANSFER " + topology.getName(i));
+        }
+        return types;
+    }
+
+    /** Ordinal of the departure from a node */
+    public static int departure(int node) {
+        return 1 + node;
+    }
+
+    /** Ordinal of the transfer into a node, in a topology of n nodes */
+    public static int transfer(int n, int node) {
+        return 1 + n + node;
+    }
+
+    @Override
+    public int ordinal() {
+        return ordinal;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,27 @@
+package simu.model;
+
+import eduni.distributions.ContinuousGenerator;
+import eduni.distributions.Negexp;
+import eduni.distributions.SeedGenerator;
+import eduni.distributions.Uniform;
+
+/**
+ * Random streams of a {@link ParkTopology}: the arrival stream and a service and a
+ * routing stream per node, seeded in the order documented by the topology.
+ */
+class NetworkStreams {
+    final ContinuousGenerator arrivals;
+    final ContinuousGenerator[] service;
+    final Uniform[] routers;
+
+    NetworkStreams(ParkTopology topology, SeedGenerator seeds) {
+        int n = topology.getNodeCount();
+        arrivals = new Negexp(topology.getArrivalMean(), seeds.sample());
+        service = new ContinuousGenerator[n];
+        routers = new Uniform[n];
+        for (int i = 0; i < n; i++) {
+            service[i] = topology.createServiceTimes(i, seeds.sample());
+            routers[i] = new Uniform(0, 1, seeds.sample());
+        }
+    }
+}
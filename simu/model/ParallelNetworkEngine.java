@@ -0,0 +1,41 @@
+package simu.model;
+
+import eduni.distributions.SeedGenerator;
+
+/**
+ * Conservative parallel engine: every logical process runs its own three-phase loop
+ * and only runs events that no transfer from another process can precede any more,
+ * see {@link ConservativeProcess}.
+ */
+public class ParallelNetworkEngine extends PartitionedEngine {
+    /**
+     * Distribute the nodes round-robin over the given number of processes.
+     *
+     * @param topology park to simulate
+     * @param seeds source of the topology's {@link ParkTopology#getRandomStreams()} seeds
+     * @param processes number of logical processes (threads)
+     */
+    public ParallelNetworkEngine(ParkTopology topology, SeedGenerator seeds, int processes) {
+        this(topology, seeds, roundRobin(topology.getNodeCount(), processes));
+    }
+
+    /**
+     * @param topology park to simulate
+     * @param seeds source of the topology's {@link ParkTopology#getRandomStreams()} seeds
+     * @param partition process index of every node; processes are numbered from 0
+     */
+    public ParallelNetworkEngine(ParkTopology topology, SeedGenerator seeds, int[] partition) {
+        super(topology, seeds, partition, ConservativeProcess::new);
+    }
+
+    /**
+     * @return Number of times a process had to wait for another one
+     */
+    public long getBlockedCount() {
+        long blocks = 0;
+        for (LogicalProcess lp : processes) {
+            blocks += ((ConservativeProcess) lp).getBlockedCount();
+        }
+        return blocks;
+    }
+}
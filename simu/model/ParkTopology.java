@@ -0,0 +1,534 @@
+package simu.model;
+
+import eduni.distributions.ContinuousGenerator;
+import eduni.distributions.Erlang;
+import eduni.distributions.Gamma;
+import eduni.distributions.LogNormal;
+import eduni.distributions.Negexp;
+import eduni.distributions.Normal;
+import eduni.distributions.Uniform;
+import eduni.distributions.Weibull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Network of service points that visitors move through.
+ *
+ * Visitors arrive with exponential interarrival times at the entry node. Every node
+ * has one or more servers and a service time {@link Distribution}, Normal unless
+ * given. After service at node i the visitor moves to node j with probability
+ * getRoutingProbability(i, j) and leaves the park with the remaining probability.
+ * The routing matrix is compiled into an {@link AliasTable} per node over its possible
+ * destinations and the exit, so picking one takes constant time however many rides
+ * the park has.
+ *
+ * A topology can be loaded from a text file, see {@link #load(Path)}, so parks with
+ * hundreds of rides need no code.
+ *
+ * Engines built on a topology ({@link NetworkEngine}, {@link ParallelNetworkEngine})
+ * take {@link #getRandomStreams()} seeds in a fixed order: the arrival stream, then the
+ * service stream and the routing stream of every node. Each node draws only from its
+ * own streams, so the runs do not depend on how the nodes are distributed over threads.
+ */
+public class ParkTopology {
+    private static final double EXIT_EPS = 1e-12; // exit probabilities left by rounding the routing row sums
+
+    private final double arrivalMean;
+    private final int entryNode;
+    private final String[] names;
+    private final Distribution[] distributions;
+    private final double[][] serviceParameters;
+    private final int[] servers;
+    private final double[][] routing; // routing[i][j]: probability to move from node i to node j
+    private final AliasTable[] routers; // per node, over its outcomes
+    private final int[][] outcomes;     // per node, the nodes it routes to with a positive probability, -1 for the exit
+
+    /** Service time distribution of a node, with the parameters of its eduni.distributions class */
+    public enum Distribution {
+        /** Normal(mean, variance) */
+        NORMAL(2),
+        /** Negexp(mean) */
+        EXPONENTIAL(1),
+        /** Uniform(min, max) */
+        UNIFORM(2),
+        /** Erlang(shape, scale) */
+        ERLANG(2),
+        /** LogNormal(mean, variance) */
+        LOGNORMAL(2),
+        /** Gamma(scale, shape) */
+        GAMMA(2),
+        /** Weibull(scale, shape) */
+        WEIBULL(2);
+
+        private final int parameters;
+
+        Distribution(int parameters) {
+            this.parameters = parameters;
+        }
+
+        public int getParameterCount() {
+            return parameters;
+        }
+
+        /**
+         * @param p parameters, as many as {@link #getParameterCount()}
+         * @param seed seed of the stream
+         * @return Generator of the distribution
+         */
+        public ContinuousGenerator create(double[] p, long seed) {
+            return switch (this) {
+                case NORMAL -> new Normal(p[0], p[1], seed);
+                case EXPONENTIAL -> new Negexp(p[0], seed);
+                case UNIFORM -> new Uniform(p[0], p[1], seed);
+                case ERLANG -> new Erlang(p[0], p[1], seed);
+                case LOGNORMAL -> new LogNormal(p[0], p[1], seed);
+                case GAMMA -> new Gamma(p[0], p[1], seed);
+                case WEIBULL -> new Weibull(p[0], p[1], seed);
+            };
+        }
+    }
+
+    /**
+     * @param arrivalMean mean time between arrivals to the park
+     * @param entryNode index of the node the visitors arrive at
+     * @param names node names
+     * @param serviceMeans mean service time of every node
+     * @param serviceVariances service time variance of every node, as passed to {@link eduni.distributions.Normal}
+     * @param routing routing[i][j] is the probability to move from node i to node j; each row may sum to at most 1
+     */
+    public ParkTopology(double arrivalMean, int entryNode, String[] names,
+                        double[] serviceMeans, double[] serviceVariances, double[][] routing) {
+        this(arrivalMean, entryNode, names, serviceMeans, serviceVariances, singleServers(names.length), routing);
+    }
+
+    /**
+     * @param arrivalMean mean time between arrivals to the park
+     * @param entryNode index of the node the visitors arrive at
+     * @param names node names
+     * @param serviceMeans mean service time of every node
+     * @param serviceVariances service time variance of every node, as passed to {@link eduni.distributions.Normal}
+     * @param servers number of servers of every node
+     * @param routing routing[i][j] is the probability to move from node i to node j; each row may sum to at most 1
+     */
+    public ParkTopology(double arrivalMean, int entryNode, String[] names,
+                        double[] serviceMeans, double[] serviceVariances, int[] servers, double[][] routing) {
+        this(arrivalMean, entryNode, names, normal(names.length), pairs(serviceMeans, serviceVariances), servers, routing);
+    }
+
+    /**
+     * @param arrivalMean mean time between arrivals to the park
+     * @param entryNode index of the node the visitors arrive at
+     * @param names node names
+     * @param distributions service time distribution of every node
+     * @param serviceParameters parameters of the service time distribution of every node
+     * @param servers number of servers of every node
+     * @param routing routing[i][j] is the probability to move from node i to node j; each row may sum to at most 1
+     */
+    public ParkTopology(double arrivalMean, int entryNode, String[] names, Distribution[] distributions,
+                        double[][] serviceParameters, int[] servers, double[][] routing) {
+        int n = names.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("Topology has no nodes");
+        }
+        if (distributions.length != n || serviceParameters.length != n || servers.length != n || routing.length != n) {
+            throw new IllegalArgumentException("Node parameters must all have " + n + " entries");
+        }
+        if (entryNode < 0 || entryNode >= n) {
+            throw new IllegalArgumentException("Entry node " + entryNode + " does not exist");
+        }
+        for (int i = 0; i < n; i++) {
+            if (servers[i] < 1) {
+                throw new IllegalArgumentException(names[i] + " needs at least one server");
+            }
+            if (serviceParameters[i].length != distributions[i].getParameterCount()) {
+                throw new IllegalArgumentException(distributions[i] + " service time of " + names[i]
+                        + " takes " + distributions[i].getParameterCount() + " parameters");
+            }
+            if (routing[i].length != n) {
+                throw new IllegalArgumentException("Routing row of " + names[i] + " must have " + n + " entries");
+            }
+            double sum = 0;
+            for (double p : routing[i]) {
+                if (p < 0) {
+                    throw new IllegalArgumentException("Negative routing probability from " + names[i]);
+                }
+                sum += p;
+            }
+            if (sum > 1 + 1e-9) {
+                throw new IllegalArgumentException("Routing probabilities from " + names[i] + " sum to " + sum);
+            }
+        }
+        this.arrivalMean = arrivalMean;
+        this.entryNode = entryNode;
+        this.names = names.clone();
+        this.distributions = distributions.clone();
+        this.serviceParameters = new double[n][];
+        this.servers = servers.clone();
+        this.routing = new double[n][];
+        routers = new AliasTable[n];
+        outcomes = new int[n][];
+        for (int i = 0; i < n; i++) {
+            this.serviceParameters[i] = serviceParameters[i].clone();
+            this.routing[i] = routing[i].clone();
+            compileRouting(i);
+        }
+    }
+
+    /** Build the alias table of the destinations of a node with a positive probability and the exit */
+    private void compileRouting(int node) {
+        double[] row = routing[node];
+        double exit = exitProbability(row);
+        int k = exit > EXIT_EPS ? 1 : 0;
+        for (double p : row) {
+            if (p > 0) k++;
+        }
+        outcomes[node] = new int[k];
+        double[] weights = new double[k];
+        k = 0;
+        for (int j = 0; j < row.length; j++) {
+            if (row[j] > 0) {
+                outcomes[node][k] = j;
+                weights[k++] = row[j];
+            }
+        }
+        if (exit > EXIT_EPS) {
+            outcomes[node][k] = -1;
+            weights[k] = exit;
+        }
+        routers[node] = new AliasTable(weights);
+    }
+
+    /**
+     * The park of {@link MyEngine}: ticket booth, rest area and three attractions.
+     * The parameters are those of the MyEngine constructor.
+     */
+    public static ParkTopology standardPark(double arrivalMean,
+                                            double ticketMean, double ticketStd,
+                                            double restMean, double restStd,
+                                            double attr1Mean, double attr1Std,
+                                            double attr2Mean, double attr2Std,
+                                            double attr3Mean, double attr3Std) {
+        String[] names = {"Ticket Booth", "Rest Area", "Attraction 1", "Attraction 2", "Attraction 3"};
+        double[] means = {ticketMean, restMean, attr1Mean, attr2Mean, attr3Mean};
+        double[] variances = {ticketStd, restStd, attr1Std, attr2Std, attr3Std};
+        double[][] routing = {
+                {0, 1, 0, 0, 0},
+                {0, 0, 0.33, 0.33, 0.34},
+                {0, 0.7, 0, 0, 0},
+                {0, 0.7, 0, 0, 0},
+                {0, 0.7, 0, 0, 0},
+        };
+        return new ParkTopology(arrivalMean, 0, names, means, variances, routing);
+    }
+
+    /**
+     * A large park for scaling experiments: a ticket booth followed by the given number
+     * of rides. From the booth and from every ride a visitor picks one of the rides
+     * uniformly, except that a ride is left for the exit with probability 0.3.
+     * Ride service times are chosen so that every ride is busy the given fraction of time.
+     *
+     * @param rides number of rides
+     * @param arrivalMean mean time between arrivals to the park
+     * @param utilization target utilization of the rides, below 1
+     */
+    public static ParkTopology largePark(int rides, double arrivalMean, double utilization) {
+        int n = rides + 1;
+        double exit = 0.3;
+        double rideMean = utilization * rides * exit * arrivalMean;
+
+        String[] names = new String[n];
+        double[] means = new double[n];
+        double[] variances = new double[n];
+        double[][] routing = new double[n][n];
+
+        names[0] = "Ticket Booth";
+        means[0] = 0.5 * arrivalMean;
+        variances[0] = 0.1 * arrivalMean;
+        for (int j = 1; j < n; j++) {
+            routing[0][j] = 1.0 / rides;
+        }
+        for (int i = 1; i < n; i++) {
+            names[i] = "Ride " + i;
+            means[i] = rideMean;
+            variances[i] = 0.3 * rideMean;
+            for (int j = 1; j < n; j++) {
+                routing[i][j] = (1 - exit) / rides;
+            }
+        }
+        return new ParkTopology(arrivalMean, 0, names, means, variances, routing);
+    }
+
+    /**
+     * Pick the destination of a visitor leaving a node.
+     *
+     * @param from node the visitor leaves
+     * @param u uniform sample in [0, 1) from the routing stream of that node
+     * @return index of the next node, or -1 when the visitor leaves the park
+     */
+    public int route(int from, double u) {
+        return outcomes[from][routers[from].sample(u)];
+    }
+
+    /**
+     * @return Number of seeds engines built on this topology take from their SeedGenerator
+     */
+    public int getRandomStreams() {
+        return 1 + 2 * names.length;
+    }
+
+    public int getNodeCount() {
+        return names.length;
+    }
+
+    public int getEntryNode() {
+        return entryNode;
+    }
+
+    public double getArrivalMean() {
+        return arrivalMean;
+    }
+
+    public String getName(int node) {
+        return names[node];
+    }
+
+    public Distribution getServiceDistribution(int node) {
+        return distributions[node];
+    }
+
+    /**
+     * @return Parameters of the service time distribution of the node
+     */
+    public double[] getServiceParameters(int node) {
+        return serviceParameters[node].clone();
+    }
+
+    /**
+     * @param seed seed of the stream
+     * @return Service time generator of the node
+     */
+    public ContinuousGenerator createServiceTimes(int node, long seed) {
+        return distributions[node].create(serviceParameters[node], seed);
+    }
+
+    /**
+     * @return Number of servers of the node
+     */
+    public int getServers(int node) {
+        return servers[node];
+    }
+
+    public double getRoutingProbability(int from, int to) {
+        return routing[from][to];
+    }
+
+    /**
+     * @return Probability that a visitor leaves the park after service at the node
+     */
+    public double getExitProbability(int node) {
+        return exitProbability(routing[node]);
+    }
+
+    /** The probability not covered by a routing row */
+    private static double exitProbability(double[] row) {
+        double sum = 0;
+        for (double p : row) {
+            sum += p;
+        }
+        return Math.max(0, 1 - sum);
+    }
+
+    /**
+     * Load a topology from a text file of one statement per line; {@code #} starts a
+     * comment and names with spaces are put in double quotes:
+     * <pre>
+     * arrival 10.0                          mean time between arrivals, exponential
+     * node "Ticket Booth" 1 normal 5.0 2.0  name, servers, service time distribution and its parameters
+     * entry "Ticket Booth"                  node the visitors arrive at, the first node if not given
+     * route "Ticket Booth" "Rest Area" 1.0  routing probability from one node to another
+     * </pre>
+     * Nodes are numbered in the order they are listed. The distributions are those of
+     * {@link Distribution}, in lower case. Routes not listed have probability 0.
+     *
+     * @param file topology file
+     * @return Topology of the file
+     * @throws IOException if the file cannot be read or has a syntax error
+     * @throws IllegalArgumentException if the topology is not valid
+     */
+    public static ParkTopology load(Path file) throws IOException {
+        double arrivalMean = Double.NaN;
+        String entry = null;
+        List<String> names = new ArrayList<>();
+        List<Distribution> distributions = new ArrayList<>();
+        List<double[]> parameters = new ArrayList<>();
+        List<Integer> servers = new ArrayList<>();
+        List<String[]> routes = new ArrayList<>();
+        List<Double> probabilities = new ArrayList<>();
+
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                String where = file + ":" + number + ": ";
+                List<String> tokens = tokenize(line, where);
+                if (tokens.isEmpty()) continue;
+                String keyword = tokens.get(0);
+                try {
+                    switch (keyword) {
+                        case "arrival" -> {
+                            expect(tokens, 2, where);
+                            arrivalMean = Double.parseDouble(tokens.get(1));
+                        }
+                        case "entry" -> {
+                            expect(tokens, 2, where);
+                            entry = tokens.get(1);
+                        }
+                        case "node" -> {
+                            if (tokens.size() < 4) throw new IOException(where + "node needs a name, servers and a distribution");
+                            if (names.contains(tokens.get(1))) throw new IOException(where + "node " + tokens.get(1) + " is listed twice");
+                            Distribution d = distribution(tokens.get(3), where);
+                            expect(tokens, 4 + d.getParameterCount(), where);
+                            double[] p = new double[d.getParameterCount()];
+                            for (int i = 0; i < p.length; i++) {
+                                p[i] = Double.parseDouble(tokens.get(4 + i));
+                            }
+                            names.add(tokens.get(1));
+                            servers.add(Integer.parseInt(tokens.get(2)));
+                            distributions.add(d);
+                            parameters.add(p);
+                        }
+                        case "route" -> {
+                            expect(tokens, 4, where);
+                            routes.add(new String[] {tokens.get(1), tokens.get(2), where});
+                            probabilities.add(Double.parseDouble(tokens.get(3)));
+                        }
+                        default -> throw new IOException(where + "unknown statement " + keyword);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException(where + e.getMessage(), e);
+                }
+            }
+        }
+        if (Double.isNaN(arrivalMean)) throw new IOException(file + ": no arrival statement");
+        if (names.isEmpty()) throw new IOException(file + ": no nodes");
+
+        int n = names.size();
+        double[][] routing = new double[n][n];
+        for (int r = 0; r < routes.size(); r++) {
+            String[] route = routes.get(r);
+            routing[node(names, route[0], route[2])][node(names, route[1], route[2])] += probabilities.get(r);
+        }
+        return new ParkTopology(arrivalMean, entry != null ? node(names, entry, file + ": ") : 0,
+                names.toArray(new String[0]), distributions.toArray(new Distribution[0]),
+                parameters.toArray(new double[0][]), servers.stream().mapToInt(Integer::intValue).toArray(), routing);
+    }
+
+    /**
+     * Write this topology to a text file that {@link #load(Path)} reads back into the
+     * same topology.
+     *
+     * @param file topology file, created or overwritten
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("arrival " + arrivalMean + "\n");
+            for (int i = 0; i < names.length; i++) {
+                StringBuilder line = new StringBuilder("node ").append(quote(names[i])).append(' ').append(servers[i])
+                        .append(' ').append(distributions[i].name().toLowerCase(Locale.ROOT));
+                for (double p : serviceParameters[i]) {
+                    line.append(' ').append(p);
+                }
+                out.write(line.append('\n').toString());
+            }
+            out.write("entry " + quote(names[entryNode]) + "\n");
+            for (int i = 0; i < names.length; i++) {
+                for (int j = 0; j < names.length; j++) {
+                    if (routing[i][j] > 0) {
+                        out.write("route " + quote(names[i]) + " " + quote(names[j]) + " " + routing[i][j] + "\n");
+                    }
+                }
+            }
+        }
+    }
+
+    /** Split a line into words and quoted names, up to a comment */
+    private static List<String> tokenize(String line, String where) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '#') {
+                break;
+            } else if (c == '"') {
+                int end = line.indexOf('"', i + 1);
+                if (end < 0) throw new IOException(where + "missing closing quote");
+                tokens.add(line.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < line.length() && !Character.isWhitespace(line.charAt(end))) end++;
+                tokens.add(line.substring(i, end));
+                i = end;
+            }
+        }
+        return tokens;
+    }
+
+    private static Distribution distribution(String name, String where) throws IOException {
+        for (Distribution d : Distribution.values()) {
+            if (d.name().equalsIgnoreCase(name)) return d;
+        }
+        throw new IOException(where + "unknown distribution " + name);
+    }
+
+    private static void expect(List<String> tokens, int count, String where) throws IOException {
+        if (tokens.size() != count) {
+            throw new IOException(where + tokens.get(0) + " takes " + (count - 1) + " values, not " + (tokens.size() - 1));
+        }
+    }
+
+    private static int node(List<String> names, String name, String where) throws IOException {
+        int i = names.indexOf(name);
+        if (i < 0) throw new IOException(where + "no node " + name);
+        return i;
+    }
+
+    private static String quote(String name) {
+        return name.isEmpty() || name.chars().anyMatch(c -> Character.isWhitespace(c) || c == '#') ? '"' + name + '"' : name;
+    }
+
+    private static Distribution[] normal(int nodes) {
+        Distribution[] d = new Distribution[nodes];
+        Arrays.fill(d, Distribution.NORMAL);
+        return d;
+    }
+
+    private static double[][] pairs(double[] first, double[] second) {
+        if (first.length != second.length) {
+            throw new IllegalArgumentException("Node parameters must all have " + first.length + " entries");
+        }
+        double[][] p = new double[first.length][];
+        for (int i = 0; i < p.length; i++) {
+            p[i] = new double[] {first[i], second[i]};
+        }
+        return p;
+    }
+
+    private static int[] singleServers(int nodes) {
+        int[] servers = new int[nodes];
+        Arrays.fill(servers, 1);
+        return servers;
+    }
+}
@@ -0,0 +1,214 @@
+package simu.model;
+
+import eduni.distributions.SeedGenerator;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Parallel engine for a park described by a {@link ParkTopology}.
+ *
+ * The nodes are partitioned over logical processes, each with its own event list and
+ * clock and running on its own thread. Visitors moving to a node of another process
+ * are sent to it as timestamped transfers; the subclasses differ in how the processes
+ * make sure every node still sees its visitors in time order.
+ *
+ * Each node draws from its own random streams in the order it serves visitors, so for
+ * the same seeds the results are identical to those of a {@link NetworkEngine}.
+ */
+public abstract class PartitionedEngine {
+    /** Creates the logical process with the given index */
+    interface ProcessFactory {
+        LogicalProcess create(PartitionedEngine parent, ParkTopology topology, int index, int[] owner,
+                              NetworkStreams streams);
+    }
+
+    protected final ParkTopology topology;
+    protected final int[] owner;
+    protected final LogicalProcess[] processes;
+    private double simulationTime = 0;
+    private boolean reporting = true;
+
+    // Shared by the processes while they synchronise
+    private CyclicBarrier barrier;
+    private final double[] pending;
+    private volatile Throwable failure;
+    private Thread[] threads;
+    private double wallTime = 0;
+
+    PartitionedEngine(ParkTopology topology, SeedGenerator seeds, int[] partition, ProcessFactory factory) {
+        if (partition.length != topology.getNodeCount()) {
+            throw new IllegalArgumentException("Partition must have " + topology.getNodeCount() + " entries");
+        }
+        int count = 0;
+        for (int p : partition) {
+            if (p < 0) throw new IllegalArgumentException("Negative process index " + p);
+            count = Math.max(count, p + 1);
+        }
+        this.topology = topology;
+        owner = partition.clone();
+
+        NetworkStreams streams = new NetworkStreams(topology, seeds);
+        processes = new LogicalProcess[count];
+        for (int p = 0; p < count; p++) {
+            processes[p] = factory.create(this, topology, p, owner, streams);
+        }
+        pending = new double[count];
+    }
+
+    /**
+     * @return Partition that distributes the nodes round-robin over the given number of processes
+     */
+    static int[] roundRobin(int nodes, int processes) {
+        if (processes < 1 || processes > nodes) {
+            throw new IllegalArgumentException("Need between 1 and " + nodes + " processes, got " + processes);
+        }
+        int[] partition = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            partition[i] = i % processes;
+        }
+        return partition;
+    }
+
+    /**
+     * Define how long we will run the simulation.
+     * @param time Ending time of the simulation
+     */
+    public void setSimulationTime(double time) {
+        simulationTime = time;
+    }
+
+    public void setReporting(boolean reporting) {
+        this.reporting = reporting;
+    }
+
+    public boolean isReporting() {
+        return reporting;
+    }
+
+    /**
+     * Run all logical processes to the end of the simulation. Returns when they are done.
+     *
+     * @throws IllegalStateException if a process failed; the others are stopped
+     */
+    public void run() {
+        long start = System.nanoTime();
+        barrier = new CyclicBarrier(processes.length);
+        threads = new Thread[processes.length];
+        for (int p = 0; p < processes.length; p++) {
+            LogicalProcess lp = processes[p];
+            lp.setSimulationTime(simulationTime);
+            threads[p] = new Thread(() -> {
+                try {
+                    lp.run();
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            }, "logical-process-" + p);
+        }
+        for (int p = 0; p < processes.length; p++) {
+            processes[p].connect(processes, threads[p]);
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        try {
+            for (Thread t : threads) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            fail(e);
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Parallel simulation failed", failure);
+        }
+        wallTime = (System.nanoTime() - start) / 1e9;
+
+        if (reporting) results();
+    }
+
+    /**
+     * Print the results, called at the end of the simulation.
+     */
+    protected void results() {
+        System.out.println("Simulation ended at " + processes[0].getContext().getClock().getClock());
+        getResults().forEach((name, value) -> System.out.println(name + ": " + value));
+    }
+
+    /**
+     * @return Results of the run, equal to those of a {@link NetworkEngine} with the same seeds
+     */
+    public Map<String, Double> getResults() {
+        int n = topology.getNodeCount();
+        ServicePoint[] servicePoints = new ServicePoint[n];
+        int[] exited = new int[n];
+        double[] exitedSystemTime = new double[n];
+        for (int i = 0; i < n; i++) {
+            LogicalProcess lp = processes[owner[i]];
+            servicePoints[i] = lp.getServicePoint(i);
+            exited[i] = lp.exited[i];
+            exitedSystemTime[i] = lp.exitedSystemTime[i];
+        }
+        return NetworkEngine.results(topology, servicePoints, exited, exitedSystemTime);
+    }
+
+    /**
+     * @return Seconds the last run took
+     */
+    public double getWallTime() {
+        return wallTime;
+    }
+
+    public int getProcessCount() {
+        return processes.length;
+    }
+
+    /**
+     * @return Number of events run by all processes
+     */
+    public long getEventCount() {
+        long events = 0;
+        for (LogicalProcess lp : processes) {
+            events += lp.getEventCount();
+        }
+        return events;
+    }
+
+    LogicalProcess getProcess(int index) {
+        return processes[index];
+    }
+
+    /**
+     * Wait until all processes have reached the same point.
+     */
+    void await() {
+        try {
+            barrier.await();
+        } catch (InterruptedException | BrokenBarrierException e) {
+            throw new IllegalStateException("Parallel simulation was stopped", e);
+        }
+    }
+
+    /**
+     * Exchange a time with all other processes, e.g. their earliest pending event.
+     *
+     * @return Earliest of the times
+     */
+    double earliest(int index, double time) {
+        pending[index] = time;
+        await();
+        return Arrays.stream(pending).min().orElse(Double.POSITIVE_INFINITY);
+    }
+
+    private synchronized void fail(Throwable t) {
+        if (failure != null) return;
+        failure = t;
+        barrier.reset();
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+}
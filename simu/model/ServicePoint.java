@@ -1,87 +1,820 @@
 package simu.model;
 
+import eduni.distributions.BufferedGenerator;
 import eduni.distributions.ContinuousGenerator;
 import simu.framework.Clock;
 import simu.framework.Event;
 import simu.framework.EventList;
 import simu.framework.IEventType;
+import simu.framework.ReadySet;
+import simu.framework.SimulationContext;
+import simu.framework.SnapshotReader;
+import simu.framework.SnapshotWriter;
 import simu.framework.Trace;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.io.IOException;
+import java.util.Arrays;
 
-public class ServicePoint {
+/**
+ * Service point with one or more identical servers sharing one first-come first-served
+ * queue, e.g. a ride with several operators.
+ *
+ * Each server serves one visitor at a time and has its own departure time and busy
+ * time. A visitor departing is matched back to the server serving it, so the engine
+ * passes the departing visitor to {@link #endService(Visitor)}.
+ *
+ * With batch service, see {@link #setBatchService}, a server takes a whole batch of
+ * visitors at once, e.g. a roller coaster train, and one service time and one departure
+ * event cover the batch.
+ *
+ * With {@link #useHandles(VisitorTable)} the service point serves visitors kept in a
+ * {@link VisitorTable}, queued and carried by events as int handles.
+ *
+ * When a visitor begins service, the time it waited in the queue and the service time
+ * it gets are added to its totals, see {@link #setVisitorTimes}.
+ */
+public final class ServicePoint {
     private ContinuousGenerator generator;
+    private Clock clock;
     private EventList eventList;
     private IEventType departureType;
+    private ReadySet readySet;
+    private int readyIndex;  // of beginService() in the ready set
 
-    private Queue<Visitor> queue = new LinkedList<>();
-    private Visitor currentVisitor;
-    private boolean reserved = false;
+    private final VisitorQueue queue = new VisitorQueue();
+    private final int servers;
+    private final Visitor[] currentVisitors;      // per server, null while idle
+    private final double[] departureTimes;        // per server, of its current visitor
+    private final double[] serviceTimes;          // per server, of its current visitor or batch
+    private double lastServiceTime = Double.NaN;  // of the visitor or batch that finished last
+    private boolean visitorTimes = true;          // add waits and service times to the visitors
+    private int busyServers = 0;
+    private final double[] drawn;                 // service times drawn ahead by peekServiceTime(int), next first
+    private int drawnCount = 0;
 
-    // Stats
-    private int servedCount = 0;
-    private double busyTime = 0.0;
+    private final ServiceStatistics stats;
+
+    // Batch service, see setBatchService()
+    private int capacity = 1;                     // visitors per dispatch at most
+    private int minLoad = 1;                      // visitors needed to dispatch before the timer fires
+    private double maxWait;
+    private IEventType timerType;                 // of the dispatch timer events
+    private Visitor[][] batches;                  // per server, its batch led by the current visitor; null without batch service
+    private int[] batchSizes;
+    private double timerTime = Double.NaN;        // of the pending dispatch timer
+
+    // Visitors as visitor table handles, see useHandles(VisitorTable)
+    private HandleQueue handleQueue;              // null while serving Visitor objects
+    private VisitorTable table;                   // of the handles
+    private int[] currentHandles;                 // per server, -1 while idle
 
     private static final double EPS = 1e-9;
+    private static final int MSG_QUEUED = Trace.registerMessage("Visitor {visitor} added to queue at {type}");
+    private static final int MSG_SERVICE = Trace.registerMessage("ServicePoint {type} begins service for Visitor {visitor} -> departure scheduled at {value}");
+    private static final int MSG_DISPATCH = Trace.registerMessage("ServicePoint {type} dispatches the batch of Visitor {visitor} -> departure scheduled at {value}");
+
+    /**
+     * Service point with a single server.
+     */
+    public ServicePoint(ContinuousGenerator generator, SimulationContext context, IEventType departureType) {
+        this(generator, context, departureType, 1);
+    }
 
-    public ServicePoint(ContinuousGenerator generator, EventList eventList, IEventType departureType) {
+    /**
+     * @param generator service times
+     * @param context context of the simulation
+     * @param departureType type of the departure events, which carry the departing visitor
+     * @param servers number of servers
+     */
+    public ServicePoint(ContinuousGenerator generator, SimulationContext context, IEventType departureType, int servers) {
+        if (servers < 1) throw new IllegalArgumentException("A service point needs at least one server");
         this.generator = generator;
-        this.eventList = eventList;
+        this.clock = context.getClock();
+        this.eventList = context.getEventList();
         this.departureType = departureType;
+        this.servers = servers;
+        currentVisitors = new Visitor[servers];
+        departureTimes = new double[servers];
+        serviceTimes = new double[servers];
+        stats = new ServiceStatistics(servers);
+        drawn = new double[servers];
+        readySet = context.getReadySet();
+        readyIndex = readySet.add(this::beginService);
+    }
+
+    /**
+     * Serve the visitors in batches, like a ride that loads a train: an idle server
+     * takes up to {@code capacity} visitors as soon as at least {@code minLoad} are
+     * queued, or with fewer, whatever is queued once it has waited {@code maxWait} for
+     * more to join. Call it before the simulation starts.
+     *
+     * A departure event carries the first visitor of its batch; the engine finishes the
+     * whole batch with {@link #endBatch}. When the dispatch timer fires, an event of
+     * {@code timerType} without a visitor, the engine calls {@link #dispatchTimer()}.
+     *
+     * @param capacity largest batch
+     * @param minLoad smallest batch dispatched before the timer fires, at most the capacity
+     * @param maxWait longest wait for more visitors to join a batch
+     * @param timerType type of the dispatch timer events
+     */
+    public void setBatchService(int capacity, int minLoad, double maxWait, IEventType timerType) {
+        if (capacity < 1) throw new IllegalArgumentException("Batch capacity must be at least 1");
+        if (minLoad < 1 || minLoad > capacity) throw new IllegalArgumentException("Minimum load must be between 1 and the capacity");
+        if (!(maxWait >= 0)) throw new IllegalArgumentException("Maximum wait must not be negative");
+        if (timerType == null) throw new IllegalArgumentException("Dispatch timer needs an event type");
+        if (handleQueue != null) throw new IllegalStateException("Batch service of visitor table handles is not supported");
+        if (busyServers > 0 || stats.getServed() > 0) throw new IllegalStateException("Service at " + departureType + " has already begun");
+        this.capacity = capacity;
+        this.minLoad = minLoad;
+        this.maxWait = maxWait;
+        this.timerType = timerType;
+        batches = new Visitor[servers][capacity];
+        batchSizes = new int[servers];
+    }
+
+    /**
+     * Add the waits and service times of the visitors to their totals, or not, e.g.
+     * where visitors are shared by engines that roll back. On by default.
+     */
+    public void setVisitorTimes(boolean add) {
+        visitorTimes = add;
+    }
+
+    /**
+     * Draw the service times a block at a time, see {@link BufferedGenerator}. The
+     * service times are the same; savepoints and snapshots cost up to a block of samples
+     * more each. Call it before the simulation starts.
+     *
+     * @param size service times drawn at once
+     */
+    public void setSampleBuffer(int size) {
+        if (generator instanceof BufferedGenerator) throw new IllegalStateException("Service times are already buffered");
+        generator = new BufferedGenerator(generator, size);
+    }
+
+    /**
+     * Serve visitors kept in a {@link VisitorTable}: they are queued with
+     * {@link #addQueue(int)}, the departure events carry their handles and
+     * {@link #endService(int)} finishes their service. Call it before the simulation
+     * starts. Batch service, savepoints and snapshots are not supported then.
+     *
+     * @param table table of the visitors, whose wait and service times are added up in it
+     */
+    public void useHandles(VisitorTable table) {
+        if (batches != null) throw new IllegalStateException("Batch service of visitor table handles is not supported");
+        if (busyServers > 0 || stats.getServed() > 0 || !queue.isEmpty()) {
+            throw new IllegalStateException("Service at " + departureType + " has already begun");
+        }
+        this.table = table;
+        handleQueue = new HandleQueue();
+        currentHandles = new int[servers];
+        Arrays.fill(currentHandles, Event.NO_HANDLE);
+    }
+
+    /**
+     * Add a visitor kept in a visitor table to the queue, see {@link #useHandles(VisitorTable)}
+     *
+     * @param handle handle of the visitor in its table
+     */
+    public void addQueue(int handle) {
+        accumulate();
+        handleQueue.add(handle, clock.getClock());
+        stats.arrived();
+        if (busyServers < servers) readySet.mark(readyIndex);
     }
 
     /** Add a visitor to the queue */
     public void addQueue(Visitor v) {
-        queue.add(v);
-        Trace.out(Trace.Level.INFO, "Visitor " + v.getId() + " added to queue at " + departureType);
+        accumulate();
+        queue.add(v, clock.getClock());
+        stats.arrived();
+        if (busyServers < servers) readySet.mark(readyIndex);
+        Trace.out(Trace.Level.INFO, MSG_QUEUED, departureType, v.getId(), 0);
     }
 
-    /** Begin service for the next visitor in queue */
+    /** Begin service for the next visitors in queue, as many as there are idle servers */
     public void beginService() {
-        if (!reserved && !queue.isEmpty()) {
-            currentVisitor = queue.poll();
-            reserved = true;
+        if (batches != null) {
+            beginBatches();
+            return;
+        }
+        if (handleQueue != null) {
+            beginHandleServices();
+            return;
+        }
+        accumulate();
+        while (busyServers < servers && !queue.isEmpty()) {
+            int server = idleServer();
+            double joined = queue.getTime(0);
+            Visitor v = queue.poll();
+            currentVisitors[server] = v;
+            double departure = startService(server, 1);
+            if (visitorTimes) {
+                v.addWaitTime(clock.getClock() - joined);
+                v.addServiceTime(serviceTimes[server]);
+            }
+
+            eventList.schedule(departureType, departure, v);
+
+            Trace.out(Trace.Level.INFO, MSG_SERVICE, departureType, v.getId(), departure);
+        }
+    }
+
+    /** Begin service for the next queued handles, as many as there are idle servers */
+    private void beginHandleServices() {
+        accumulate();
+        while (busyServers < servers && !handleQueue.isEmpty()) {
+            int server = idleServer();
+            double joined = handleQueue.peekTime();
+            int handle = handleQueue.poll();
+            currentHandles[server] = handle;
+            double departure = startService(server, 1);
+            if (visitorTimes) {
+                table.addWaitTime(handle, clock.getClock() - joined);
+                table.addServiceTime(handle, serviceTimes[server]);
+            }
+
+            eventList.schedule(departureType, departure, handle);
+        }
+    }
+
+    /** Dispatch batches to the idle servers, or start the dispatch timer */
+    private void beginBatches() {
+        double now = clock.getClock();
+        accumulate();
+        while (busyServers < servers && !queue.isEmpty()) {
+            if (queue.size() < minLoad && !(timerTime <= now)) {
+                // Wait for more visitors, but no longer than the timer
+                if (Double.isNaN(timerTime)) {
+                    timerTime = now + maxWait;
+                    eventList.schedule(timerType, timerTime, null);
+                }
+                return;
+            }
+            timerTime = Double.NaN;
+
+            int server = idleServer();
+            Visitor[] batch = batches[server];
+            int n = Math.min(capacity, queue.size());
+            for (int i = 0; i < n; i++) {
+                if (visitorTimes) queue.get(0).addWaitTime(now - queue.getTime(0));
+                batch[i] = queue.poll();
+            }
+            batchSizes[server] = n;
+            currentVisitors[server] = batch[0];
+            double departure = startService(server, n);
+            if (visitorTimes) {
+                for (int i = 0; i < n; i++) {
+                    batch[i].addServiceTime(serviceTimes[server]);
+                }
+            }
+
+            eventList.schedule(departureType, departure, batch[0]);
+
+            Trace.out(Trace.Level.INFO, MSG_DISPATCH, departureType, batch[0].getId(), departure);
+        }
+    }
+
+    /**
+     * @return Index of the first idle server, of which there must be one
+     */
+    private int idleServer() {
+        int server = 0;
+        while (isBusy(server)) server++;
+        return server;
+    }
+
+    /**
+     * Start a server on the visitor, or batch of n, it has just taken from the queue:
+     * draw the service time and count the server busy.
+     *
+     * @return Departure time of the visitor or batch
+     */
+    private double startService(int server, int n) {
+        double serviceTime = takeServiceTime();
+        departureTimes[server] = clock.getClock() + serviceTime;
+        serviceTimes[server] = serviceTime;
+        busyServers++;
+        stats.begin(server, n, serviceTime);
+        return departureTimes[server];
+    }
 
-            double serviceTime = generator.sample();
-            if (serviceTime <= 0) serviceTime = EPS;
+    /**
+     * Handle a dispatch timer event. A timer that was overtaken by a full enough batch
+     * is ignored.
+     */
+    public void dispatchTimer() {
+        if (clock.getClock() == timerTime) readySet.mark(readyIndex);
+    }
 
-            double departureTime = Clock.getInstance().getClock() + serviceTime;
-            busyTime += serviceTime;
+    /**
+     * Service time of the next visitor to begin service, see {@link #peekServiceTime(int)}.
+     *
+     * @return Service time the next visitor will get
+     */
+    public double peekServiceTime() {
+        return peekServiceTime(0);
+    }
 
-            Event e = new Event(departureType, departureTime, currentVisitor);
-            eventList.add(e);
+    /**
+     * Service time of a visitor yet to begin service. The samples are drawn ahead of
+     * time and used in order by the next services, so the sequence of service times is
+     * the same whether or not it has been peeked at. A parallel engine uses them as
+     * lookahead.
+     *
+     * @param i 0 for the next visitor to begin service, 1 for the one after it, and so
+     *          on, less than the number of servers
+     * @return Service time the visitor will get
+     * @throws IllegalStateException if the generator yields a service time that is not finite
+     */
+    public double peekServiceTime(int i) {
+        if (i < 0 || i >= servers) {
+            throw new IllegalArgumentException("Can peek at " + servers + " service times at " + departureType + ", not " + (i + 1));
+        }
+        while (drawnCount <= i) {
+            double t = generator.sample();
+            if (!Double.isFinite(t)) {
+                throw new IllegalStateException("Service time " + t + " at " + departureType + " is not finite");
+            }
+            drawn[drawnCount++] = t <= 0 ? EPS : t;
+        }
+        return drawn[i];
+    }
 
-            Trace.out(Trace.Level.INFO,
-                    "ServicePoint " + departureType +
-                            " begins service for Visitor " + currentVisitor.getId() +
-                            " -> departure scheduled at " + departureTime);
+    /**
+     * @param k number of visitors, at most the number of servers
+     * @return Shortest of the service times the next k visitors to begin service will get
+     */
+    public double getShortestServiceTime(int k) {
+        double shortest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < k; i++) {
+            shortest = Math.min(shortest, peekServiceTime(i));
         }
+        return shortest;
     }
 
-    /** Finish service for the current visitor */
+    /** Service time of the visitor that begins service now */
+    private double takeServiceTime() {
+        double t = peekServiceTime(0);
+        drawnCount--;
+        System.arraycopy(drawn, 1, drawn, 0, drawnCount);
+        return t;
+    }
+
+    /**
+     * Finish service for the current visitor of a single-server service point.
+     *
+     * @throws IllegalStateException if the service point has several servers
+     */
     public Visitor endService() {
-        reserved = false;
-        Visitor finished = currentVisitor;
-        currentVisitor = null;
-        servedCount++;
-        return finished;
+        if (servers > 1) {
+            throw new IllegalStateException("Service point has " + servers + " servers, pass the departing visitor");
+        }
+        return endService(currentVisitors[0]);
+    }
+
+    /**
+     * Finish the service of a departing visitor and free its server.
+     *
+     * @param v visitor of the departure event
+     * @return The visitor
+     * @throws IllegalStateException if no server is serving the visitor
+     */
+    public Visitor endService(Visitor v) {
+        if (batches != null) throw new IllegalStateException(departureType + " serves batches, use endBatch()");
+        free(serverOf(v), 1);
+        return v;
+    }
+
+    /**
+     * Finish the service of a visitor kept in a visitor table and free its server.
+     *
+     * @param handle handle carried by the departure event
+     * @return The handle
+     * @throws IllegalStateException if no server is serving the visitor
+     */
+    public int endService(int handle) {
+        int server = 0;
+        while (server < servers && currentHandles[server] != handle) server++;
+        if (server == servers) {
+            throw new IllegalStateException("Visitor handle " + handle + " is not being served at " + departureType);
+        }
+        currentHandles[server] = Event.NO_HANDLE;
+        free(server, 1);
+        return handle;
+    }
+
+    /**
+     * Finish the service of a batch and free its server.
+     *
+     * @param leader visitor of the departure event, the first of the batch
+     * @param members array of at least {@link #getCapacity()} visitors the batch is copied to
+     * @return Number of visitors in the batch
+     * @throws IllegalStateException if the service point does not serve batches, or no
+     *         server is serving the batch of the visitor
+     */
+    public int endBatch(Visitor leader, Visitor[] members) {
+        if (batches == null) throw new IllegalStateException(departureType + " does not serve batches");
+        int server = serverOf(leader);
+        int n = batchSizes[server];
+        Visitor[] batch = batches[server];
+        System.arraycopy(batch, 0, members, 0, n);
+        Arrays.fill(batch, 0, n, null);
+        batchSizes[server] = 0;
+        free(server, n);
+        return n;
+    }
+
+    /**
+     * @return Index of the server serving the visitor
+     */
+    private int serverOf(Visitor v) {
+        int server = 0;
+        while (server < servers && (currentVisitors[server] != v || v == null)) server++;
+        if (server == servers) {
+            throw new IllegalStateException("Visitor " + (v != null ? v.getId() : null) + " is not being served at " + departureType);
+        }
+        return server;
+    }
+
+    /**
+     * @return Service time of the visitor, or batch, whose service was finished last
+     */
+    public double getLastServiceTime() {
+        return lastServiceTime;
+    }
+
+    /** Free a server that has finished serving a visitor, or a batch of n */
+    private void free(int server, int n) {
+        accumulate();
+        lastServiceTime = serviceTimes[server];
+        currentVisitors[server] = null;
+        busyServers--;
+        stats.end(n);
+        if (isOnQueue()) readySet.mark(readyIndex);
+    }
+
+    /** Bring the time-weighted stats up to now, before the queue or the servers change */
+    private void accumulate() {
+        stats.accumulate(clock.getClock(), getQueueLength(), busyServers);
+    }
+
+    private boolean isBusy(int server) {
+        return handleQueue != null ? currentHandles[server] != Event.NO_HANDLE : currentVisitors[server] != null;
+    }
+
+    /**
+     * Remember the current state, so that the changes of one time step can be undone.
+     * The queue is not copied: within a time step visitors are only added at its end
+     * and at most one per server is taken from its front, which the savepoint records.
+     *
+     * Waits and service times added to the visitors are not undone, see
+     * {@link #setVisitorTimes}.
+     *
+     * @return State to pass to {@link #rollback(Savepoint)}
+     * @throws UnsupportedOperationException with batch service or visitor table handles
+     */
+    public Savepoint savepoint() {
+        if (batches != null) throw new UnsupportedOperationException("Batch service cannot be rolled back");
+        if (handleQueue != null) throw new UnsupportedOperationException("Service of visitor table handles cannot be rolled back");
+        return new Savepoint(this);
+    }
+
+    /**
+     * Undo all changes made since the savepoint was taken, including the draws from
+     * the service time stream.
+     *
+     * @param s savepoint taken at most one time step ago
+     */
+    public void rollback(Savepoint s) {
+        int started = stats.getServed() + busyServers - s.stats.getServed() - s.busyServers;
+        if (started < 0 || started > servers) {
+            throw new IllegalStateException("Savepoint is older than one time step");
+        }
+        int taken = Math.min(started, s.heads.length); // the others joined the queue after the savepoint
+        while (queue.size() > s.queueSize - taken) {
+            queue.removeLast();
+        }
+        for (int i = taken - 1; i >= 0; i--) {
+            queue.addFirst(s.heads[i], s.headTimes[i]);
+        }
+        System.arraycopy(s.currentVisitors, 0, currentVisitors, 0, servers);
+        System.arraycopy(s.departureTimes, 0, departureTimes, 0, servers);
+        System.arraycopy(s.serviceTimes, 0, serviceTimes, 0, servers);
+        lastServiceTime = s.lastServiceTime;
+        busyServers = s.busyServers;
+        drawnCount = s.drawn.length;
+        System.arraycopy(s.drawn, 0, drawn, 0, drawnCount);
+        stats.set(s.stats);
+        generator.setSeed(s.seed);
+        if (busyServers < servers && !queue.isEmpty()) readySet.mark(readyIndex);
+    }
+
+    /**
+     * Write the queue, the visitors in service, the stats and the service time stream
+     * position to a snapshot.
+     *
+     * @throws UnsupportedOperationException with visitor table handles
+     */
+    public void writeState(SnapshotWriter out) throws IOException {
+        if (handleQueue != null) throw new UnsupportedOperationException("Visitor tables are not saved in snapshots");
+        out.writeInt(queue.size());
+        for (int i = 0; i < queue.size(); i++) {
+            out.writeVisitor(queue.get(i));
+            out.writeDouble(queue.getTime(i));
+        }
+        out.writeInt(servers);
+        for (int i = 0; i < servers; i++) {
+            out.writeVisitor(currentVisitors[i]);
+            out.writeDouble(departureTimes[i]);
+            out.writeDouble(serviceTimes[i]);
+        }
+        out.writeInt(batches != null ? capacity : 0);
+        if (batches != null) {
+            for (int i = 0; i < servers; i++) {
+                out.writeInt(batchSizes[i]);
+                for (int j = 0; j < batchSizes[i]; j++) {
+                    out.writeVisitor(batches[i][j]);
+                }
+            }
+            out.writeDouble(timerTime);
+        }
+        out.writeInt(drawnCount);
+        for (int i = 0; i < drawnCount; i++) {
+            out.writeDouble(drawn[i]);
+        }
+        out.writeDouble(lastServiceTime);
+        stats.writeState(out);
+        out.writeLong(generator.getSeed());
+    }
+
+    /**
+     * Replace the state of this service point with the one written by {@link #writeState}.
+     */
+    public void readState(SnapshotReader in) {
+        queue.clear();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            Visitor v = in.readVisitor();
+            queue.add(v, in.readDouble());
+        }
+        int n = in.readInt();
+        if (n != servers) {
+            throw new IllegalArgumentException("Snapshot has " + n + " servers at " + departureType + ", not " + servers);
+        }
+        busyServers = 0;
+        for (int i = 0; i < servers; i++) {
+            currentVisitors[i] = in.readVisitor();
+            departureTimes[i] = in.readDouble();
+            serviceTimes[i] = in.readDouble();
+            if (currentVisitors[i] != null) busyServers++;
+        }
+        int c = in.readInt();
+        if (c != (batches != null ? capacity : 0)) {
+            throw new IllegalArgumentException("Snapshot has batch capacity " + c + " at " + departureType);
+        }
+        if (batches != null) {
+            for (int i = 0; i < servers; i++) {
+                Arrays.fill(batches[i], null);
+                batchSizes[i] = in.readInt();
+                for (int j = 0; j < batchSizes[i]; j++) {
+                    batches[i][j] = in.readVisitor();
+                }
+            }
+            timerTime = in.readDouble();
+        }
+        drawnCount = in.readInt();
+        if (drawnCount < 0 || drawnCount > servers) {
+            throw new IllegalArgumentException("Snapshot has " + drawnCount + " service times drawn ahead at " + departureType);
+        }
+        for (int i = 0; i < drawnCount; i++) {
+            drawn[i] = in.readDouble();
+        }
+        lastServiceTime = in.readDouble();
+        stats.readState(in);
+        generator.setSeed(in.readLong());
+        if (busyServers < servers && !queue.isEmpty()) readySet.mark(readyIndex);
+    }
+
+    /**
+     * Continue the service times from another seed, e.g. to fork independent runs from
+     * one snapshot. Service times drawn ahead by {@link #peekServiceTime(int)} are dropped.
+     *
+     * @param seed new seed of the service time stream
+     */
+    public void setSeed(long seed) {
+        generator.setSeed(seed);
+        drawnCount = 0;
+    }
+
+    /** State of a service point, see {@link #savepoint()} */
+    public static final class Savepoint {
+        private final int queueSize;
+        private final Visitor[] heads;  // first visitors of the queue, one per server at most
+        private final double[] headTimes;
+        private final Visitor[] currentVisitors;
+        private final double[] departureTimes;
+        private final double[] serviceTimes;
+        private final double lastServiceTime;
+        private final int busyServers;
+        private final double[] drawn;
+        private final ServiceStatistics stats;
+        private final long seed;
+
+        private Savepoint(ServicePoint sp) {
+            queueSize = sp.queue.size();
+            heads = new Visitor[Math.min(sp.servers, queueSize)];
+            headTimes = new double[heads.length];
+            for (int i = 0; i < heads.length; i++) {
+                heads[i] = sp.queue.get(i);
+                headTimes[i] = sp.queue.getTime(i);
+            }
+            currentVisitors = sp.currentVisitors.clone();
+            departureTimes = sp.departureTimes.clone();
+            serviceTimes = sp.serviceTimes.clone();
+            lastServiceTime = sp.lastServiceTime;
+            busyServers = sp.busyServers;
+            drawn = Arrays.copyOf(sp.drawn, sp.drawnCount);
+            stats = new ServiceStatistics(sp.stats);
+            seed = sp.generator.getSeed();
+        }
     }
 
     public boolean isOnQueue() {
-        return !queue.isEmpty();
+        return handleQueue != null ? !handleQueue.isEmpty() : !queue.isEmpty();
     }
 
+    /**
+     * @return true if every server is busy, so no service can begin
+     */
     public boolean isReserved() {
-        return reserved;
+        return busyServers == servers;
+    }
+
+    /**
+     * @return Largest batch a server takes, 1 without batch service
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getServerCount() {
+        return servers;
+    }
+
+    /**
+     * @return Number of servers serving a visitor
+     */
+    public int getBusyServerCount() {
+        return busyServers;
     }
 
+    /**
+     * @return Earliest departure time of the visitors in service, valid while a server is busy
+     */
+    public double getDepartureTime() {
+        double earliest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < servers; i++) {
+            if (isBusy(i)) earliest = Math.min(earliest, departureTimes[i]);
+        }
+        return earliest;
+    }
+
+    /**
+     * @return Number of visitors waiting, not counting those in service
+     */
+    public int getQueueLength() {
+        return handleQueue != null ? handleQueue.size() : queue.size();
+    }
+
+    /**
+     * @return Mean utilization of the servers since the stats were last truncated, or
+     *         since the start. Only the time served up to now counts, not the rest of
+     *         the current services.
+     */
     public double getUtilization() {
-        double now = Clock.getInstance().getClock();
-        return now > 0 ? busyTime / now : 0.0;
+        double elapsed = clock.getClock() - stats.getStart();
+        return elapsed > 0 ? getBusyTime() / elapsed / servers : 0.0;
+    }
+
+    /**
+     * @param server server index, from 0
+     * @return Utilization of one server since the stats were last truncated, or since the start
+     */
+    public double getUtilization(int server) {
+        double elapsed = clock.getClock() - stats.getStart();
+        return elapsed > 0 ? getBusyTime(server) / elapsed : 0.0;
+    }
+
+    /**
+     * @return Time-weighted mean number of visitors waiting since the stats were last
+     *         truncated, or since the start
+     */
+    public double getMeanQueueLength() {
+        double elapsed = clock.getClock() - stats.getStart();
+        return elapsed > 0 ? getQueueArea() / elapsed : 0.0;
+    }
+
+    /**
+     * @return Time-weighted mean number of visitors waiting or in service
+     */
+    public double getMeanNumberInSystem() {
+        double elapsed = clock.getClock() - stats.getStart();
+        return elapsed > 0 ? getSystemArea() / elapsed : 0.0;
+    }
+
+    /**
+     * Mean wait in the queue by Little's law, the mean queue length over the arrival
+     * rate. Visitors still waiting count with the time they have waited so far.
+     *
+     * @return Mean wait of the visitors that arrived since the stats were last truncated
+     */
+    public double getMeanWait() {
+        return stats.getArrivals() > 0 ? getQueueArea() / stats.getArrivals() : 0.0;
+    }
+
+    /**
+     * @return Mean time from joining the queue to leaving the service point by Little's
+     *         law, see {@link #getMeanWait()}
+     */
+    public double getMeanTimeInSystem() {
+        return stats.getArrivals() > 0 ? getSystemArea() / stats.getArrivals() : 0.0;
     }
 
     public int getThroughput() {
-        return servedCount;
+        return stats.getServed();
+    }
+
+    /**
+     * @return Number of visitors added to the queue since the stats were last truncated
+     */
+    public int getArrivalCount() {
+        return stats.getArrivals();
+    }
+
+    /**
+     * @return Time spent serving up to now, summed over the servers
+     */
+    public double getBusyTime() {
+        return stats.getBusyTime(clock.getClock(), busyServers);
+    }
+
+    /**
+     * @param server server index, from 0
+     * @return Time the server spent serving up to now
+     */
+    public double getBusyTime(int server) {
+        return stats.getBusyTime(server, isBusy(server) ? departureTimes[server] - clock.getClock() : 0);
+    }
+
+    /**
+     * @return Area under the queue length curve up to now
+     */
+    public double getQueueArea() {
+        return stats.getQueueArea(clock.getClock(), getQueueLength());
+    }
+
+    /**
+     * @return Area under the curve of the number of visitors queued or in service up to now
+     */
+    public double getSystemArea() {
+        return stats.getSystemArea(clock.getClock(), getQueueLength());
+    }
+
+    /**
+     * @return Number of values {@link #mark} writes
+     */
+    public int getMarkSize() {
+        return 6 + servers;
+    }
+
+    /**
+     * Write the cumulative stats at the current time, e.g. at the end of every batch of
+     * a warm-up detection, to truncate them there later with {@link #truncateStatistics}.
+     *
+     * @param marks array to write {@link #getMarkSize()} values to
+     * @param offset index of the first value
+     */
+    public void mark(double[] marks, int offset) {
+        marks[offset] = clock.getClock();
+        marks[offset + 1] = stats.getServed();
+        marks[offset + 2] = stats.getArrivals();
+        marks[offset + 3] = getQueueArea();
+        marks[offset + 4] = getSystemArea();
+        marks[offset + 5] = getBusyTime();
+        for (int i = 0; i < servers; i++) {
+            marks[offset + 6 + i] = getBusyTime(i);
+        }
+    }
+
+    /**
+     * Drop the stats collected before a mark, e.g. the end of the warm-up period, as if
+     * they had been collected from the time of the mark on only.
+     *
+     * @param marks array {@link #mark} wrote to
+     * @param offset index of the first value of the mark
+     */
+    public void truncateStatistics(double[] marks, int offset) {
+        stats.truncate(marks, offset);
     }
 }
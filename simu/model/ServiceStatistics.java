@@ -0,0 +1,182 @@
+package simu.model;
+
+import simu.framework.SnapshotReader;
+import simu.framework.SnapshotWriter;
+
+import java.io.IOException;
+
+/**
+ * Counts and time-weighted stats of a {@link ServicePoint}.
+ *
+ * The areas under the queue length, number in system and busy server curves are kept
+ * up to the last state change. The service point calls {@link #accumulate} before
+ * every change of the queue or the servers, so each area is exact and costs O(1) per
+ * change. Getters take the current time and state to add the time since then.
+ */
+final class ServiceStatistics {
+    private final int servers;
+    private int served = 0;
+    private int arrivals = 0;                // visitors added to the queue
+    private final double[] serverBusyTime;   // service times as they begin, per server
+    private double start = 0.0;              // time the stats are collected from
+    private int inService = 0;               // visitors being served, more than the busy servers with batches
+    private double lastChange = 0.0;         // time of the last state change
+    private double queueArea = 0.0;          // of the queue length
+    private double systemArea = 0.0;         // of the number of visitors queued or in service
+    private double busyArea = 0.0;           // of the number of busy servers
+
+    ServiceStatistics(int servers) {
+        this.servers = servers;
+        serverBusyTime = new double[servers];
+    }
+
+    /** Copy of the stats, e.g. for a savepoint */
+    ServiceStatistics(ServiceStatistics s) {
+        servers = s.servers;
+        serverBusyTime = s.serverBusyTime.clone();
+        set(s);
+    }
+
+    /** Replace these stats with a copy taken earlier */
+    void set(ServiceStatistics s) {
+        served = s.served;
+        arrivals = s.arrivals;
+        System.arraycopy(s.serverBusyTime, 0, serverBusyTime, 0, servers);
+        start = s.start;
+        inService = s.inService;
+        lastChange = s.lastChange;
+        queueArea = s.queueArea;
+        systemArea = s.systemArea;
+        busyArea = s.busyArea;
+    }
+
+    /**
+     * Add the time since the last state change to the areas.
+     *
+     * @param now current time
+     * @param queued visitors waiting until now
+     * @param busy busy servers until now
+     */
+    void accumulate(double now, int queued, int busy) {
+        if (now == lastChange) return;
+        double dt = now - lastChange;
+        queueArea += dt * queued;
+        systemArea += dt * (queued + inService);
+        busyArea += dt * busy;
+        lastChange = now;
+    }
+
+    /** A visitor joined the queue */
+    void arrived() {
+        arrivals++;
+    }
+
+    /**
+     * A server began to serve a visitor, or a batch.
+     *
+     * @param server index of the server
+     * @param visitors number of visitors served together
+     * @param serviceTime time the service takes
+     */
+    void begin(int server, int visitors, double serviceTime) {
+        inService += visitors;
+        serverBusyTime[server] += serviceTime;
+    }
+
+    /**
+     * A server finished serving a visitor, or a batch.
+     *
+     * @param visitors number of visitors served together
+     */
+    void end(int visitors) {
+        inService -= visitors;
+        served += visitors;
+    }
+
+    int getServed() {
+        return served;
+    }
+
+    int getArrivals() {
+        return arrivals;
+    }
+
+    /**
+     * @return Time the stats are collected from
+     */
+    double getStart() {
+        return start;
+    }
+
+    /**
+     * @return Time spent serving up to now, summed over the servers
+     */
+    double getBusyTime(double now, int busy) {
+        return busyArea + (now - lastChange) * busy;
+    }
+
+    /**
+     * @param remaining rest of the service time of the server's current visitor, 0 while idle
+     * @return Time the server spent serving up to now
+     */
+    double getBusyTime(int server, double remaining) {
+        return serverBusyTime[server] - remaining;
+    }
+
+    /**
+     * @return Area under the queue length curve up to now
+     */
+    double getQueueArea(double now, int queued) {
+        return queueArea + (now - lastChange) * queued;
+    }
+
+    /**
+     * @return Area under the curve of the number of visitors queued or in service up to now
+     */
+    double getSystemArea(double now, int queued) {
+        return systemArea + (now - lastChange) * (queued + inService);
+    }
+
+    /**
+     * Drop the stats before a mark written by {@link ServicePoint#mark}.
+     */
+    void truncate(double[] marks, int offset) {
+        start = marks[offset];
+        served -= (int) marks[offset + 1];
+        arrivals -= (int) marks[offset + 2];
+        queueArea -= marks[offset + 3];
+        systemArea -= marks[offset + 4];
+        busyArea -= marks[offset + 5];
+        for (int i = 0; i < servers; i++) {
+            serverBusyTime[i] -= marks[offset + 6 + i];
+        }
+    }
+
+    void writeState(SnapshotWriter out) throws IOException {
+        out.writeInt(served);
+        out.writeInt(arrivals);
+        for (int i = 0; i < servers; i++) {
+            out.writeDouble(serverBusyTime[i]);
+        }
+        out.writeDouble(start);
+        out.writeInt(inService);
+        out.writeDouble(lastChange);
+        out.writeDouble(queueArea);
+        out.writeDouble(systemArea);
+        out.writeDouble(busyArea);
+    }
+
+    void readState(SnapshotReader in) {
+        served = in.readInt();
+        arrivals = in.readInt();
+        for (int i = 0; i < servers; i++) {
+            serverBusyTime[i] = in.readDouble();
+        }
+        start = in.readDouble();
+        inService = in.readInt();
+        lastChange = in.readDouble();
+        queueArea = in.readDouble();
+        systemArea = in.readDouble();
+        busyArea = in.readDouble();
+    }
+}
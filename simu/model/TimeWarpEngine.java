@@ -0,0 +1,153 @@
+package simu.model;
+
+import eduni.distributions.SeedGenerator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optimistic (Time Warp) parallel engine: every logical process runs its events as
+ * soon as it has them and rolls back when a transfer turns up in its past, see
+ * {@link TimeWarpProcess}. Unlike the conservative {@link ParallelNetworkEngine} it
+ * never waits for lookahead, which pays off when service times can be very short.
+ *
+ * The processes regularly agree on the global virtual time (GVT) and drop the state
+ * saved for earlier events. How much work was speculative is reported through
+ * {@link #getRollbackRatio()} and {@link #getCommittedEventRate()}.
+ */
+public class TimeWarpEngine extends PartitionedEngine {
+    private static final int DEFAULT_GVT_INTERVAL = 1000;
+
+    private int gvtInterval = DEFAULT_GVT_INTERVAL;
+    private double optimismWindow = Double.POSITIVE_INFINITY;
+    private final AtomicInteger gvtRequested = new AtomicInteger(); // GVT rounds asked for so far
+
+    /**
+     * Distribute the nodes round-robin over the given number of processes.
+     *
+     * @param topology park to simulate
+     * @param seeds source of the topology's {@link ParkTopology#getRandomStreams()} seeds
+     * @param processes number of logical processes (threads)
+     */
+    public TimeWarpEngine(ParkTopology topology, SeedGenerator seeds, int processes) {
+        this(topology, seeds, roundRobin(topology.getNodeCount(), processes));
+    }
+
+    /**
+     * @param topology park to simulate
+     * @param seeds source of the topology's {@link ParkTopology#getRandomStreams()} seeds
+     * @param partition process index of every node; processes are numbered from 0
+     */
+    public TimeWarpEngine(ParkTopology topology, SeedGenerator seeds, int[] partition) {
+        super(topology, seeds, partition, TimeWarpProcess::new);
+    }
+
+    /**
+     * Set how many batches of events a process may run before it asks for a GVT round.
+     * Fewer means less saved state and less speculation, but more synchronisation.
+     *
+     * @param batches batches between GVT rounds
+     */
+    public void setGvtInterval(int batches) {
+        if (batches < 1) throw new IllegalArgumentException("GVT interval must be positive");
+        gvtInterval = batches;
+    }
+
+    public int getGvtInterval() {
+        return gvtInterval;
+    }
+
+    /**
+     * Limit how far processes may run ahead of the GVT (a moving time window). A process
+     * reaching the end of the window asks for a GVT round instead of running on, which
+     * bounds the work a late transfer can undo.
+     *
+     * @param window simulated time beyond the GVT, infinite for no limit
+     */
+    public void setOptimismWindow(double window) {
+        if (!(window > 0)) throw new IllegalArgumentException("Optimism window must be positive");
+        optimismWindow = window;
+    }
+
+    public double getOptimismWindow() {
+        return optimismWindow;
+    }
+
+    @Override
+    protected void results() {
+        super.results();
+        System.out.println("Rollback ratio: " + getRollbackRatio());
+        System.out.println("Committed events/s: " + getCommittedEventRate());
+    }
+
+    /**
+     * @return Number of events that were run and not undone
+     */
+    public long getCommittedEventCount() {
+        return getEventCount() - getRolledBackEventCount();
+    }
+
+    /**
+     * @return Number of event runs undone by rollbacks
+     */
+    public long getRolledBackEventCount() {
+        long events = 0;
+        for (LogicalProcess lp : processes) {
+            events += ((TimeWarpProcess) lp).getRolledBackCount();
+        }
+        return events;
+    }
+
+    /**
+     * @return Number of rollbacks
+     */
+    public long getRollbackCount() {
+        long rollbacks = 0;
+        for (LogicalProcess lp : processes) {
+            rollbacks += ((TimeWarpProcess) lp).getRollbackCount();
+        }
+        return rollbacks;
+    }
+
+    /**
+     * @return Fraction of all event runs that were undone, 0 when no work was wasted
+     */
+    public double getRollbackRatio() {
+        long events = getEventCount();
+        return events > 0 ? (double) getRolledBackEventCount() / events : 0.0;
+    }
+
+    /**
+     * @return Committed events per second of wall time in the last run
+     */
+    public double getCommittedEventRate() {
+        return getWallTime() > 0 ? getCommittedEventCount() / getWallTime() : 0.0;
+    }
+
+    /**
+     * @return Number of GVT rounds in the last run
+     */
+    public int getGvtRounds() {
+        return gvtRequested.get();
+    }
+
+    /**
+     * @param round GVT rounds the asking process has taken part in
+     * @return true if the processes are to start another GVT round
+     */
+    boolean isGvtRequested(int round) {
+        return gvtRequested.get() > round;
+    }
+
+    /**
+     * Ask all processes to join the next GVT round.
+     *
+     * @param round GVT rounds the asking process has taken part in
+     */
+    void requestGvt(int round) {
+        if (gvtRequested.compareAndSet(round, round + 1)) {
+            for (LogicalProcess lp : processes) {
+                lp.wake();
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package simu.model;
+
+import simu.framework.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logical process of a {@link TimeWarpEngine}: runs its events optimistically, without
+ * waiting for the other processes, and rolls back when a transfer arrives in its past.
+ *
+ * Events are run in batches, one per time, with the C-phase at the end of each batch.
+ * A batch keeps what is needed to undo it: a {@link ServicePoint.Savepoint} and the
+ * routing stream position of every node it touched, the arrival stream position, the
+ * events it scheduled and the transfers it sent. Rolling back restores the nodes, puts
+ * the batch's events back into the event list and sends an anti-message for every
+ * transfer, which cancels the transfer at its receiver, rolling that one back as well
+ * if it has already run it.
+ *
+ * Batches before the global virtual time (GVT) can no longer be rolled back and are
+ * dropped, so the saved state stays bounded by the GVT interval.
+ */
+class TimeWarpProcess extends LogicalProcess {
+    private static final long IDLE_NANOS = 1_000_000; // wait before asking for a GVT round when idle
+
+    /** Transfer, or the cancellation of a transfer sent in error */
+    private static final class Message {
+        final Event event;
+        final boolean anti;
+
+        Message(Event event, boolean anti) {
+            this.event = event;
+            this.anti = anti;
+        }
+    }
+
+    /** Events run at one time, and what is needed to undo them */
+    private static final class Batch {
+        final double time;
+        final long arrivalSeed;
+        final int visitorCount;
+        final List<Event> events = new ArrayList<>();
+        final List<Event> scheduled = new ArrayList<>();
+        final List<Event> sent = new ArrayList<>();
+        final List<NodeState> saved = new ArrayList<>();
+
+        Batch(double time, long arrivalSeed, int visitorCount) {
+            this.time = time;
+            this.arrivalSeed = arrivalSeed;
+            this.visitorCount = visitorCount;
+        }
+    }
+
+    /** State of a node before a batch first changed it */
+    private static final class NodeState {
+        final int node;
+        final ServicePoint.Savepoint servicePoint;
+        final long routerSeed;
+        final int exited;
+        final double exitedSystemTime;
+
+        NodeState(int node, ServicePoint.Savepoint servicePoint, long routerSeed, int exited, double exitedSystemTime) {
+            this.node = node;
+            this.servicePoint = servicePoint;
+            this.routerSeed = routerSeed;
+            this.exited = exited;
+            this.exitedSystemTime = exitedSystemTime;
+        }
+    }
+
+    /** Pending events, which can be taken out again when they are cancelled or undone */
+    private static final class PendingList extends EventList {
+        private final PriorityQueue<Event> queue = new PriorityQueue<>();
+        private List<Event> log; // receives the events scheduled while set
+
+        boolean cancel(Event e) {
+            return queue.remove(e);
+        }
+
+        @Override
+        public Event peek() {
+            return queue.peek();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            return queue.size();
+        }
+
+        @Override
+        protected void insert(Event e) {
+            queue.add(e);
+            if (log != null) log.add(e);
+        }
+
+        @Override
+        protected Event removeFirst() {
+            return queue.poll();
+        }
+    }
+
+    private final TimeWarpEngine engine;
+    private final PendingList pending;
+    private final ConcurrentLinkedQueue<Message> inbox = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<Batch> processed = new ArrayDeque<>();
+    private Batch current;
+    private final long[] savedIn; // serial of the batch that last saved each node
+    private long serial = 0;
+    private int round = 0;        // GVT rounds taken part in
+    private double gvt = 0;       // result of the last GVT round
+    private int sinceGvt = 0;     // batches run since the last GVT round
+
+    // Stats
+    private long rolledBack = 0;
+    private long rollbacks = 0;
+
+    TimeWarpProcess(PartitionedEngine parent, ParkTopology topology, int index, int[] owner,
+                    NetworkStreams streams) {
+        super(new PendingList(), parent, topology, index, owner, streams);
+        engine = (TimeWarpEngine) parent;
+        pending = (PendingList) eventList;
+        savedIn = new long[topology.getNodeCount()];
+    }
+
+    long getRolledBackCount() {
+        return rolledBack;
+    }
+
+    long getRollbackCount() {
+        return rollbacks;
+    }
+
+    /**
+     * Run batches until a GVT round finds that everything before the simulation time
+     * is committed, then run the final batch with the other processes.
+     */
+    @Override
+    protected void runPhases() {
+        double end = getSimulationTime();
+        initialize();
+
+        while (true) {
+            if (engine.isGvtRequested(round)) {
+                if (gvtRound() >= end) break;
+                continue;
+            }
+            receive();
+            double next = nextEventTime();
+            if (next < end && next < gvt + engine.getOptimismWindow()) {
+                runBatch(next);
+                if (++sinceGvt >= engine.getGvtInterval()) engine.requestGvt(round);
+            } else if (next < end) {
+                engine.requestGvt(round); // too far ahead, wait for the others to catch up
+            } else {
+                idle();
+            }
+        }
+
+        finish();
+    }
+
+    private void runBatch(double time) {
+        long arrivalSeed = arrivals != null ? arrivalStream.getSeed() : 0;
+        current = new Batch(time, arrivalSeed, context.getVisitorCount());
+        serial++;
+        clock.setClock(time);
+
+        pending.log = current.scheduled;
+        while (!pending.isEmpty() && pending.getNextEventTime() == time) {
+            Event e = pending.remove();
+            current.events.add(e);
+            runEvent(e);
+        }
+        tryCEvents();
+        pending.log = null;
+
+        processed.addLast(current);
+        current = null;
+    }
+
+    @Override
+    protected void touch(int node) {
+        if (current == null || savedIn[node] == serial) return;
+        savedIn[node] = serial;
+        current.saved.add(new NodeState(node, servicePoints[node].savepoint(), routers[node].getSeed(),
+                exited[node], exitedSystemTime[node]));
+    }
+
+    @Override
+    protected void transfer(int node, Visitor v) {
+        Event e = new Event(types[NetworkEventType.transfer(topology.getNodeCount(), node)], clock.getClock(), v);
+        if (current != null) current.sent.add(e);
+        send(node, new Message(e, false));
+    }
+
+    private void send(int node, Message m) {
+        TimeWarpProcess to = (TimeWarpProcess) parent.getProcess(owner[node]);
+        to.inbox.add(m);
+        to.wake();
+    }
+
+    /**
+     * Take in transfers and cancellations, rolling back first when they lie in the past.
+     */
+    @Override
+    protected void receive() {
+        Message m;
+        while ((m = inbox.poll()) != null) {
+            Event e = m.event;
+            if (m.anti) {
+                // Not pending any more means it has been run
+                if (!pending.cancel(e)) {
+                    rollback(e.getTime());
+                    if (!pending.cancel(e)) {
+                        throw new IllegalStateException("Anti-message for unknown transfer at " + e.getTime());
+                    }
+                }
+            } else {
+                if (!processed.isEmpty() && e.getTime() <= processed.peekLast().time) {
+                    rollback(e.getTime());
+                }
+                pending.add(e);
+            }
+        }
+    }
+
+    /**
+     * Undo all batches at or after the given time, latest first.
+     */
+    private void rollback(double time) {
+        rollbacks++;
+        int n = topology.getNodeCount();
+        while (!processed.isEmpty() && processed.peekLast().time >= time) {
+            Batch b = processed.removeLast();
+            for (Event e : b.scheduled) {
+                pending.cancel(e);
+            }
+            for (int i = b.saved.size() - 1; i >= 0; i--) {
+                NodeState s = b.saved.get(i);
+                servicePoints[s.node].rollback(s.servicePoint);
+                routers[s.node].setSeed(s.routerSeed);
+                exited[s.node] = s.exited;
+                exitedSystemTime[s.node] = s.exitedSystemTime;
+            }
+            if (arrivals != null) arrivalStream.setSeed(b.arrivalSeed);
+            context.setVisitorCount(b.visitorCount);
+            for (Event e : b.sent) {
+                send(e.getType().ordinal() - n - 1, new Message(e, true));
+            }
+            for (Event e : b.events) {
+                pending.add(e);
+            }
+            rolledBack += b.events.size();
+        }
+    }
+
+    /**
+     * All processes stop, take in the messages sent to them and agree on the GVT: the
+     * earliest pending event of any process. Transfers still on their way are
+     * cancellations sent while taking in, and no earlier than the batches their senders
+     * put back, so the GVT is a lower bound for them too.
+     *
+     * @return GVT, below which nothing will be rolled back any more
+     */
+    private double gvtRound() {
+        parent.await();
+        receive();
+        gvt = parent.earliest(index, nextEventTime());
+        round++;
+        sinceGvt = 0;
+        while (!processed.isEmpty() && processed.peekFirst().time < gvt) {
+            processed.removeFirst();
+        }
+        return gvt;
+    }
+
+    /**
+     * Wait for a message. When none comes, this process may be done: ask for a GVT round.
+     */
+    private void idle() {
+        waiting = true;
+        if (inbox.isEmpty() && !engine.isGvtRequested(round)) {
+            LockSupport.parkNanos(this, IDLE_NANOS);
+            if (inbox.isEmpty()) engine.requestGvt(round);
+        }
+        waiting = false;
+        checkInterrupted();
+    }
+}
@@ -0,0 +1,139 @@
+package simu.model;
+
+import simu.framework.Clock;
+import simu.framework.SnapshotReader;
+import simu.framework.SnapshotWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Optional visit history of a visitor: its latest visits, at most a fixed number, and
+ * its latest arrival time, departure time and service time at every attraction,
+ * indexed by {@link Attractions} id. Times not recorded yet are NaN.
+ */
+final class VisitHistory {
+    private final Clock clock;
+    private final int[] visits;      // circular, attraction ids of the latest visits
+    private int visitCount = 0;      // of all visits, including those no longer kept
+    private double[] arrivalTimes;   // by attraction id
+    private double[] departureTimes; // by attraction id
+    private double[] serviceTimes;   // by attraction id
+
+    /**
+     * @param clock clock the times are taken from
+     * @param length number of latest visits kept
+     */
+    VisitHistory(Clock clock, int length) {
+        this.clock = clock;
+        visits = new int[length];
+        arrivalTimes = new double[Attractions.count()];
+        departureTimes = new double[Attractions.count()];
+        serviceTimes = new double[Attractions.count()];
+        Arrays.fill(arrivalTimes, Double.NaN);
+        Arrays.fill(departureTimes, Double.NaN);
+        Arrays.fill(serviceTimes, Double.NaN);
+    }
+
+    void arrive(int attraction) {
+        visits[visitCount % visits.length] = attraction;
+        visitCount++;
+        ensureCapacity(attraction);
+        arrivalTimes[attraction] = clock.getClock();
+    }
+
+    void depart(int attraction, double serviceTime) {
+        ensureCapacity(attraction);
+        departureTimes[attraction] = clock.getClock();
+        serviceTimes[attraction] = serviceTime;
+    }
+
+    /**
+     * @return Number of visits kept, the latest ones
+     */
+    int size() {
+        return Math.min(visitCount, visits.length);
+    }
+
+    /**
+     * @param i position among the kept visits, 0 for the oldest
+     * @return Attraction id of the visit
+     */
+    int get(int i) {
+        int first = visitCount > visits.length ? visitCount % visits.length : 0;
+        return visits[(first + i) % visits.length];
+    }
+
+    double getArrivalTime(int attraction) {
+        return attraction < arrivalTimes.length ? arrivalTimes[attraction] : Double.NaN;
+    }
+
+    double getDepartureTime(int attraction) {
+        return attraction < departureTimes.length ? departureTimes[attraction] : Double.NaN;
+    }
+
+    double getServiceTime(int attraction) {
+        return attraction < serviceTimes.length ? serviceTimes[attraction] : Double.NaN;
+    }
+
+    /** Grow the time arrays to cover attractions registered after this history was created */
+    private void ensureCapacity(int attraction) {
+        if (attraction < arrivalTimes.length) return;
+        int n = Math.max(attraction + 1, Attractions.count());
+        int old = arrivalTimes.length;
+        arrivalTimes = Arrays.copyOf(arrivalTimes, n);
+        departureTimes = Arrays.copyOf(departureTimes, n);
+        serviceTimes = Arrays.copyOf(serviceTimes, n);
+        Arrays.fill(arrivalTimes, old, n, Double.NaN);
+        Arrays.fill(departureTimes, old, n, Double.NaN);
+        Arrays.fill(serviceTimes, old, n, Double.NaN);
+    }
+
+    /**
+     * Write the history to a snapshot, attractions by name so that it does not depend
+     * on the order they were registered in.
+     */
+    void writeState(SnapshotWriter out) throws IOException {
+        out.writeInt(visits.length);
+        out.writeInt(visitCount);
+        for (int i = 0; i < size(); i++) {
+            out.writeString(Attractions.name(get(i)));
+        }
+        int timed = 0;
+        for (int a = 0; a < arrivalTimes.length; a++) {
+            if (!Double.isNaN(arrivalTimes[a]) || !Double.isNaN(departureTimes[a])) timed++;
+        }
+        out.writeInt(timed);
+        for (int a = 0; a < arrivalTimes.length; a++) {
+            if (Double.isNaN(arrivalTimes[a]) && Double.isNaN(departureTimes[a])) continue;
+            out.writeString(Attractions.name(a));
+            out.writeDouble(arrivalTimes[a]);
+            out.writeDouble(departureTimes[a]);
+            out.writeDouble(serviceTimes[a]);
+        }
+    }
+
+    /**
+     * @return History written by {@link #writeState}
+     */
+    static VisitHistory readState(SnapshotReader in) {
+        VisitHistory h = new VisitHistory(in.getContext().getClock(), in.readInt());
+        int count = in.readInt();
+        int kept = Math.min(count, h.visits.length);
+        // Keep the visits in their positions of the ring, so get() finds them in order
+        h.visitCount = count - kept;
+        for (int i = 0; i < kept; i++) {
+            h.visits[h.visitCount % h.visits.length] = Attractions.id(in.readString());
+            h.visitCount++;
+        }
+        int timed = in.readInt();
+        for (int i = 0; i < timed; i++) {
+            int a = Attractions.id(in.readString());
+            h.ensureCapacity(a);
+            h.arrivalTimes[a] = in.readDouble();
+            h.departureTimes[a] = in.readDouble();
+            h.serviceTimes[a] = in.readDouble();
+        }
+        return h;
+    }
+}
@@ -1,36 +1,40 @@
 package simu.model;
 
 import simu.framework.*;
-import java.util.*;
+
+import java.io.IOException;
 
 /**
  * Visitor in the amusement park simulator.
- * Tracks arrival/departure times per attraction using EventType.
+ *
+ * A visitor is kept small, as a park may hold a great many at once: it refers to
+ * attractions by {@link Attractions} id and, unless its context keeps visit histories
+ * (see {@link SimulationContext#setVisitHistory}), only keeps its totals.
  */
 public class Visitor {
+    private static final short NOWHERE = -1;
+
     private double arrivalTime;
     private double removalTime;
-    private int id;
-    private static int counter = 1;
-    private static double totalSystemTime = 0;
-    private static int totalVisitors = 0;
-
-    // Track visited attractions by name for readability
-    private List<String> visitedAttractions = new ArrayList<>();
-    private Map<String, Double> attractionArrivalTimes = new HashMap<>();
-    private Map<String, Double> attractionDepartureTimes = new HashMap<>();
-
-    private String currentLocation;
-    private String nextDestination;
-
     private double totalWaitTime = 0;
     private double totalServiceTime = 0;
+    private final int id;
+    private short currentLocation = NOWHERE;  // attraction id
+    private short nextDestination = NOWHERE;  // attraction id
+    private VisitHistory history;             // null without visit history
+
+    private static final int MSG_ENTERED = Trace.registerMessage("New visitor #{visitor} entered park at {value}");
+
+    public Visitor(SimulationContext context) {
+        id = context.nextVisitorId();
+        arrivalTime = context.getClock().getClock();
+        if (context.getVisitHistory() > 0) history = new VisitHistory(context.getClock(), context.getVisitHistory());
+        Trace.out(Trace.Level.INFO, MSG_ENTERED, null, id, arrivalTime);
+    }
 
-    public Visitor() {
-        id = counter++;
-        totalVisitors++;
-        arrivalTime = Clock.getInstance().getClock();
-        Trace.out(Trace.Level.INFO, "New visitor #" + id + " entered park at " + arrivalTime);
+    /** Visitor restored from a snapshot, see {@link #readState} */
+    private Visitor(int id) {
+        this.id = id;
     }
 
     public double getArrivalTime() { return arrivalTime; }
@@ -41,24 +45,46 @@ public class Visitor {
 
     public int getId() { return id; }
 
-    public String getCurrentLocation() { return currentLocation; }
-    public void setCurrentLocation(String location) { this.currentLocation = location; }
+    public String getCurrentLocation() { return nameOf(currentLocation); }
+    public void setCurrentLocation(String location) { currentLocation = idOf(location); }
 
-    public String getNextDestination() { return nextDestination; }
-    public void setNextDestination(String destination) { this.nextDestination = destination; }
+    public String getNextDestination() { return nameOf(nextDestination); }
+    public void setNextDestination(String destination) { nextDestination = idOf(destination); }
 
-    /** Record arrival at an attraction */
+    /** Record arrival at an attraction, looking up its name; prefer {@link #arriveAtAttraction(int)} */
     public void arriveAtAttraction(String name) {
-        visitedAttractions.add(name);
-        attractionArrivalTimes.put(name, Clock.getInstance().getClock());
-        Trace.out(Trace.Level.INFO, "Visitor #" + id + " arrived at " + name);
+        arriveAtAttraction(Attractions.id(name));
+    }
+
+    /**
+     * Record arrival at an attraction
+     *
+     * @param attraction id of the attraction, see {@link Attractions#id(String)}
+     */
+    public void arriveAtAttraction(int attraction) {
+        if (history != null) history.arrive(attraction);
+        if (Trace.isEnabled(Trace.Level.INFO)) {
+            Trace.out(Trace.Level.INFO, Attractions.arrivedMessage(attraction), null, id, 0);
+        }
     }
 
-    /** Record departure from an attraction */
+    /** Record departure from an attraction, looking up its name; prefer {@link #departFromAttraction(int, double)} */
     public void departFromAttraction(String name, double serviceTime) {
-        attractionDepartureTimes.put(name, Clock.getInstance().getClock());
-        totalServiceTime += serviceTime;
-        Trace.out(Trace.Level.INFO, "Visitor #" + id + " departed from " + name);
+        departFromAttraction(Attractions.id(name), serviceTime);
+    }
+
+    /**
+     * Record departure from an attraction. The service time is kept in the visit
+     * history; the totals are kept by the service points, see {@link #addServiceTime}.
+     *
+     * @param attraction id of the attraction, see {@link Attractions#id(String)}
+     * @param serviceTime service time the visitor got there, see {@link ServicePoint#getLastServiceTime()}
+     */
+    public void departFromAttraction(int attraction, double serviceTime) {
+        if (history != null) history.depart(attraction, serviceTime);
+        if (Trace.isEnabled(Trace.Level.INFO)) {
+            Trace.out(Trace.Level.INFO, Attractions.departedMessage(attraction), null, id, 0);
+        }
     }
 
     public double getTotalSystemTime() {
@@ -69,6 +95,10 @@ public class Visitor {
         totalWaitTime += wait;
     }
 
+    public void addServiceTime(double serviceTime) {
+        totalServiceTime += serviceTime;
+    }
+
     public double getTotalWaitTime() {
         return totalWaitTime;
     }
@@ -77,30 +107,81 @@ public class Visitor {
         return totalServiceTime;
     }
 
-    /** Print results for this visitor */
-    public void reportResults() {
-
-        System.out.println("....................................................");
-        Trace.out(Trace.Level.INFO, "\nVisitor #" + id + " completed journey.");
-        Trace.out(Trace.Level.INFO, "Entered park: " + arrivalTime);
-        Trace.out(Trace.Level.INFO, "Exited park: " + removalTime);
-        Trace.out(Trace.Level.INFO, "Total time in system: " + getTotalSystemTime());
-        Trace.out(Trace.Level.INFO, "Visited attractions: " + visitedAttractions);
+    /**
+     * @return Visit history, null if the context keeps none
+     */
+    VisitHistory getHistory() {
+        return history;
+    }
 
-        for (String name : visitedAttractions) {
-            double in = attractionArrivalTimes.getOrDefault(name, -1.0);
-            double out = attractionDepartureTimes.getOrDefault(name, -1.0);
-            if (in >= 0 && out >= 0) {
-                Trace.out(Trace.Level.INFO, " - " + name + ": " + (out - in) + " minutes");
+    /**
+     * Write the state of this visitor to a snapshot. Called by {@link SnapshotWriter#writeVisitor}.
+     */
+    public void writeState(SnapshotWriter out) throws IOException {
+        out.writeInt(id);
+        out.writeDouble(arrivalTime);
+        out.writeDouble(removalTime);
+        out.writeString(getCurrentLocation());
+        out.writeString(getNextDestination());
+        out.writeDouble(totalWaitTime);
+        out.writeDouble(totalServiceTime);
+        out.writeBoolean(history != null);
+        if (history != null) history.writeState(out);
+    }
 
-            }
-        }
+    /**
+     * Recreate a visitor written by {@link #writeState}. Called by {@link SnapshotReader#readVisitor}.
+     *
+     * @return Visitor with the saved id, belonging to the reader's context
+     */
+    public static Visitor readState(SnapshotReader in) {
+        Visitor v = new Visitor(in.readInt());
+        v.arrivalTime = in.readDouble();
+        v.removalTime = in.readDouble();
+        v.setCurrentLocation(in.readString());
+        v.setNextDestination(in.readString());
+        v.totalWaitTime = in.readDouble();
+        v.totalServiceTime = in.readDouble();
+        if (in.readBoolean()) v.history = VisitHistory.readState(in);
+        return v;
+    }
 
-        totalSystemTime += getTotalSystemTime();
-        double mean = totalSystemTime / totalVisitors;
-        System.out.println("Current mean system time across visitors: " + mean);
+    private static String nameOf(short attraction) {
+        return attraction == NOWHERE ? null : Attractions.name(attraction);
+    }
 
-        System.out.println("....................................................");
+    private static short idOf(String name) {
+        return name == null ? NOWHERE : (short) Attractions.id(name);
+    }
 
+    /**
+     * Trace the journey of this visitor at INFO level. The statistics over all visitors
+     * are kept by the engine, see {@link StatisticsCollector}.
+     */
+    public void reportResults() {
+        if (Trace.isEnabled(Trace.Level.INFO)) {
+            Trace.out(Trace.Level.INFO, "\nVisitor #" + id + " completed journey.");
+            Trace.out(Trace.Level.INFO, "Entered park: " + arrivalTime);
+            Trace.out(Trace.Level.INFO, "Exited park: " + removalTime);
+            Trace.out(Trace.Level.INFO, "Total time in system: " + getTotalSystemTime());
+            if (history != null) {
+                StringBuilder visited = new StringBuilder("[");
+                for (int i = 0; i < history.size(); i++) {
+                    if (i > 0) visited.append(", ");
+                    visited.append(Attractions.name(history.get(i)));
+                }
+                Trace.out(Trace.Level.INFO, "Visited attractions: " + visited.append(']'));
+
+                for (int i = 0; i < history.size(); i++) {
+                    int a = history.get(i);
+                    double in = history.getArrivalTime(a);
+                    double out = history.getDepartureTime(a);
+                    if (!Double.isNaN(in) && !Double.isNaN(out)) {
+                        Trace.out(Trace.Level.INFO, " - " + Attractions.name(a) + ": " + (out - in) + " minutes");
+
+                    }
+                }
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package simu.model;
+
+import simu.framework.ColumnarWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Columnar export of the visitors leaving the park, one row per visitor with its id,
+ * arrival and removal time and total wait and service time, as the service points
+ * added them up (see {@link ServicePoint#setVisitorTimes}), read back with
+ * {@link simu.framework.ColumnarReader}.
+ *
+ * For the attractions named when it is created the export also has columns of the
+ * latest arrival time, departure time and service time of each visitor there, taken
+ * from its visit history (see {@link simu.framework.SimulationContext#setVisitHistory});
+ * NaN where the visitor has not been or keeps no history. The engine records the
+ * service time on departure with {@link Visitor#departFromAttraction(int, double)}.
+ */
+public class VisitorExport implements AutoCloseable {
+    private final ColumnarWriter out;
+    private final int id, arrival, removal, wait, service;
+    private final int[] attractions;      // Attractions ids
+    private final int[] attractionColumns; // arrival, departure and service column per attraction
+
+    /**
+     * @param file file to write, created or overwritten
+     * @param attractions names of the attractions to export the visit times of
+     * @throws IOException if the file cannot be opened
+     */
+    public VisitorExport(Path file, String... attractions) throws IOException {
+        out = new ColumnarWriter(file);
+        id = out.addColumn("id", ColumnarWriter.Type.INT);
+        arrival = out.addColumn("arrival", ColumnarWriter.Type.DOUBLE);
+        removal = out.addColumn("removal", ColumnarWriter.Type.DOUBLE);
+        wait = out.addColumn("wait", ColumnarWriter.Type.DOUBLE);
+        service = out.addColumn("service", ColumnarWriter.Type.DOUBLE);
+        this.attractions = new int[attractions.length];
+        attractionColumns = new int[3 * attractions.length];
+        for (int i = 0; i < attractions.length; i++) {
+            this.attractions[i] = Attractions.id(attractions[i]);
+            attractionColumns[3 * i] = out.addColumn(attractions[i] + " arrival", ColumnarWriter.Type.DOUBLE);
+            attractionColumns[3 * i + 1] = out.addColumn(attractions[i] + " departure", ColumnarWriter.Type.DOUBLE);
+            attractionColumns[3 * i + 2] = out.addColumn(attractions[i] + " service", ColumnarWriter.Type.DOUBLE);
+        }
+    }
+
+    /**
+     * Add a visitor that has left the park.
+     */
+    public void add(Visitor v) {
+        out.setInt(id, v.getId());
+        out.setDouble(arrival, v.getArrivalTime());
+        out.setDouble(removal, v.getRemovalTime());
+        out.setDouble(wait, v.getTotalWaitTime());
+        out.setDouble(service, v.getTotalServiceTime());
+        VisitHistory history = v.getHistory();
+        for (int i = 0; i < attractions.length; i++) {
+            out.setDouble(attractionColumns[3 * i], history != null ? history.getArrivalTime(attractions[i]) : Double.NaN);
+            out.setDouble(attractionColumns[3 * i + 1], history != null ? history.getDepartureTime(attractions[i]) : Double.NaN);
+            out.setDouble(attractionColumns[3 * i + 2], history != null ? history.getServiceTime(attractions[i]) : Double.NaN);
+        }
+        out.endRow();
+    }
+
+    /**
+     * Add a visitor of a visitor table that has left the park, before it is removed
+     * from the table. Visitor tables keep no visit histories.
+     */
+    public void add(VisitorTable table, int handle) {
+        out.setInt(id, table.getId(handle));
+        out.setDouble(arrival, table.getArrivalTime(handle));
+        out.setDouble(removal, table.getRemovalTime(handle));
+        out.setDouble(wait, table.getTotalWaitTime(handle));
+        out.setDouble(service, table.getTotalServiceTime(handle));
+        for (int column : attractionColumns) {
+            out.setDouble(column, Double.NaN);
+        }
+        out.endRow();
+    }
+
+    /**
+     * @return Number of visitors added
+     */
+    public long getCount() {
+        return out.getRowCount();
+    }
+
+    /**
+     * Write the remaining visitors and close the file.
+     */
+    @Override
+    public void close() {
+        out.close();
+    }
+}
@@ -0,0 +1,100 @@
+package simu.model;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * First-in first-out queue of visitors in a growable circular array, with the time
+ * each visitor joined it in a parallel array.
+ *
+ * Unlike a LinkedList it allocates nothing per visitor once it has grown to the
+ * longest queue seen. Besides the queue operations it can take visitors off its end
+ * and put them back at its front, which {@link ServicePoint#rollback} needs.
+ */
+final class VisitorQueue {
+    private Visitor[] elements = new Visitor[16]; // length is a power of two
+    private double[] times = new double[16];      // join time of each visitor
+    private int head = 0;                         // index of the first visitor
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Add a visitor at the end, joining at the given time */
+    void add(Visitor v, double time) {
+        if (size == elements.length) grow();
+        int i = (head + size) & (elements.length - 1);
+        elements[i] = v;
+        times[i] = time;
+        size++;
+    }
+
+    /**
+     * @return First visitor, which is removed, or null if the queue is empty
+     */
+    Visitor poll() {
+        if (size == 0) return null;
+        Visitor v = elements[head];
+        elements[head] = null;
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return v;
+    }
+
+    /**
+     * @param i position from the front, 0 for the first visitor
+     * @return Visitor at that position
+     */
+    Visitor get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Position " + i + " of " + size);
+        return elements[(head + i) & (elements.length - 1)];
+    }
+
+    /**
+     * @param i position from the front, 0 for the first visitor
+     * @return Time the visitor at that position joined the queue
+     */
+    double getTime(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Position " + i + " of " + size);
+        return times[(head + i) & (elements.length - 1)];
+    }
+
+    /** Put a visitor back at the front, with the time it joined */
+    void addFirst(Visitor v, double time) {
+        if (size == elements.length) grow();
+        head = (head - 1) & (elements.length - 1);
+        elements[head] = v;
+        times[head] = time;
+        size++;
+    }
+
+    /** Remove the last visitor */
+    void removeLast() {
+        if (size == 0) throw new NoSuchElementException();
+        size--;
+        elements[(head + size) & (elements.length - 1)] = null;
+    }
+
+    void clear() {
+        Arrays.fill(elements, null);
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        Visitor[] larger = new Visitor[2 * elements.length];
+        double[] largerTimes = new double[larger.length];
+        for (int i = 0; i < size; i++) {
+            larger[i] = elements[(head + i) & (elements.length - 1)];
+            largerTimes[i] = times[(head + i) & (elements.length - 1)];
+        }
+        elements = larger;
+        times = largerTimes;
+        head = 0;
+    }
+}
@@ -0,0 +1,173 @@
+package simu.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Off-heap table of visitors, for runs with so many visitors in the park that
+ * {@link Visitor} objects and the garbage collector tracing them would dominate.
+ *
+ * Each visitor is a fixed-layout record of {@value #RECORD_SIZE} bytes in direct
+ * memory, addressed by an int handle that events and service points carry instead of
+ * a reference. The slot of a visitor that leaves the park is recycled for a later one.
+ * Records are kept in chunks of {@value #CHUNK_RECORDS}, so the table grows without
+ * copying and beyond the 2 GB of a single buffer.
+ *
+ * Direct memory is limited by -XX:MaxDirectMemorySize, which defaults to the maximum
+ * heap size.
+ */
+public final class VisitorTable {
+    /** Bytes per visitor record */
+    public static final int RECORD_SIZE = 40;
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+
+    // Record layout, byte offsets
+    private static final int ID = 0;        // int, 0 while the slot is free
+    private static final int LOCATION = 4;  // int, node or attraction id; next free slot while free
+    private static final int ARRIVAL = 8;   // double
+    private static final int REMOVAL = 16;  // double
+    private static final int WAIT = 24;     // double, total wait time
+    private static final int SERVICE = 32;  // double, total service time
+
+    private static final int NO_SLOT = -1;
+
+    private ByteBuffer[] chunks = new ByteBuffer[16];
+    private int chunkCount = 0;
+    private int slots = 0;           // slots ever used, the free ones included
+    private int freeSlot = NO_SLOT;  // head of the free slots, linked through LOCATION
+    private int size = 0;            // visitors in the table
+
+    /**
+     * Add a visitor.
+     *
+     * @param id id of the visitor, from 1
+     * @param arrivalTime time the visitor arrived
+     * @return Handle of the visitor, valid until it is removed
+     */
+    public int add(int id, double arrivalTime) {
+        if (id <= 0) throw new IllegalArgumentException("Visitor ids start from 1");
+        int handle = freeSlot;
+        if (handle != NO_SLOT) {
+            freeSlot = chunk(handle).getInt(offset(handle) + LOCATION);
+        } else {
+            if (slots == Integer.MAX_VALUE) throw new IllegalStateException("Visitor table is full");
+            handle = slots++;
+            if ((handle >>> CHUNK_SHIFT) == chunkCount) addChunk();
+        }
+        ByteBuffer c = chunk(handle);
+        int o = offset(handle);
+        c.putInt(o + ID, id);
+        c.putInt(o + LOCATION, -1);
+        c.putDouble(o + ARRIVAL, arrivalTime);
+        c.putDouble(o + REMOVAL, Double.NaN);
+        c.putDouble(o + WAIT, 0.0);
+        c.putDouble(o + SERVICE, 0.0);
+        size++;
+        return handle;
+    }
+
+    /**
+     * Remove a visitor, e.g. when it leaves the park. Its slot is reused.
+     *
+     * @param handle handle of the visitor
+     * @throws IllegalStateException if the slot is free
+     */
+    public void remove(int handle) {
+        ByteBuffer c = chunk(handle);
+        int o = offset(handle);
+        if (c.getInt(o + ID) == 0) throw new IllegalStateException("Visitor slot " + handle + " is free");
+        c.putInt(o + ID, 0);
+        c.putInt(o + LOCATION, freeSlot);
+        freeSlot = handle;
+        size--;
+    }
+
+    public int getId(int handle) {
+        return chunk(handle).getInt(offset(handle) + ID);
+    }
+
+    /**
+     * @return Node or attraction the visitor is at, -1 if not set
+     */
+    public int getLocation(int handle) {
+        return chunk(handle).getInt(offset(handle) + LOCATION);
+    }
+
+    public void setLocation(int handle, int location) {
+        chunk(handle).putInt(offset(handle) + LOCATION, location);
+    }
+
+    public double getArrivalTime(int handle) {
+        return chunk(handle).getDouble(offset(handle) + ARRIVAL);
+    }
+
+    /**
+     * @return Time the visitor left, NaN while in the park
+     */
+    public double getRemovalTime(int handle) {
+        return chunk(handle).getDouble(offset(handle) + REMOVAL);
+    }
+
+    public void setRemovalTime(int handle, double time) {
+        chunk(handle).putDouble(offset(handle) + REMOVAL, time);
+    }
+
+    public double getTotalWaitTime(int handle) {
+        return chunk(handle).getDouble(offset(handle) + WAIT);
+    }
+
+    public void addWaitTime(int handle, double wait) {
+        ByteBuffer c = chunk(handle);
+        int o = offset(handle) + WAIT;
+        c.putDouble(o, c.getDouble(o) + wait);
+    }
+
+    public double getTotalServiceTime(int handle) {
+        return chunk(handle).getDouble(offset(handle) + SERVICE);
+    }
+
+    public void addServiceTime(int handle, double serviceTime) {
+        ByteBuffer c = chunk(handle);
+        int o = offset(handle) + SERVICE;
+        c.putDouble(o, c.getDouble(o) + serviceTime);
+    }
+
+    /**
+     * @return Time from arrival to removal of a visitor that has left
+     */
+    public double getTotalSystemTime(int handle) {
+        ByteBuffer c = chunk(handle);
+        int o = offset(handle);
+        return c.getDouble(o + REMOVAL) - c.getDouble(o + ARRIVAL);
+    }
+
+    /**
+     * @return Number of visitors in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Direct memory taken by the table, in bytes
+     */
+    public long getMemoryUsage() {
+        return (long) chunkCount * CHUNK_RECORDS * RECORD_SIZE;
+    }
+
+    private ByteBuffer chunk(int handle) {
+        return chunks[handle >>> CHUNK_SHIFT];
+    }
+
+    private static int offset(int handle) {
+        return (handle & CHUNK_MASK) * RECORD_SIZE;
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length) chunks = Arrays.copyOf(chunks, 2 * chunkCount);
+        chunks[chunkCount++] = ByteBuffer.allocateDirect(CHUNK_RECORDS * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,82 @@
+package test;
+
+import eduni.distributions.SeedGenerator;
+import simu.framework.Event;
+import simu.framework.HeapEventList;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.EventType;
+import simu.model.MyEngine;
+
+import java.util.Map;
+
+/**
+ * Runs a park whose attractions are rides, first serving one visitor per ride and then
+ * loading them in batches, and prints the events each run took and its results.
+ *
+ * Usage: java test.BatchRides [simulation time] [capacity] [minimum load] [maximum wait]
+ */
+public class BatchRides {
+    public static void main(String[] args) {
+        Trace.setTraceLevel(Level.ERR);
+        double time = args.length > 0 ? Double.parseDouble(args[0]) : 1_000_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+        int minLoad = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+        double maxWait = args.length > 3 ? Double.parseDouble(args[3]) : 20.0;
+
+        run("One visitor per ride", time, 0, 0, 0);
+        run(String.format("Batches of %d, at least %d or after %.1f", capacity, minLoad, maxWait),
+                time, capacity, minLoad, maxWait);
+    }
+
+    private static void run(String title, double time, int capacity, int minLoad, double maxWait) {
+        CountingEngine m = new CountingEngine();
+        m.setReporting(false);
+        if (capacity > 0) m.setBatchService(capacity, minLoad, maxWait);
+        m.setSimulationTime(time);
+
+        long start = System.nanoTime();
+        m.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(title);
+        System.out.printf("  %d events, %d at the attractions, %.2f s%n", m.events, m.attractionEvents, seconds);
+        for (Map.Entry<String, Double> r : m.getResults().entrySet()) {
+            System.out.printf("  %-28s %.4f%n", r.getKey(), r.getValue());
+        }
+    }
+
+    /** Park engine counting the events it runs */
+    private static class CountingEngine extends MyEngine {
+        long events = 0;
+        long attractionEvents = 0; // departures and dispatch timers of the attractions
+
+        CountingEngine() {
+            super(new HeapEventList(), new SeedGenerator(4851L, 100000),
+                    2.0,
+                    1.0, 0.3,
+                    0.5, 0.2,
+                    1.5, 0.3,
+                    1.5, 0.3,
+                    1.5, 0.3);
+        }
+
+        @Override
+        protected void runEvent(Event e) {
+            events++;
+            switch ((EventType) e.getType()) {
+                case DEPARTURE_ATTRACTION1:
+                case DEPARTURE_ATTRACTION2:
+                case DEPARTURE_ATTRACTION3:
+                case DISPATCH_ATTRACTION1:
+                case DISPATCH_ATTRACTION2:
+                case DISPATCH_ATTRACTION3:
+                    attractionEvents++;
+                    break;
+                default:
+                    break;
+            }
+            super.runEvent(e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package test;
+
+import eduni.distributions.Negexp;
+import simu.framework.CalendarEventList;
+import simu.framework.Event;
+import simu.framework.EventList;
+import simu.framework.HeapEventList;
+import simu.framework.PrimitiveEventList;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.EventType;
+
+import java.util.function.Supplier;
+
+/**
+ * Classic "hold" benchmark for the event list implementations.
+ *
+ * The list is filled with n events, then every hold operation removes the earliest
+ * event and schedules a new one an exponentially distributed time later, which keeps
+ * the population constant at n. The time per hold is printed for each backend and
+ * population size, showing where the calendar queue and the primitive struct-of-arrays
+ * heap overtake the binary heap of Event objects.
+ *
+ * Before that, the calendar queue is checked to return events of equal time in
+ * insertion order while it grows, shrinks and re-estimates its bucket width.
+ *
+ * Usage: java test.EventListBenchmark [holds per size]
+ */
+public class EventListBenchmark {
+    private static final int[] SIZES = {10, 100, 1_000, 10_000, 100_000, 1_000_000};
+    private static final long SEED = 12345L;
+
+    public static void main(String[] args) {
+        Trace.setTraceLevel(Level.ERR);
+        int holds = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        if (!tiesInOrder(new CalendarEventList())) {
+            System.out.println("Calendar queue returned events of equal time out of insertion order");
+            System.exit(1);
+        }
+
+        // Warm up all implementations before measuring
+        hold(HeapEventList::new, 1_000, holds);
+        hold(CalendarEventList::new, 1_000, holds);
+        hold(EventListBenchmark::primitive, 1_000, holds);
+
+        System.out.printf("%10s %16s %16s %16s%n", "pending", "heap ns/hold", "calendar ns/hold", "primitive ns/hold");
+        for (int n : SIZES) {
+            double heap = hold(HeapEventList::new, n, holds);
+            double calendar = hold(CalendarEventList::new, n, holds);
+            double primitive = hold(EventListBenchmark::primitive, n, holds);
+            System.out.printf("%10d %16.1f %16.1f %16.1f%n", n, heap, calendar, primitive);
+        }
+    }
+
+    /**
+     * Fill and drain the list a few times with events at whole times, so that many share
+     * a time, each carrying its insertion number as handle.
+     *
+     * @return true if the events came out by time and, for equal times, by insertion number
+     */
+    private static boolean tiesInOrder(EventList list) {
+        Negexp increment = new Negexp(1.0, SEED);
+        double lastTime = 0;
+        int lastHandle = -1;
+        int added = 0;
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 2_000; i++) {
+                list.add(new Event(EventType.ARRIVAL_TICKETBOOTH, lastTime + Math.floor(increment.sample() * 4), added++));
+            }
+            while (list.size() > (round < 3 ? 100 : 0)) {
+                Event e = list.remove();
+                if (e.getTime() < lastTime || e.getTime() == lastTime && e.getHandle() < lastHandle) return false;
+                lastTime = e.getTime();
+                lastHandle = e.getHandle();
+            }
+        }
+        return true;
+    }
+
+    private static EventList primitive() {
+        return new PrimitiveEventList(EventType.values());
+    }
+
+    /**
+     * @return average nanoseconds per hold operation
+     */
+    private static double hold(Supplier<EventList> factory, int n, int holds) {
+        EventList list = factory.get();
+        Negexp increment = new Negexp(1.0, SEED);
+
+        for (int i = 0; i < n; i++) {
+            list.add(new Event(EventType.ARRIVAL_TICKETBOOTH, increment.sample()));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < holds; i++) {
+            Event e = list.remove();
+            e.setTime(e.getTime() + increment.sample() * n);
+            list.add(e);
+        }
+        return (double) (System.nanoTime() - start) / holds;
+    }
+}
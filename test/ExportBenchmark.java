@@ -0,0 +1,98 @@
+package test;
+
+import eduni.distributions.SeedGenerator;
+import simu.framework.ColumnarReader;
+import simu.framework.EventExport;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.NetworkEngine;
+import simu.model.ParkTopology;
+import simu.model.VisitorExport;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Measures the cost of exporting every visitor, and optionally every event, of a park
+ * run to columnar files, and reads the visitor file back one column at a time.
+ *
+ * The park gets a visitor a minute; the run lasts until the given number of visitors
+ * has arrived. The run is timed without export, with the visitor export and with both
+ * exports, and the mean system time is recomputed from the arrival and removal columns
+ * of the visitor file.
+ *
+ * Usage: java test.ExportBenchmark [visitors] [directory]
+ */
+public class ExportBenchmark {
+    private static final long SEED = 4851L;
+    private static final int SEED_SPACING = 100000;
+
+    public static void main(String[] args) throws IOException {
+        Trace.setTraceLevel(Level.ERR);
+        double visitors = args.length > 0 ? Double.parseDouble(args[0]) : 2_000_000;
+        Path dir = args.length > 1 ? Path.of(args[1]) : Files.createTempDirectory("export");
+        Path visitorFile = dir.resolve("visitors.col");
+        Path eventFile = dir.resolve("events.col");
+
+        ParkTopology park = new ParkTopology(1.0, 0,
+                new String[] {"Gate", "Coaster", "Wheel", "Cafe"},
+                new double[] {0.8, 4.0, 3.0, 10.0},
+                new double[] {0.1, 1.0, 1.0, 4.0},
+                new int[] {1, 6, 6, 12},
+                new double[][] {{0, 0.5, 0.5, 0}, {0, 0, 0.3, 0.4}, {0, 0.3, 0, 0.4}, {0, 0.2, 0.2, 0}});
+
+        run("warm-up", park, visitors / 10, null, null);
+        double plain = run("no export", park, visitors, null, null);
+        double exported = run("visitors", park, visitors, visitorFile, null);
+        double both = run("visitors + events", park, visitors, visitorFile, eventFile);
+        System.out.printf("Visitor export overhead %.1f%%, with events %.1f%%%n",
+                100 * (exported - plain) / plain, 100 * (both - plain) / plain);
+        System.out.printf("Files: visitors %.1f MB, events %.1f MB%n",
+                Files.size(visitorFile) / 1e6, Files.size(eventFile) / 1e6);
+
+        long start = System.nanoTime();
+        double systemTime = 0;
+        long rows;
+        try (ColumnarReader in = new ColumnarReader(visitorFile)) {
+            rows = in.getRowCount();
+            int arrival = in.getColumn("arrival");
+            int removal = in.getColumn("removal");
+            for (int chunk = 0; chunk < in.getChunkCount(); chunk++) {
+                DoubleBuffer arrivals = in.getDoubles(chunk, arrival);
+                DoubleBuffer removals = in.getDoubles(chunk, removal);
+                for (int i = 0; i < arrivals.limit(); i++) {
+                    systemTime += removals.get(i) - arrivals.get(i);
+                }
+            }
+        }
+        System.out.printf("Read 2 columns of %d visitors in %.3f s, mean system time %.6f%n",
+                rows, (System.nanoTime() - start) / 1e9, systemTime / rows);
+    }
+
+    /**
+     * @return Seconds the run took, closing the exports included
+     */
+    private static double run(String title, ParkTopology park, double time, Path visitorFile, Path eventFile) throws IOException {
+        NetworkEngine engine = new NetworkEngine(park, new SeedGenerator(SEED, SEED_SPACING));
+        engine.setReporting(false);
+        engine.setSimulationTime(time);
+        VisitorExport visitors = visitorFile != null ? new VisitorExport(visitorFile) : null;
+        EventExport events = eventFile != null ? new EventExport(eventFile) : null;
+        engine.setVisitorExport(visitors);
+        engine.setEventExport(events);
+
+        long start = System.nanoTime();
+        engine.run();
+        if (visitors != null) visitors.close();
+        if (events != null) events.close();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Double> results = engine.getResults();
+        System.out.printf("%-18s %.2f s, %.0f visitors exited, mean system time %.6f%n",
+                title, seconds, results.get("Exited visitors"), results.get("Mean system time"));
+        return seconds;
+    }
+}
@@ -0,0 +1,84 @@
+package test;
+
+import eduni.distributions.SeedGenerator;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.NetworkEngine;
+import simu.model.ParallelNetworkEngine;
+import simu.model.ParkTopology;
+import simu.model.PartitionedEngine;
+import simu.model.TimeWarpEngine;
+
+import java.util.Map;
+
+/**
+ * Compares the parallel engines with the sequential one on a large park.
+ *
+ * The park has a ticket booth and the given number of rides (see
+ * {@link ParkTopology#largePark}). It is run once sequentially and then by the
+ * conservative and the Time Warp engine with an increasing number of logical processes,
+ * all from the same seed. For every run the wall time, speedup, committed events per
+ * second and whether the results equal the sequential results exactly are printed,
+ * with the number of waits of the conservative engine and the rollback ratio of the
+ * Time Warp engine.
+ *
+ * Usage: java test.ParallelBenchmark [rides] [simulation time] [max processes] [optimism window]
+ */
+public class ParallelBenchmark {
+    private static final long SEED = 4851L;
+    private static final int SEED_SPACING = 100000;
+
+    public static void main(String[] args) {
+        Trace.setTraceLevel(Level.ERR);
+        int rides = args.length > 0 ? Integer.parseInt(args[0]) : 59;
+        double simulationTime = args.length > 1 ? Double.parseDouble(args[1]) : 200000;
+        int maxProcesses = args.length > 2 ? Integer.parseInt(args[2]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        double window = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+
+        ParkTopology topology = ParkTopology.largePark(rides, 1.0, 0.7);
+        System.out.printf("%d service points, simulation time %.0f, %d cores%n",
+                topology.getNodeCount(), simulationTime, Runtime.getRuntime().availableProcessors());
+
+        runSequential(topology, simulationTime); // warm up
+        long start = System.nanoTime();
+        Map<String, Double> expected = runSequential(topology, simulationTime);
+        double sequential = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-12s %9s %9s %9s %14s %12s %10s%n",
+                "engine", "processes", "seconds", "speedup", "committed ev/s", "waits/rb", "results");
+        System.out.printf("%-12s %9s %9.2f %9.2f %14s %12s %10s%n", "sequential", "-", sequential, 1.0, "-", "-", "-");
+
+        for (int processes = 1; processes <= Math.min(maxProcesses, topology.getNodeCount()); processes *= 2) {
+            ParallelNetworkEngine conservative = new ParallelNetworkEngine(topology, new SeedGenerator(SEED, SEED_SPACING), processes);
+            run(conservative, simulationTime);
+            print("conservative", conservative, sequential, conservative.getEventCount(),
+                    String.valueOf(conservative.getBlockedCount()), expected);
+
+            TimeWarpEngine timeWarp = new TimeWarpEngine(topology, new SeedGenerator(SEED, SEED_SPACING), processes);
+            if (window > 0) timeWarp.setOptimismWindow(window);
+            run(timeWarp, simulationTime);
+            print("time warp", timeWarp, sequential, timeWarp.getCommittedEventCount(),
+                    String.format("%.3f", timeWarp.getRollbackRatio()), expected);
+        }
+    }
+
+    private static void run(PartitionedEngine engine, double simulationTime) {
+        engine.setSimulationTime(simulationTime);
+        engine.setReporting(false);
+        engine.run();
+    }
+
+    private static void print(String name, PartitionedEngine engine, double sequential, long committed,
+                              String waits, Map<String, Double> expected) {
+        double seconds = engine.getWallTime();
+        System.out.printf("%-12s %9d %9.2f %9.2f %14.0f %12s %10s%n", name, engine.getProcessCount(), seconds,
+                sequential / seconds, committed / seconds, waits, engine.getResults().equals(expected) ? "identical" : "DIFFERENT");
+    }
+
+    private static Map<String, Double> runSequential(ParkTopology topology, double simulationTime) {
+        NetworkEngine engine = new NetworkEngine(topology, new SeedGenerator(SEED, SEED_SPACING));
+        engine.setSimulationTime(simulationTime);
+        engine.setReporting(false);
+        engine.run();
+        return engine.getResults();
+    }
+}
@@ -0,0 +1,111 @@
+package test;
+
+import eduni.distributions.SeedGenerator;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.NetworkEngine;
+import simu.model.ParallelNetworkEngine;
+import simu.model.ParkTopology;
+import simu.model.ParkTopology.Distribution;
+import simu.model.PartitionedEngine;
+import simu.model.TimeWarpEngine;
+
+import java.util.Map;
+
+/**
+ * Checks that the parallel engines give exactly the sequential results on parks with
+ * multi-server nodes on the partition boundary, however the threads are scheduled.
+ *
+ * Two parks are run: a chain A (1 server) - B (4 servers) - C cut between B and C, and
+ * a four-node park whose rides have several servers. Every run of the conservative and
+ * the Time Warp engine is repeated with busy threads competing for the cores, so the
+ * processes interleave differently each time. A run that differs from the sequential
+ * one, or fails, is reported and the check exits with status 1.
+ *
+ * Usage: java test.ParallelEquivalence [simulation time] [repetitions] [load threads]
+ */
+public class ParallelEquivalence {
+    private static final long SEED = 4851L;
+    private static final int SEED_SPACING = 100000;
+
+    private static volatile boolean loading = true;
+
+    public static void main(String[] args) throws InterruptedException {
+        Trace.setTraceLevel(Level.ERR);
+        double simulationTime = args.length > 0 ? Double.parseDouble(args[0]) : 2000;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int loadThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Thread[] load = new Thread[loadThreads];
+        for (int i = 0; i < loadThreads; i++) {
+            load[i] = new Thread(ParallelEquivalence::spin, "load-" + i);
+            load[i].setDaemon(true);
+            load[i].start();
+        }
+
+        Distribution e = Distribution.EXPONENTIAL;
+        ParkTopology chain = new ParkTopology(1.0, 0, new String[]{"A", "B", "C"}, new Distribution[]{e, e, e},
+                new double[][]{{0.8}, {3.0}, {0.8}}, new int[]{1, 4, 1},
+                new double[][]{{0, 1, 0}, {0, 0, 1}, {0, 0, 0}});
+        ParkTopology rides = new ParkTopology(1.0, 0, new String[]{"Gate", "Coaster", "Wheel", "Cafe"},
+                new double[]{0.8, 4.0, 3.0, 10.0}, new double[]{0.1, 1.0, 1.0, 4.0}, new int[]{1, 3, 3, 9},
+                new double[][]{{0, 0.5, 0.5, 0}, {0, 0, 0.3, 0.4}, {0, 0.3, 0, 0.4}, {0, 0.2, 0.2, 0}});
+
+        int failures = check("chain", chain, new int[]{0, 0, 1}, simulationTime, repetitions)
+                + check("rides", rides, new int[]{0, 1, 0, 1}, simulationTime, repetitions);
+        loading = false;
+        for (Thread t : load) {
+            t.join();
+        }
+        System.out.println(failures == 0 ? "All runs identical" : failures + " runs DIFFERENT or failed");
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * @return Number of parallel runs that did not give the sequential results
+     */
+    private static int check(String name, ParkTopology topology, int[] partition, double simulationTime, int repetitions) {
+        NetworkEngine sequential = new NetworkEngine(topology, new SeedGenerator(SEED, SEED_SPACING));
+        sequential.setSimulationTime(simulationTime);
+        sequential.setReporting(false);
+        sequential.run();
+        Map<String, Double> expected = sequential.getResults();
+
+        int conservativeFailures = 0;
+        int timeWarpFailures = 0;
+        for (int i = 0; i < repetitions; i++) {
+            if (!matches(new ParallelNetworkEngine(topology, new SeedGenerator(SEED, SEED_SPACING), partition),
+                    simulationTime, expected)) {
+                conservativeFailures++;
+            }
+            if (!matches(new TimeWarpEngine(topology, new SeedGenerator(SEED, SEED_SPACING), partition),
+                    simulationTime, expected)) {
+                timeWarpFailures++;
+            }
+        }
+        System.out.printf("%-6s conservative %d/%d identical, time warp %d/%d identical%n", name,
+                repetitions - conservativeFailures, repetitions, repetitions - timeWarpFailures, repetitions);
+        return conservativeFailures + timeWarpFailures;
+    }
+
+    private static boolean matches(PartitionedEngine engine, double simulationTime, Map<String, Double> expected) {
+        engine.setSimulationTime(simulationTime);
+        engine.setReporting(false);
+        try {
+            engine.run();
+        } catch (RuntimeException e) {
+            System.out.println(engine.getClass().getSimpleName() + " failed: " + (e.getCause() != null ? e.getCause() : e));
+            return false;
+        }
+        return engine.getResults().equals(expected);
+    }
+
+    /** Keep a core busy, so the logical processes get descheduled at random points */
+    private static void spin() {
+        long x = 0;
+        while (loading) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+            if (x == 0) Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package test;
+
+import eduni.distributions.SeedGenerator;
+import simu.framework.HeapEventList;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.MyEngine;
+
+/**
+ * Runs a stable park until the mean system time and the utilizations are known to the
+ * requested precision, and prints how long that took.
+ *
+ * Usage: java test.Precision [relative half-width] [confidence] [time limit]
+ */
+public class Precision {
+    public static void main(String[] args) {
+        Trace.setTraceLevel(Level.ERR);
+        double relativeHalfWidth = args.length > 0 ? Double.parseDouble(args[0]) : 0.02;
+        double confidence = args.length > 1 ? Double.parseDouble(args[1]) : 0.95;
+        double limit = args.length > 2 ? Double.parseDouble(args[2]) : Double.POSITIVE_INFINITY;
+
+        MyEngine m = new MyEngine(new HeapEventList(), new SeedGenerator(4851L, 100000),
+                10.0,
+                5.0, 2.0,
+                2.0, 1.0,
+                6.0, 2.0,
+                5.0, 2.0,
+                7.0, 2.0);
+        m.setReporting(false);
+        m.setWarmupDetection(true);
+        m.setPrecision(relativeHalfWidth, confidence);
+        m.setSimulationTime(limit);
+
+        long start = System.nanoTime();
+        m.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Stopped at time %.0f after %.2f s, warm-up time %.0f%n",
+                m.getContext().getClock().getClock(), seconds, m.getWarmupTime());
+        System.out.print(m.getStoppingRule().format());
+    }
+}
@@ -0,0 +1,51 @@
+package test;
+
+import eduni.distributions.RandomBackend;
+import simu.framework.HeapEventList;
+import simu.framework.ReplicationRunner;
+import simu.framework.ReplicationSummary;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.MyEngine;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs independent replications of the amusement park in parallel and prints
+ * the merged results with confidence intervals.
+ *
+ * Usage: java test.Replications [replications] [threads] [forkjoin|virtual] [simulation time] [lcg|splitmix64]
+ */
+public class Replications {
+    public static void main(String[] args) {
+        Trace.setTraceLevel(Level.ERR);
+
+        int replications = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        boolean virtual = args.length > 2 && args[2].equals("virtual");
+        double simulationTime = args.length > 3 ? Double.parseDouble(args[3]) : 10000;
+        if (args.length > 4) RandomBackend.setDefault(RandomBackend.valueOf(args[4].toUpperCase()));
+
+        ExecutorService executor = virtual ? ReplicationRunner.virtualThreads() : ReplicationRunner.forkJoin(threads);
+        ReplicationRunner runner = new ReplicationRunner(executor, MyEngine.RANDOM_STREAMS);
+
+        long start = System.nanoTime();
+        ReplicationSummary summary = runner.run(replications, seeds -> {
+            MyEngine m = new MyEngine(new HeapEventList(), seeds,
+                    10.0,
+                    5.0, 2.0,
+                    2.0, 1.0,
+                    10.0, 3.0,
+                    8.0, 2.0,
+                    12.0, 4.0);
+            m.setSimulationTime(simulationTime);
+            return m;
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+
+        System.out.print(summary.format(0.95));
+        System.out.printf("Wall time: %.2f s (%s, %d threads, %s)%n", seconds, virtual ? "virtual threads" : "fork-join", threads,
+                RandomBackend.getDefault());
+    }
+}
@@ -0,0 +1,116 @@
+package test;
+
+import eduni.distributions.ContinuousGenerator;
+import eduni.distributions.Erlang;
+import eduni.distributions.LogNormal;
+import eduni.distributions.Negexp;
+import eduni.distributions.Normal;
+import eduni.distributions.RandomBackend;
+import eduni.distributions.SeedGenerator;
+import eduni.distributions.Uniform;
+import eduni.distributions.Weibull;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.NetworkEngine;
+import simu.model.ParkTopology;
+
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * Compares drawing random numbers one at a time with drawing them in bulk.
+ *
+ * For every distribution the service times of a park can have, the time per number is
+ * measured with {@code sample()} and with {@code fill()} in blocks, and the two
+ * sequences are checked to be finite and identical number by number. Then a large park is run with and without
+ * buffered sampling (see {@link NetworkEngine#setSampleBuffer}), which must give the
+ * same results.
+ *
+ * Usage: java test.SamplingBenchmark [numbers] [block] [lcg|splitmix64]
+ */
+public class SamplingBenchmark {
+    private static final long SEED = 4851L;
+    private static final int SEED_SPACING = 100000;
+
+    public static void main(String[] args) {
+        Trace.setTraceLevel(Level.ERR);
+        int numbers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int block = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        if (args.length > 2) RandomBackend.setDefault(RandomBackend.valueOf(args[2].toUpperCase()));
+
+        compare("uniform source", s -> RandomBackend.getDefault().create(s), numbers, block);
+        compare("Negexp", s -> new Negexp(5, s), numbers, block);
+        compare("Normal", s -> new Normal(5, 2, s), numbers, block);
+        compare("Uniform", s -> new Uniform(1, 9, s), numbers, block);
+        compare("LogNormal", s -> new LogNormal(1, 0.5, s), numbers, block);
+        compare("Weibull", s -> new Weibull(2, 1.5, s), numbers, block);
+        compare("Erlang", s -> new Erlang(3, 2, s), numbers, block);
+
+        ParkTopology park = ParkTopology.largePark(200, 1.0, 0.7);
+        run(park, 0); // warm up
+        long start = System.nanoTime();
+        Map<String, Double> expected = run(park, 0);
+        double plain = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        Map<String, Double> buffered = run(park, block);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Park of 200 rides: %.3f s one at a time, %.3f s buffered, identical results: %b%n",
+                plain, seconds, expected.equals(buffered));
+    }
+
+    private static void compare(String name, LongFunction<ContinuousGenerator> factory, int numbers, int block) {
+        for (int warmup = 0; warmup < 2; warmup++) {
+            ContinuousGenerator single = factory.apply(SEED);
+            ContinuousGenerator bulk = factory.apply(SEED);
+            double[] values = new double[block];
+
+            long start = System.nanoTime();
+            double sum = 0;
+            for (int i = 0; i < numbers; i++) sum += single.sample();
+            double sampleTime = (System.nanoTime() - start) / (double) numbers;
+
+            start = System.nanoTime();
+            double bulkSum = 0;
+            for (int i = 0; i < numbers; i += block) {
+                int n = Math.min(block, numbers - i);
+                bulk.fill(values, 0, n);
+                for (int j = 0; j < n; j++) bulkSum += values[j];
+            }
+            double fillTime = (System.nanoTime() - start) / (double) numbers;
+
+            boolean identical = Double.isFinite(sum) && sum == bulkSum && single.getSeed() == bulk.getSeed()
+                    && identical(factory, Math.min(numbers, 1 << 20), block);
+            if (warmup == 1) {
+                System.out.printf("%-15s sample %6.2f ns, fill %6.2f ns, identical: %b%n", name, sampleTime, fillTime, identical);
+            }
+        }
+    }
+
+    /**
+     * @return Whether the first numbers of a generator are finite and the same, bit for
+     *         bit, when drawn one at a time and in blocks
+     */
+    private static boolean identical(LongFunction<ContinuousGenerator> factory, int numbers, int block) {
+        ContinuousGenerator single = factory.apply(SEED);
+        ContinuousGenerator bulk = factory.apply(SEED);
+        double[] values = new double[block];
+        for (int i = 0; i < numbers; i += block) {
+            int n = Math.min(block, numbers - i);
+            bulk.fill(values, 0, n);
+            for (int j = 0; j < n; j++) {
+                double x = single.sample();
+                if (!Double.isFinite(x) || Double.doubleToRawLongBits(x) != Double.doubleToRawLongBits(values[j])) return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Double> run(ParkTopology park, int block) {
+        NetworkEngine engine = new NetworkEngine(park, new SeedGenerator(SEED, SEED_SPACING));
+        engine.setReporting(false);
+        engine.setSimulationTime(500000);
+        if (block > 0) engine.setSampleBuffer(block);
+        engine.run();
+        return engine.getResults();
+    }
+}
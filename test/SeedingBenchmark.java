@@ -0,0 +1,72 @@
+package test;
+
+import eduni.distributions.RandomBackend;
+import eduni.distributions.RandomGenerator;
+import eduni.distributions.SeedGenerator;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.NetworkEngine;
+import simu.model.ParkTopology;
+
+/**
+ * Measures the startup cost of seeding the replications of a large park.
+ *
+ * The seeds of all streams of all replications are taken as {@link simu.framework.ReplicationRunner}
+ * takes them, once by stepping an LCG {@code spacing} times per seed, as SeedGenerator
+ * used to, and once by its jump-ahead. The stepping is only timed on the first few
+ * replications and extrapolated. Both must yield the same seeds. Finally the engines
+ * of all replications are built from jump-ahead seeds.
+ *
+ * Usage: java test.SeedingBenchmark [rides] [replications] [stepped replications]
+ */
+public class SeedingBenchmark {
+    private static final long SEED = 4851L;
+    private static final int SEED_SPACING = 100000;
+
+    public static void main(String[] args) {
+        Trace.setTraceLevel(Level.ERR);
+        int rides = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int replications = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int stepped = Math.min(replications, args.length > 2 ? Integer.parseInt(args[2]) : 5);
+
+        ParkTopology park = ParkTopology.largePark(rides, 1.0, 0.7);
+        int streams = park.getRandomStreams();
+        System.out.printf("%d replications of %d streams, spacing %d%n", replications, streams, SEED_SPACING);
+
+        long start = System.nanoTime();
+        long[] expected = new long[stepped * streams];
+        RandomGenerator lcg = new RandomGenerator(SEED);
+        for (int i = 0; i < expected.length; i++) {
+            if (i > 0) {
+                for (int s = 0; s < SEED_SPACING; s++) lcg.nextLong();
+            }
+            expected[i] = lcg.getSeed();
+        }
+        double steppedSeconds = (System.nanoTime() - start) / 1e9 * replications / stepped;
+
+        start = System.nanoTime();
+        long[] seeds = new long[replications * streams];
+        SeedGenerator master = new SeedGenerator(RandomBackend.LCG, SEED, SEED_SPACING);
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = master.sample();
+        }
+        double jumpSeconds = (System.nanoTime() - start) / 1e9;
+
+        boolean identical = true;
+        for (int i = 0; i < expected.length; i++) {
+            identical &= expected[i] == seeds[i];
+        }
+        System.out.printf("Stepped seeds  %10.3f s (extrapolated from %d replications)%n", steppedSeconds, stepped);
+        System.out.printf("Jump-ahead     %10.3f s, %.0fx faster, seeds identical: %b%n",
+                jumpSeconds, steppedSeconds / jumpSeconds, identical);
+
+        start = System.nanoTime();
+        SeedGenerator replicationMaster = new SeedGenerator(RandomBackend.LCG, SEED, SEED_SPACING);
+        for (int r = 0; r < replications; r++) {
+            SeedGenerator replicationSeeds = new SeedGenerator(RandomBackend.LCG, replicationMaster.sample(), SEED_SPACING);
+            replicationMaster.skip(streams - 1);
+            new NetworkEngine(park, replicationSeeds);
+        }
+        System.out.printf("Built %d engines in %.3f s%n", replications, (System.nanoTime() - start) / 1e9);
+    }
+}
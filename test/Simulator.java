@@ -1,19 +1,30 @@
 package test;
 
+import simu.framework.BinaryTraceSink;
 import simu.framework.Engine;
 import simu.framework.Trace;
 import simu.framework.Trace.Level;
 import simu.model.MyEngine;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 /**
  * Command-line type User Interface
  *
  * With setTraceLevel() you can control the number of diagnostic messages printed to the console.
+ *
+ * Usage: java test.Simulator [trace-file]
+ * With a trace file, the per-event diagnostic messages are written to it in binary form
+ * (decode it with simu.framework.TraceDecoder) instead of being printed.
  */
 public class Simulator {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         // Control diagnostic output level
         Trace.setTraceLevel(Level.INFO);
+        if (args.length > 0) {
+            Trace.setSink(new BinaryTraceSink(Paths.get(args[0])));
+        }
 
         // Example parameters (these could later come from UI or config file)
         double arrivalMean = 10.0;
@@ -31,10 +42,14 @@ public class Simulator {
                 attr2Mean, attr2Std,
                 attr3Mean, attr3Std);
 
+        // Keep each visitor's latest visits for its report
+        m.getContext().setVisitHistory(32);
+
         // Define simulation length
         m.setSimulationTime(1000);
 
         // Run simulation
         m.run();
+        Trace.getSink().close();
     }
 }
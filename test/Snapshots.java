@@ -0,0 +1,91 @@
+package test;
+
+import eduni.distributions.SeedGenerator;
+import simu.framework.HeapEventList;
+import simu.framework.ReplicationRunner;
+import simu.framework.ReplicationSummary;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.MyEngine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Warms the amusement park up once, saves a snapshot and continues from it.
+ *
+ * First the run that saved the snapshot is continued to the simulation time and
+ * compared with an engine restored from the snapshot, which must give identical
+ * results. Then independent measurement runs are forked from the snapshot, each with
+ * its own seeds, and their merged results are printed.
+ *
+ * Usage: java test.Snapshots [warm-up time] [simulation time] [forks] [snapshot file]
+ */
+public class Snapshots {
+    private static final long SEED = 4851L;
+    private static final int SEED_SPACING = 100000;
+
+    public static void main(String[] args) throws IOException {
+        Trace.setTraceLevel(Level.ERR);
+        double warmUp = args.length > 0 ? Double.parseDouble(args[0]) : 100000;
+        double simulationTime = args.length > 1 ? Double.parseDouble(args[1]) : 200000;
+        int forks = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        Path file = args.length > 3 ? Paths.get(args[3]) : Files.createTempFile("park", ".snapshot");
+
+        MyEngine original = create(new SeedGenerator(SEED, SEED_SPACING));
+        original.setSimulationTime(warmUp);
+        original.run();
+        long start = System.nanoTime();
+        original.saveSnapshot(file);
+        System.out.printf("Saved %d bytes at time %.0f in %.1f ms%n", Files.size(file),
+                original.getContext().getClock().getClock(), (System.nanoTime() - start) / 1e6);
+
+        original.setSimulationTime(simulationTime);
+        original.run();
+
+        MyEngine restored = create(new SeedGenerator(1, SEED_SPACING)); // seeds are replaced by the snapshot
+        start = System.nanoTime();
+        restored.restoreSnapshot(file);
+        System.out.printf("Restored in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+        restored.setSimulationTime(simulationTime);
+        restored.run();
+        Map<String, Double> expected = original.getResults();
+        System.out.println("Continued run: " + (restored.getResults().equals(expected) ? "identical" : "DIFFERENT"));
+
+        ExecutorService executor = ReplicationRunner.forkJoin(Runtime.getRuntime().availableProcessors());
+        ReplicationRunner runner = new ReplicationRunner(executor, MyEngine.RANDOM_STREAMS);
+        ReplicationSummary summary = runner.run(forks, seeds -> {
+            MyEngine fork = create(new SeedGenerator(1, SEED_SPACING));
+            try {
+                fork.restoreSnapshot(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            fork.reseed(seeds);
+            fork.setSimulationTime(simulationTime);
+            return fork;
+        });
+        executor.shutdown();
+        System.out.println(forks + " runs forked from the snapshot:");
+        System.out.print(summary.format(0.95));
+
+        if (args.length < 4) Files.delete(file);
+    }
+
+    private static MyEngine create(SeedGenerator seeds) {
+        MyEngine m = new MyEngine(new HeapEventList(), seeds,
+                10.0,
+                5.0, 2.0,
+                2.0, 1.0,
+                10.0, 3.0,
+                8.0, 2.0,
+                12.0, 4.0);
+        m.setReporting(false);
+        return m;
+    }
+}
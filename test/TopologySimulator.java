@@ -0,0 +1,42 @@
+package test;
+
+import eduni.distributions.SeedGenerator;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.NetworkEngine;
+import simu.model.ParkTopology;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * Runs the park of a topology file, see {@link ParkTopology#load}, e.g. test/standard.park,
+ * and prints its results.
+ *
+ * Usage: java test.TopologySimulator park-file [simulation time] [seed]
+ */
+public class TopologySimulator {
+    private static final int SEED_SPACING = 100000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java test.TopologySimulator park-file [simulation time] [seed]");
+            System.exit(1);
+        }
+        Trace.setTraceLevel(Level.ERR);
+        ParkTopology park = ParkTopology.load(Paths.get(args[0]));
+        double time = args.length > 1 ? Double.parseDouble(args[1]) : 100000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 4851L;
+
+        NetworkEngine engine = new NetworkEngine(park, new SeedGenerator(seed, SEED_SPACING));
+        engine.setReporting(false);
+        engine.setSimulationTime(time);
+        long start = System.nanoTime();
+        engine.run();
+        System.out.printf("%d nodes, run in %.2f s%n", park.getNodeCount(), (System.nanoTime() - start) / 1e9);
+        for (Map.Entry<String, Double> r : engine.getResults().entrySet()) {
+            System.out.printf("  %-32s %.4f%n", r.getKey(), r.getValue());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package test;
+
+import simu.framework.EventList;
+import simu.framework.PrimitiveEventList;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.EventType;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the cost of suppressed diagnostic messages.
+ *
+ * With tracing set to ERR, an INFO message is timed and its allocation counted
+ * for each call style: eager string concatenation (the old call sites), an
+ * isEnabled() guard, a Supplier and format-args. A hold loop on the event list,
+ * whose add/remove trace every event, shows that the event path itself no longer
+ * allocates when tracing is off.
+ *
+ * Usage: java test.TraceBenchmark [calls]
+ */
+public class TraceBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink = 0;
+
+    public static void main(String[] args) {
+        Trace.setTraceLevel(Level.ERR);
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        System.out.printf("%-20s %12s %12s%n", "call style", "ns/call", "bytes/call");
+        for (int round = 0; round < 2; round++) {   // first round warms up the JIT
+            boolean print = round == 1;
+            measure("eager concat", calls, print, TraceBenchmark::eager);
+            measure("isEnabled guard", calls, print, TraceBenchmark::guarded);
+            measure("supplier", calls, print, TraceBenchmark::supplier);
+            measure("format args", calls, print, TraceBenchmark::format);
+            measure("event list hold", calls, print, holdLoop());
+        }
+    }
+
+    private interface Loop {
+        void run(int calls);
+    }
+
+    private static void measure(String name, int calls, boolean print, Loop loop) {
+        long bytes = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        loop.run(calls);
+        long ns = System.nanoTime() - start;
+        bytes = THREADS.getCurrentThreadAllocatedBytes() - bytes;
+        if (print) {
+            System.out.printf("%-20s %12.2f %12.2f%n", name, (double) ns / calls, (double) bytes / calls);
+        }
+    }
+
+    private static void eager(int calls) {
+        for (int i = 0; i < calls; i++) {
+            double time = i * 0.5;
+            Trace.out(Level.INFO, "Visitor " + i + " departure scheduled at " + time);
+        }
+    }
+
+    private static void guarded(int calls) {
+        for (int i = 0; i < calls; i++) {
+            double time = i * 0.5;
+            if (Trace.isEnabled(Level.INFO)) {
+                Trace.out(Level.INFO, "Visitor " + i + " departure scheduled at " + time);
+            }
+            sink += i;
+        }
+    }
+
+    private static void supplier(int calls) {
+        for (int i = 0; i < calls; i++) {
+            int id = i;
+            double time = i * 0.5;
+            Trace.out(Level.INFO, () -> "Visitor " + id + " departure scheduled at " + time);
+        }
+    }
+
+    private static void format(int calls) {
+        for (int i = 0; i < calls; i++) {
+            double time = i * 0.5;
+            Trace.out(Level.INFO, "Visitor %d departure scheduled at %s", i, time);
+        }
+    }
+
+    private static Loop holdLoop() {
+        EventList list = new PrimitiveEventList(EventType.values());
+        for (int i = 0; i < 1_000; i++) {
+            list.schedule(EventType.ARRIVAL_TICKETBOOTH, i, null);
+        }
+        return calls -> {
+            for (int i = 0; i < calls; i++) {
+                double time = list.getNextEventTime();
+                list.release(list.remove());
+                list.schedule(EventType.ARRIVAL_TICKETBOOTH, time + 1_000, null);
+            }
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package test;
+
+import eduni.distributions.SeedGenerator;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.NetworkEngine;
+import simu.model.ParkTopology;
+import simu.model.VisitorTable;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Runs a park whose main ride cannot keep up, so that visitors pile up in its queue,
+ * once with Visitor objects and once with an off-heap {@link VisitorTable}, and prints
+ * the time, the garbage collections and the memory each run took.
+ *
+ * Usage: java test.VisitorTableStress [simulation time]
+ */
+public class VisitorTableStress {
+    private static final long SEED = 4851L;
+    private static final int SEED_SPACING = 100000;
+
+    public static void main(String[] args) {
+        Trace.setTraceLevel(Level.ERR);
+        double time = args.length > 0 ? Double.parseDouble(args[0]) : 2_000_000;
+
+        // The ride serves 0.8 visitors per minute of the 1 arriving, so its queue grows
+        ParkTopology park = new ParkTopology(1.0, 0,
+                new String[] {"Gate", "Ride"},
+                new double[] {1.5, 1.25},
+                new double[] {0.3, 0.1},
+                new int[] {2, 1},
+                new double[][] {{0, 1}, {0, 0}});
+
+        Map<String, Double> objects = run("Visitor objects", park, time, null);
+        VisitorTable table = new VisitorTable();
+        Map<String, Double> handles = run("Visitor table", park, time, table);
+        System.out.printf("Visitor table: %d visitors in the park, %.1f MB of direct memory%n",
+                table.size(), table.getMemoryUsage() / 1e6);
+        System.out.println(objects.equals(handles) ? "Results identical" : "Results DIFFER: " + objects + " vs " + handles);
+    }
+
+    private static Map<String, Double> run(String title, ParkTopology park, double time, VisitorTable table) {
+        NetworkEngine engine = new NetworkEngine(park, new SeedGenerator(SEED, SEED_SPACING));
+        engine.setReporting(false);
+        if (table != null) engine.setVisitorTable(table);
+        engine.setSimulationTime(time);
+
+        System.gc();
+        long collections = collections();
+        long gcMillis = gcMillis();
+        long start = System.nanoTime();
+        engine.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        collections = collections() - collections;
+        gcMillis = gcMillis() - gcMillis;
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        double heap = (rt.totalMemory() - rt.freeMemory()) / 1e6;
+
+        Map<String, Double> results = engine.getResults();
+        System.out.printf("%-16s %.2f s, %d collections taking %d ms, %.1f MB of heap in use, %.0f visitors exited%n",
+                title, seconds, collections, gcMillis, heap, results.get("Exited visitors"));
+        return results;
+    }
+
+    private static long collections() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            n += gc.getCollectionCount();
+        }
+        return n;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += gc.getCollectionTime();
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,58 @@
+package test;
+
+import eduni.distributions.SeedGenerator;
+import simu.framework.HeapEventList;
+import simu.framework.ReplicationRunner;
+import simu.framework.ReplicationSummary;
+import simu.framework.Trace;
+import simu.framework.Trace.Level;
+import simu.model.MyEngine;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Shows the initialization bias of short runs and how much of it warm-up detection
+ * removes. A stable park is run once for a long time as the reference, then in short
+ * replications with and without warm-up detection.
+ *
+ * Usage: java test.Warmup [replications] [short simulation time] [reference simulation time]
+ */
+public class Warmup {
+    private static final String[] SHOWN = {"Rest Area utilization", "Mean system time"};
+
+    public static void main(String[] args) {
+        Trace.setTraceLevel(Level.ERR);
+        int replications = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        double shortTime = args.length > 1 ? Double.parseDouble(args[1]) : 5000;
+        double referenceTime = args.length > 2 ? Double.parseDouble(args[2]) : 1000000;
+
+        ExecutorService executor = ReplicationRunner.forkJoin(Runtime.getRuntime().availableProcessors());
+        ReplicationRunner runner = new ReplicationRunner(executor, MyEngine.RANDOM_STREAMS);
+        ReplicationSummary reference = runner.run(1, seeds -> create(seeds, referenceTime, false));
+        ReplicationSummary plain = runner.run(replications, seeds -> create(seeds, shortTime, false));
+        ReplicationSummary truncated = runner.run(replications, seeds -> create(seeds, shortTime, true));
+        executor.shutdown();
+
+        System.out.printf("%-24s %14s %24s %24s%n", "", "reference", "from time 0", "after warm-up");
+        for (String name : SHOWN) {
+            System.out.printf("%-24s %14.4f %12.4f +- %-9.4f %12.4f +- %-9.4f%n", name, reference.getMean(name),
+                    plain.getMean(name), plain.getHalfWidth(name, 0.95),
+                    truncated.getMean(name), truncated.getHalfWidth(name, 0.95));
+        }
+        System.out.printf("Mean warm-up time: %.1f (NaN if some run was too short to detect it)%n",
+                truncated.getMean("Warm-up time"));
+    }
+
+    private static MyEngine create(SeedGenerator seeds, double simulationTime, boolean detect) {
+        MyEngine m = new MyEngine(new HeapEventList(), seeds,
+                10.0,
+                5.0, 2.0,
+                2.0, 1.0,
+                6.0, 2.0,
+                5.0, 2.0,
+                7.0, 2.0);
+        m.setWarmupDetection(detect);
+        m.setSimulationTime(simulationTime);
+        return m;
+    }
+}